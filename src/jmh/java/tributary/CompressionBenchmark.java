@@ -0,0 +1,99 @@
+package tributary;
+
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import tributary.compression.CompressionCodec;
+import tributary.compression.CompressionCodecs;
+import tributary.producer.message.Message;
+import tributary.serde.Serdes;
+import tributary.topic.CompressedLog;
+import tributary.topic.EventLog;
+import tributary.topic.PartitionLog;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost per event of appending and of reading in order with each codec. The bytes the retained
+ * events take against their uncompressed size are printed once per trial; run with -prof gc for the
+ * allocation each codec adds.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CompressionBenchmark {
+    private static final int BATCH = 100;
+
+    @Param({"none", "deflate-fast", "deflate"})
+    public String codec;
+
+    @Param({"100000"})
+    public int retainedEvents;
+
+    private CompressionCodec compression;
+    private List<Message<Object>> messages;
+    private PartitionLog<Object> retained;
+    private PartitionLog<Object> appended;
+    private long rawBytes;
+    private long next = 0;
+
+    @Setup
+    public void setUp() {
+        compression = CompressionCodecs.forName(codec);
+        messages = new ArrayList<>();
+        for (int i = 0; i < retainedEvents; i++) {
+            // events of one kind differ in a few fields, as the JSON events of a topic usually do
+            JSONObject value = new JSONObject()
+                    .put("user", "user" + i % 1000)
+                    .put("action", i % 3 == 0 ? "view" : "click")
+                    .put("page", "/products/" + i % 97)
+                    .put("sequence", i);
+            Message<Object> message = new Message<>("producer", "partition", Serdes.JSON.serialize(value),
+                    "event" + i);
+            messages.add(message);
+            rawBytes += message.getSize();
+        }
+        retained = newLog();
+        retained.appendAll(messages);
+    }
+
+    @Setup(Level.Iteration)
+    public void newAppendedLog() {
+        appended = newLog();
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.out.printf("%n%s retains %d bytes for %d bytes of events, %.2fx%n", codec, retained.getBytes(),
+                rawBytes, (double) rawBytes / retained.getBytes());
+    }
+
+    private PartitionLog<Object> newLog() {
+        return compression == null ? new EventLog<>() : new CompressedLog<>(compression);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public long appendBatch() {
+        int from = (int) (appended.getEndOffset() % (retainedEvents - BATCH));
+        return appended.appendAll(messages.subList(from, from + BATCH));
+    }
+
+    @Benchmark
+    public Message<Object> readInOrder() {
+        long offset = next;
+        next = offset + 1 == retainedEvents ? 0 : offset + 1;
+        return retained.read(offset);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,89 @@
+package tributary;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import tributary.consumer.Consumer;
+import tributary.consumer.ConsumerGroup;
+import tributary.producer.message.Message;
+import tributary.serde.Serdes;
+import tributary.topic.Partition;
+import tributary.topic.Topic;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost per consumed event against the number of events retained in each partition. Offsets
+ * are rewound whenever a partition is exhausted, so every operation reads events that exist.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ConsumeBenchmark {
+    private static final int BATCH = 100;
+
+    @Param({"1", "8"})
+    public int partitions;
+
+    @Param({"1", "8"})
+    public int consumers;
+
+    @Param({"16", "256"})
+    public int payloadSize;
+
+    @Param({"10000", "1000000"})
+    public int retainedEvents;
+
+    private Topic<Object> topic;
+    private ConsumerGroup<Object> consumerGroup;
+    private Consumer<Object> consumer;
+    private String partitionId;
+
+    @Setup
+    public void setUp() {
+        topic = new Topic<>("topic");
+        for (int i = 0; i < partitions; i++) topic.createPartition("partition" + i);
+        consumerGroup = topic.addConsumerGroup("group", Rebalance.STICKY);
+        for (int i = 0; i < consumers; i++) consumerGroup.addConsumer("consumer" + i);
+        topic.rebalance(consumerGroup);
+
+        // with more consumers than partitions some consumers are idle, read as one that is not
+        consumer = consumerGroup.getConsumers().values().stream()
+                .filter(x -> !x.getPartitions().isEmpty())
+                .findFirst()
+                .orElseThrow();
+        partitionId = consumer.getPartitions().keySet().iterator().next();
+
+        Message<Object> message = new Message<>("producer", null, Serdes.JSON.serialize(Payloads.of(payloadSize)),
+                "event");
+        for (Partition<Object> partition : consumer.getPartitions().values()) {
+            List<Message<Object>> batch = new ArrayList<>();
+            for (int i = 0; i < retainedEvents; i++) batch.add(message);
+            partition.addEvents(batch);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public List<Message<Object>> consumeEvents() {
+        List<Message<Object>> events = topic.consume(consumer.getConsumerId(), partitionId, BATCH);
+        if (events.size() < BATCH) consumerGroup.commitOffset(partitionId, 0);
+        return events;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public List<Message<Object>> poll() {
+        List<Message<Object>> events = consumer.poll(BATCH, Long.MAX_VALUE);
+        if (events.size() < BATCH) consumer.getPartitions().keySet().forEach(x -> consumerGroup.commitOffset(x, 0));
+        return events;
+    }
+}
\ No newline at end of file
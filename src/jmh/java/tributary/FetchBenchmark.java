@@ -0,0 +1,95 @@
+package tributary;
+
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import tributary.inputs.EventInput;
+import tributary.replication.FetchClient;
+import tributary.sink.NoOpSink;
+import tributary.storage.DiskStorage;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Measures the cost of a remote fetch of up to MAX_BYTES of events, from partitions kept in memory, whose
+ * events are encoded for every fetch, and on disk, whose segment bytes are sent with transferTo. Offsets
+ * wrap around the retained events, so every fetch returns a full batch.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FetchBenchmark {
+    private static final int MAX_BYTES = 1024 * 1024;
+
+    @Param({"memory", "disk"})
+    public String storage;
+
+    @Param({"16", "1024"})
+    public int payloadSize;
+
+    @Param({"100000"})
+    public int retainedEvents;
+
+    private Path directory;
+    private Tributary tributary;
+    private FetchClient client;
+    private long next = 0;
+
+    @Setup
+    public void setUp() throws IOException {
+        if (storage.equals("disk")) {
+            directory = Files.createTempDirectory("tributary-fetch");
+            tributary = new Tributary(new DiskStorage(directory));
+        } else {
+            tributary = new Tributary();
+        }
+        tributary.setEventSink(new NoOpSink());
+        tributary.createTopic("topic", JSONObject.class);
+        tributary.createPartition("topic", "partition");
+        tributary.createProducer("producer", String.class, Allocation.MANUAL);
+
+        JSONObject payload = Payloads.of(payloadSize);
+        List<EventInput> inputs = new ArrayList<>();
+        for (int i = 0; i < retainedEvents; i++) {
+            inputs.add(new EventInput("producer", "topic", payload, "event" + i, "partition"));
+        }
+        tributary.produceEvents(inputs);
+
+        int port = tributary.startReplication(0);
+        client = new FetchClient(new InetSocketAddress("localhost", port));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        client.close();
+        tributary.close();
+        if (directory != null) {
+            try (Stream<Path> files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+            }
+        }
+    }
+
+    @Benchmark
+    public FetchClient.Batch<Object> fetch() throws IOException {
+        FetchClient.Batch<Object> batch = client.fetch("topic", "partition", next, MAX_BYTES, 0);
+        next = batch.getNextOffset() >= retainedEvents ? 0 : batch.getNextOffset();
+        return batch;
+    }
+}
\ No newline at end of file
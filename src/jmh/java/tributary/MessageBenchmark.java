@@ -0,0 +1,46 @@
+package tributary;
+
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import tributary.producer.message.Message;
+import tributary.serde.Serdes;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * With the gc profiler, gc.alloc.rate.norm of createMessage is the heap allocated to create an event, not the
+ * heap the event retains, which MessageFootprint measures.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MessageBenchmark {
+    @Param({"16", "1024"})
+    public int payloadSize;
+
+    private JSONObject payload;
+    private Message<JSONObject> message;
+
+    @Setup
+    public void setUp() {
+        payload = Payloads.of(payloadSize);
+        message = createMessage();
+    }
+
+    @Benchmark
+    public Message<JSONObject> createMessage() {
+        return new Message<>("producer", null, Serdes.JSON.serialize(payload), "event");
+    }
+
+    @Benchmark
+    public JSONObject readValue() {
+        return message.getValue(Serdes.JSON);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,85 @@
+package tributary;
+
+import org.json.JSONObject;
+import tributary.producer.message.Message;
+import tributary.serde.Serdes;
+
+import java.lang.management.ManagementFactory;
+import java.lang.ref.Reference;
+import java.util.Date;
+import java.util.function.IntFunction;
+
+/**
+ * Measures the heap an event retains while it is kept in a partition, as the growth of the used heap over
+ * COUNT events kept at once, after collecting garbage. Compares messages as single records with messages as
+ * they were before, a JSONObject value and a header of a Date, the value's class, the id and the source.
+ * Each event is parsed from its JSON as produce does, so an event of the old representation keeps its own
+ * JSONObject. Run with ./gradlew footprint.
+ */
+public final class MessageFootprint {
+    private static final int COUNT = 200_000;
+    private static final int[] PAYLOAD_SIZES = {16, 1024};
+
+    private MessageFootprint() {
+    }
+
+    public static void main(String[] args) {
+        for (int payloadSize : PAYLOAD_SIZES) {
+            String json = Payloads.of(payloadSize).toString();
+            // measured twice, the first run warming up so that no class loading is counted
+            for (int run = 0; run < 2; run++) {
+                double record = retainedBytes(i -> new Message<>("producer", null,
+                        Serdes.JSON.serialize(new JSONObject(json)), id(i)));
+                double object = retainedBytes(i -> new JsonMessage("producer", null, new JSONObject(json), id(i)));
+                if (run == 0) continue;
+                System.out.printf("payload %4d B: record %6.1f B/event, JSONObject and Date %6.1f B/event (%.1fx)%n",
+                        payloadSize, record, object, object / record);
+            }
+        }
+    }
+
+    private static String id(int i) {
+        return "event" + i;
+    }
+
+    private static double retainedBytes(IntFunction<Object> create) {
+        Object[] retained = new Object[COUNT];
+        long before = usedHeap();
+        for (int i = 0; i < COUNT; i++) retained[i] = create.apply(i);
+        long after = usedHeap();
+        Reference.reachabilityFence(retained);
+        return (double) (after - before) / COUNT;
+    }
+
+    private static long usedHeap() {
+        // a few collections, so that garbage promoted by one is collected by the next
+        for (int i = 0; i < 4; i++) System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static final class JsonMessage {
+        private final JsonHeader header;
+        private final String key;
+        private final JSONObject value;
+
+        private JsonMessage(String source, String key, JSONObject value, String messageId) {
+            this.header = new JsonHeader(new Date(), messageId, value.getClass(), source);
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    private static final class JsonHeader {
+        private final Date timeCreated;
+        private final String id;
+        private final Class<?> type;
+        private final String source;
+
+        private JsonHeader(Date timeCreated, String id, Class<?> type, String source) {
+            this.timeCreated = timeCreated;
+            this.id = id;
+            this.type = type;
+            this.source = source;
+        }
+    }
+}
\ No newline at end of file
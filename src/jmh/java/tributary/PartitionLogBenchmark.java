@@ -0,0 +1,76 @@
+package tributary;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import tributary.producer.message.Message;
+import tributary.serde.Serdes;
+import tributary.storage.DiskStorage;
+import tributary.topic.EventLog;
+import tributary.topic.PartitionLog;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Measures reading an event at a random offset, which should not depend on how many events are retained.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PartitionLogBenchmark {
+    @Param({"1000", "1000000"})
+    public int retainedEvents;
+
+    @Param({"memory", "disk"})
+    public String storage;
+
+    private Path directory;
+    private PartitionLog<Object> log;
+
+    @Setup
+    public void setUp() throws IOException {
+        if (storage.equals("disk")) {
+            directory = Files.createTempDirectory("tributary-bench");
+            log = new DiskStorage(directory).openLog("topic", "partition");
+        } else {
+            log = new EventLog<>();
+        }
+
+        Message<Object> message = new Message<>("producer", null, Serdes.JSON.serialize(Payloads.of(64)), "event");
+        List<Message<Object>> batch = new ArrayList<>();
+        for (int i = 0; i < retainedEvents; i++) batch.add(message);
+        log.appendAll(batch);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        if (directory == null) return;
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(x -> x.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public Message<Object> readRandomOffset() {
+        return log.read(ThreadLocalRandom.current().nextLong(retainedEvents));
+    }
+
+    @Benchmark
+    public Message<Object> readLastOffset() {
+        return log.read(retainedEvents - 1);
+    }
+}
\ No newline at end of file
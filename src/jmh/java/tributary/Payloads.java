@@ -0,0 +1,17 @@
+package tributary;
+
+import org.json.JSONObject;
+
+final class Payloads {
+    private Payloads() {
+    }
+
+    /**
+     * @return a JSON payload whose serialised form is about size bytes
+     */
+    static JSONObject of(int size) {
+        StringBuilder value = new StringBuilder();
+        for (int i = 0; i < Math.max(1, size - "{\"event\":\"\"}".length()); i++) value.append((char) ('a' + i % 26));
+        return new JSONObject().put("event", value.toString());
+    }
+}
\ No newline at end of file
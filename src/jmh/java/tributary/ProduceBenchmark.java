@@ -0,0 +1,68 @@
+package tributary;
+
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import tributary.inputs.EventInput;
+import tributary.inputs.InputResult;
+import tributary.sink.NoOpSink;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ProduceBenchmark {
+    private static final int PARALLEL_INPUTS = 64;
+
+    @Param({"1", "8", "64"})
+    public int partitions;
+
+    @Param({"16", "1024"})
+    public int payloadSize;
+
+    private Tributary tributary;
+    private JSONObject payload;
+    private List<EventInput> parallelInputs;
+
+    // a fresh broker per iteration keeps the retained events of earlier iterations from skewing GC
+    @Setup(Level.Iteration)
+    public void setUp() {
+        tributary = new Tributary();
+        tributary.setEventSink(new NoOpSink());
+        tributary.createTopic("topic", JSONObject.class);
+        for (int i = 0; i < partitions; i++) tributary.createPartition("topic", "partition" + i);
+        tributary.createProducer("producer", String.class, Allocation.RANDOM);
+
+        payload = Payloads.of(payloadSize);
+        parallelInputs = new ArrayList<>();
+        for (int i = 0; i < PARALLEL_INPUTS; i++) {
+            parallelInputs.add(new EventInput("producer", "topic", payload, "event" + i));
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        tributary.close();
+    }
+
+    @Benchmark
+    public void produceEvent() {
+        tributary.produceEvent("producer", "topic", payload, "event");
+    }
+
+    @Benchmark
+    public List<InputResult<EventInput>> parallelProduce() {
+        return tributary.parallelProduce(parallelInputs);
+    }
+}
\ No newline at end of file
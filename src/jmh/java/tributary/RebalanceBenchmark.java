@@ -0,0 +1,51 @@
+package tributary;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import tributary.consumer.ConsumerGroup;
+import tributary.topic.Topic;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures one membership change: a consumer joining and leaving a group, each followed by a rebalance.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RebalanceBenchmark {
+    @Param({"100", "10000"})
+    public int partitions;
+
+    @Param({"10", "1000"})
+    public int consumers;
+
+    @Param({"RANGE", "ROUNDROBIN", "STICKY"})
+    public Rebalance rebalance;
+
+    private Topic<Object> topic;
+    private ConsumerGroup<Object> consumerGroup;
+
+    @Setup
+    public void setUp() {
+        topic = new Topic<>("topic");
+        for (int i = 0; i < partitions; i++) topic.createPartition("partition" + i);
+        consumerGroup = topic.addConsumerGroup("group", rebalance);
+        for (int i = 0; i < consumers; i++) consumerGroup.addConsumer("consumer" + i);
+        topic.rebalance(consumerGroup);
+    }
+
+    @Benchmark
+    public void joinAndLeave() {
+        consumerGroup.addConsumer("joining");
+        topic.rebalance(consumerGroup);
+        consumerGroup.deleteConsumer("joining");
+        topic.rebalance(consumerGroup);
+    }
+}
\ No newline at end of file
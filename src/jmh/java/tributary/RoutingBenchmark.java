@@ -0,0 +1,49 @@
+package tributary;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import tributary.producer.Producer;
+import tributary.producer.message.Message;
+import tributary.serde.Serdes;
+import tributary.topic.Partition;
+import tributary.topic.Topic;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures picking the partition of an event in Topic.addEvent, without appending it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RoutingBenchmark {
+    @Param({"1", "8", "64"})
+    public int partitions;
+
+    @Param({"RANDOM", "ROUNDROBIN", "STICKY", "HASH"})
+    public Allocation allocation;
+
+    private Topic<Object> topic;
+    private Producer<Object> producer;
+    private Message<Object> message;
+
+    @Setup
+    public void setUp() {
+        topic = new Topic<>("topic");
+        for (int i = 0; i < partitions; i++) topic.createPartition("partition" + i);
+        producer = new Producer<>("producer", allocation);
+        message = new Message<>("producer", null, Serdes.JSON.serialize(Payloads.of(16)), "event");
+    }
+
+    @Benchmark
+    public Partition<Object> route() {
+        message.setKey(null);
+        return topic.route(message, producer.getPartitioner());
+    }
+}
\ No newline at end of file
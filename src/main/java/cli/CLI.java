@@ -1,65 +1,236 @@
 package cli;
 
 import org.json.JSONObject;
+import tributary.Acks;
 import tributary.Allocation;
 import tributary.Rebalance;
+import tributary.compression.CompressionCodecs;
 import tributary.inputs.ConsumerInput;
 import tributary.inputs.EventInput;
+import tributary.inputs.InputResult;
+import tributary.producer.message.Message;
+import tributary.serde.Serdes;
 import tributary.Tributary;
+import tributary.http.TributaryServer;
+import tributary.topic.RetentionPolicy;
+import tributary.topic.Topic;
+import tributary.storage.DiskStorage;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Scanner;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
 
 public class CLI {
-    public static void main(String[] args) {
-        Scanner scanner = new Scanner(System.in);
-        Tributary t = new Tributary();
+    // consecutive produce event commands of a script are produced as one batch of at most this many events
+    private static final int SCRIPT_BATCH_SIZE = 4096;
+    private static final int READ_BUFFER_CHARS = 1 << 16;
+    private static final long SNAPSHOT_INTERVAL_MS = 10_000;
+    private static final int SUBSCRIPTION_MAX_EVENTS = 100;
+
+    // commands by their first two or three words
+    private static final Map<String, BiConsumer<Tributary, String[]>> COMMANDS = new HashMap<>();
+
+    static {
+        COMMANDS.put("create topic", CLI::createTopic);
+        COMMANDS.put("create producer", CLI::createProducer);
+        COMMANDS.put("create partition", CLI::createPartition);
+        COMMANDS.put("create consumer group", CLI::createConsumerGroup);
+        COMMANDS.put("create consumer", CLI::createConsumer);
+        COMMANDS.put("delete consumer", CLI::deleteConsumer);
+        COMMANDS.put("join group", CLI::joinGroup);
+        COMMANDS.put("leave group", CLI::leaveGroup);
+        COMMANDS.put("heartbeat consumer", CLI::heartbeatConsumer);
+        COMMANDS.put("seek consumer", CLI::seekConsumer);
+        COMMANDS.put("seek group", CLI::seekGroup);
+        COMMANDS.put("produce event", CLI::produceEvent);
+        COMMANDS.put("parallel produce", CLI::parallelProduce);
+        COMMANDS.put("consume event", CLI::consumeEvent);
+        COMMANDS.put("consume events", CLI::consumeEvents);
+        COMMANDS.put("parallel consume", CLI::parallelConsume);
+        COMMANDS.put("poll consumer", CLI::pollConsumer);
+        COMMANDS.put("subscribe consumer", CLI::subscribeConsumer);
+        COMMANDS.put("unsubscribe consumer", CLI::unsubscribeConsumer);
+        COMMANDS.put("show topic", CLI::showTopic);
+        COMMANDS.put("show consumer group", CLI::showConsumerGroup);
+        COMMANDS.put("set retention", CLI::setRetention);
+        COMMANDS.put("set compression", CLI::setCompression);
+        COMMANDS.put("set acks", CLI::setAcks);
+        COMMANDS.put("start replication", CLI::startReplication);
+        COMMANDS.put("follow partition", CLI::followPartition);
+        COMMANDS.put("lead partition", CLI::leadPartition);
+        COMMANDS.put("save snapshot", CLI::saveSnapshot);
+        COMMANDS.put("load snapshot", CLI::loadSnapshot);
+        COMMANDS.put("show metrics", (t, args) -> t.showMetrics());
+    }
+
+    /**
+     * Usage: CLI [--http port] [--replication port] [--script file | -] [--snapshot file] [data directory
+     * [segment bytes]]
+     * With --replication, serves partitions to followers on other brokers
+     * With --script, runs the commands of file, or of standard input for -, without prompting and exits
+     * With --snapshot, restores file if it exists, snapshots to it periodically and once more on exit
+     */
+    public static void main(String[] args) throws IOException {
+        List<String> options = new ArrayList<>(Arrays.asList(args));
+        String port = option(options, "--http");
+        String replicationPort = option(options, "--replication");
+        String script = option(options, "--script");
+        String snapshot = option(options, "--snapshot");
+        Tributary t = options.isEmpty() ?
+                new Tributary() :
+                new Tributary(storage(options));
+        if (snapshot != null) {
+            if (Files.exists(Paths.get(snapshot))) t.restore(Paths.get(snapshot));
+            t.scheduleSnapshots(Paths.get(snapshot), SNAPSHOT_INTERVAL_MS);
+        }
+        if (replicationPort != null) t.startReplication(Integer.parseInt(replicationPort));
+        TributaryServer server = port == null ? null : new TributaryServer(t, Integer.parseInt(port));
+        if (server != null) {
+            server.start();
+            System.out.println("Serving on port " + port);
+        }
+
+        try (BufferedReader reader = script == null || script.equals("-") ?
+                new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8), READ_BUFFER_CHARS) :
+                new BufferedReader(new InputStreamReader(Files.newInputStream(Paths.get(script)),
+                        StandardCharsets.UTF_8), READ_BUFFER_CHARS)) {
+            if (script == null) interactive(t, reader);
+            else runScript(t, reader);
+        } finally {
+            if (server != null) server.close();
+            if (snapshot != null) t.snapshot(Paths.get(snapshot)).join();
+            t.close();
+        }
+    }
+
+    private static String option(List<String> options, String name) {
+        int i = options.indexOf(name);
+        if (i < 0) return null;
+        String value = options.get(i + 1);
+        options.subList(i, i + 2).clear();
+        return value;
+    }
+
+    private static DiskStorage storage(List<String> args) {
+        if (args.size() == 1) return new DiskStorage(Paths.get(args.get(0)));
+        return new DiskStorage(Paths.get(args.get(0)), Integer.parseInt(args.get(1)),
+                DiskStorage.DEFAULT_INDEX_INTERVAL_BYTES);
+    }
+
+    private static void interactive(Tributary t, BufferedReader reader) throws IOException {
         while (true) {
             System.out.println("Enter command: ");
-            String input = scanner.nextLine();
-            if (input.equalsIgnoreCase("exit")) return;
-            try {
-                processArg(t, input);
-            } catch (Exception e) {
-                System.out.println(e.getMessage());
+            String input = reader.readLine();
+            if (input == null || input.trim().equalsIgnoreCase("exit")) return;
+            run(t, tokenize(input));
+        }
+    }
+
+    /**
+     * runs every command read, producing the events of consecutive produce event commands as a batch
+     */
+    private static void runScript(Tributary t, BufferedReader reader) throws IOException {
+        List<EventInput> batch = new ArrayList<>();
+        long start = System.nanoTime();
+        long commands = 0;
+        for (String line; (line = reader.readLine()) != null; ) {
+            String[] args = tokenize(line);
+            if (args.length == 0 || args[0].startsWith("#")) continue;
+            if (args[0].equalsIgnoreCase("exit")) break;
+            commands++;
+
+            if (args.length > 1 && args[0].equals("produce") && args[1].equals("event")) {
+                EventInput input = eventInput(t, args);
+                if (input != null) batch.add(input);
+                if (batch.size() >= SCRIPT_BATCH_SIZE) produce(t, batch);
+            } else {
+                produce(t, batch);
+                run(t, args);
+            }
+        }
+        produce(t, batch);
+
+        System.out.println("Ran " + commands + " commands in "
+                + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+    }
+
+    private static void produce(Tributary t, List<EventInput> batch) {
+        if (batch.isEmpty()) return;
+        try {
+            t.produceEvents(batch);
+        } catch (IllegalArgumentException e) {
+            // nothing of a batch that was invalid was produced, so its events are produced one by one to fail
+            // only the invalid ones
+            for (EventInput input : batch) {
+                try {
+                    t.produceEvents(Collections.singletonList(input));
+                } catch (RuntimeException x) {
+                    System.out.println(x.getMessage());
+                }
             }
+        } catch (RuntimeException e) {
+            // some of the batch may have been produced, e.g. if it was not replicated in time, so it is not
+            // produced again
+            System.out.println(e.getMessage());
+        } finally {
+            batch.clear();
         }
     }
 
-    private static void processArg(Tributary t, String input) {
-        String[] args = input.split(" ");
-        if (input.contains("create topic")) {
-            createTopic(t, args);
-        } else if (input.contains("create producer")) {
-            createProducer(t, args);
-        } else if (input.contains("create partition")) {
-            createPartition(t, args);
-        } else if (input.contains("create consumer group")) {
-            createConsumerGroup(t, args);
-        } else if (input.contains("create consumer")) {
-            createConsumer(t, args);
-        } else if (input.contains("delete consumer")) {
-            deleteConsumer(t, args);
-        } else if (input.contains("produce event")) {
-            produceEvent(t, args);
-        } else if (input.contains("parallel produce")) {
-            try { parallelProduce(t, args); }
-            catch (Exception e) { System.out.println(e.getMessage()); }
-        } else if (input.contains("consume event")) {
-            consumeEvent(t, args);
-        } else if (input.contains("consume events")) {
-            consumeEvents(t, args);
-        } else if (input.contains("parallel consume")) {
-            try { parallelConsume(t, args); }
-            catch (Exception e) { System.out.println(e.getMessage()); }
-        } else if (input.contains("show topic")) {
-            showTopic(t, args);
-        } else if (input.contains("show consumer group")) {
-            showConsumerGroup(t, args);
-        } else {
+    private static void run(Tributary t, String[] args) {
+        BiConsumer<Tributary, String[]> command = command(args);
+        if (command == null) {
             System.out.println("Invalid Input");
+            return;
+        }
+        try {
+            command.accept(t, args);
+        } catch (Exception e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    private static BiConsumer<Tributary, String[]> command(String[] args) {
+        if (args.length >= 3) {
+            BiConsumer<Tributary, String[]> command = COMMANDS.get(args[0] + " " + args[1] + " " + args[2]);
+            if (command != null) return command;
+        }
+        return args.length >= 2 ? COMMANDS.get(args[0] + " " + args[1]) : null;
+    }
+
+    /**
+     * splits a line into its words, separated by any run of whitespace
+     */
+    static String[] tokenize(String line) {
+        List<String> tokens = new ArrayList<>();
+        int n = line.length();
+        int i = 0;
+        while (i < n) {
+            while (i < n && Character.isWhitespace(line.charAt(i))) i++;
+            int start = i;
+            while (i < n && !Character.isWhitespace(line.charAt(i))) i++;
+            if (i > start) tokens.add(line.substring(start, i));
         }
+        return tokens.toArray(new String[0]);
+    }
+
+    /**
+     * @return the payload of an event, {"event": event} with event read as a number, boolean or null
+     * where it is one and as a string otherwise
+     */
+    private static JSONObject value(String event) {
+        return new JSONObject().put("event", JSONObject.stringToValue(event));
     }
 
     private static void showConsumerGroup(Tributary t, String[] args) {
@@ -82,12 +253,78 @@ public class CLI {
         t.consumeEvent(args[2], args[3]);
     }
 
+    private static void pollConsumer(Tributary t, String[] args) {
+        if (!validInput(5, "poll consumer <consumer> <max events> <timeout ms>", args)) return;
+        try {
+            List<Message<Object>> events = t.poll(args[2], Integer.parseInt(args[3]), Long.MAX_VALUE,
+                    Long.parseLong(args[4]));
+            System.out.println("Consumer " + args[2] + " polled " + events.size() + " events");
+            events.forEach(Message::display);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void subscribeConsumer(Tributary t, String[] args) {
+        if (!validInput(3, "subscribe consumer <consumer>", args)) return;
+        String consumerId = args[2];
+        t.<Object>subscribe(consumerId, SUBSCRIPTION_MAX_EVENTS, Long.MAX_VALUE, events -> {
+            System.out.println("Consumer " + consumerId + " received " + events.size() + " events");
+            events.forEach(Message::display);
+        });
+        System.out.println("Consumer " + consumerId + " was successfully subscribed");
+    }
+
+    private static void unsubscribeConsumer(Tributary t, String[] args) {
+        if (!validInput(3, "unsubscribe consumer <consumer>", args)) return;
+        t.unsubscribe(args[2]);
+        System.out.println("Consumer " + args[2] + " was successfully unsubscribed");
+    }
+
     private static void produceEvent(Tributary t, String[] args) {
-        if (args.length == 5) {
-            t.produceEvent(args[2], args[3], new JSONObject("{event:" + args[4]+ "}"), args[4]);
-        } else {
-            if (!validInput(6, "produce event <producer> <topic> <event> <partition>", args)) return;
-            t.produceEvent(args[2], args[3], new JSONObject("{event:" + args[4]+ "}"), args[4], args[5]);
+        EventInput input = eventInput(t, args);
+        if (input != null) t.produceEvents(Collections.singletonList(input));
+    }
+
+    private static EventInput eventInput(Tributary t, String[] args) {
+        if (args.length == 5) return eventInput(t, args[2], args[3], args[4], null);
+        if (!validInput(6, "produce event <producer> <topic> <event> <partition>", args)) return null;
+        return eventInput(t, args[2], args[3], args[4], args[5]);
+    }
+
+    /**
+     * @return an event read by the serde of the topic, or for JSONObject topics {"event": event} as value
+     * builds it
+     */
+    private static EventInput eventInput(Tributary t, String producerId, String topicId, String event,
+                                         String partitionId) {
+        Topic<?> topic = t.getTopics().get(topicId);
+        return topic != null && topic.getSerde() == Serdes.JSON ?
+                new EventInput(producerId, topicId, value(event), event, partitionId) :
+                new EventInput(producerId, topicId, event, event, partitionId);
+    }
+
+    private static void seekConsumer(Tributary t, String[] args) {
+        String expected = "seek consumer <consumer> (beginning | end | time <epoch ms> | offset <partition> <offset>)";
+        if (args.length == 4 && args[3].equalsIgnoreCase("beginning")) {
+            t.seekToBeginning(args[2]);
+        } else if (args.length == 4 && args[3].equalsIgnoreCase("end")) {
+            t.seekToEnd(args[2]);
+        } else if (args.length == 5 && args[3].equalsIgnoreCase("time")) {
+            t.seekToTimestamp(args[2], Long.parseLong(args[4]));
+        } else if (validInput(6, expected, args)) {
+            t.seek(args[2], args[4], Long.parseLong(args[5]));
+        }
+    }
+
+    private static void seekGroup(Tributary t, String[] args) {
+        String expected = "seek group <group> (beginning | end | time <epoch ms>)";
+        if (args.length == 4 && args[3].equalsIgnoreCase("beginning")) {
+            t.seekGroupToBeginning(args[2]);
+        } else if (args.length == 4 && args[3].equalsIgnoreCase("end")) {
+            t.seekGroupToEnd(args[2]);
+        } else if (validInput(5, expected, args)) {
+            t.seekGroupToTimestamp(args[2], Long.parseLong(args[4]));
         }
     }
 
@@ -96,6 +333,23 @@ public class CLI {
         t.deleteConsumer(args[2]);
     }
 
+    private static void joinGroup(Tributary t, String[] args) {
+        if (!validInput(5, "join group <group> <consumer> <session timeout ms>", args)) return;
+        t.joinGroup(args[2], args[3], Long.parseLong(args[4]));
+        System.out.println("Consumer " + args[3] + " joined consumer group " + args[2]);
+    }
+
+    private static void leaveGroup(Tributary t, String[] args) {
+        if (!validInput(3, "leave group <consumer>", args)) return;
+        t.leaveGroup(args[2]);
+        System.out.println("Consumer " + args[2] + " left its consumer group");
+    }
+
+    private static void heartbeatConsumer(Tributary t, String[] args) {
+        if (!validInput(3, "heartbeat consumer <consumer>", args)) return;
+        t.heartbeat(args[2]);
+    }
+
     private static void createConsumer(Tributary t, String[] args) {
         if (!validInput(4, "create consumer <group> <id>", args)) return;
         t.createConsumer(args[2], args[3]);
@@ -108,7 +362,9 @@ public class CLI {
                 args[4],
                 args[5].equalsIgnoreCase("roundrobin") ?
                         Rebalance.ROUNDROBIN :
-                        Rebalance.RANGE
+                        args[5].equalsIgnoreCase("sticky") ?
+                                Rebalance.STICKY :
+                                Rebalance.RANGE
         );
     }
 
@@ -122,16 +378,82 @@ public class CLI {
         t.createProducer(
                 args[2],
                 String.class,
-                args[4].equalsIgnoreCase("manual") ?
-                        Allocation.MANUAL :
-                        Allocation.RANDOM
+                allocation(args[4])
         );
     }
 
+    private static Allocation allocation(String arg) {
+        switch (arg.toLowerCase()) {
+            case "manual":
+                return Allocation.MANUAL;
+            case "roundrobin":
+                return Allocation.ROUNDROBIN;
+            case "sticky":
+                return Allocation.STICKY;
+            case "hash":
+                return Allocation.HASH;
+            default:
+                return Allocation.RANDOM;
+        }
+    }
+
+    private static void setRetention(Tributary t, String[] args) {
+        String expected = "set retention <topic> <max age ms> <max bytes> <max count> [compact]";
+        if (args.length != 7 && !validInput(6, expected, args)) return;
+        t.setRetention(args[2], new RetentionPolicy(
+                Long.parseLong(args[3]),
+                Long.parseLong(args[4]),
+                Long.parseLong(args[5]),
+                args.length == 7 && args[6].equalsIgnoreCase("compact")
+        ));
+    }
+
+    private static void setCompression(Tributary t, String[] args) {
+        if (!validInput(4, "set compression <topic> <none | deflate | deflate-fast>", args)) return;
+        t.setCompression(args[2], CompressionCodecs.forName(args[3]));
+    }
+
+    private static void setAcks(Tributary t, String[] args) {
+        if (!validInput(4, "set acks <producer> <leader | all>", args)) return;
+        t.setAcks(args[2], args[3].equalsIgnoreCase("all") ? Acks.ALL : Acks.LEADER);
+    }
+
+    private static void startReplication(Tributary t, String[] args) {
+        if (!validInput(3, "start replication <port>", args)) return;
+        t.startReplication(Integer.parseInt(args[2]));
+    }
+
+    private static void followPartition(Tributary t, String[] args) {
+        String expected = "follow partition <topic> <partition> <leader host:port>";
+        if (!validInput(5, expected, args)) return;
+        int colon = args[4].lastIndexOf(':');
+        if (colon < 0) {
+            System.out.println("Invalid Arguments: expected " + expected);
+            return;
+        }
+        String host = args[4].substring(0, colon);
+        t.followPartition(args[2], args[3], host, Integer.parseInt(args[4].substring(colon + 1)));
+    }
+
+    private static void leadPartition(Tributary t, String[] args) {
+        if (!validInput(4, "lead partition <topic> <partition>", args)) return;
+        t.leadPartition(args[2], args[3]);
+    }
+
+    private static void saveSnapshot(Tributary t, String[] args) {
+        if (!validInput(3, "save snapshot <file>", args)) return;
+        t.snapshot(Paths.get(args[2])).join();
+        System.out.println("Snapshot " + args[2] + " was successfully saved");
+    }
+
+    private static void loadSnapshot(Tributary t, String[] args) {
+        if (!validInput(3, "load snapshot <file>", args)) return;
+        t.restore(Paths.get(args[2]));
+    }
+
     private static void createTopic(Tributary t, String[] args) {
         if (!validInput(4, "create topic <id> <type>", args)) return;
-        Class clz = args[3].equalsIgnoreCase("string") ? String.class : Integer.class;
-        t.createTopic(args[2], clz);
+        t.createTopic(args[2], Serdes.forName(args[3]));
     }
 
     private static void parallelProduce(Tributary t, String[] args) {
@@ -140,10 +462,10 @@ public class CLI {
             return;
         }
         List<EventInput> input = new ArrayList<>();
-        for (int i = 1; i < args.length; i += 3) {
-            input.add(new EventInput(args[i], args[i + 1], new JSONObject("{event:" + args[i + 2] + "}"), args[i + 2]));
+        for (int i = 2; i < args.length; i += 3) {
+            input.add(eventInput(t, args[i], args[i + 1], args[i + 2], null));
         }
-        t.parallelProduce(input);
+        printFailures(t.parallelProduce(input));
     }
 
     private static void parallelConsume(Tributary t, String[] args) {
@@ -152,10 +474,16 @@ public class CLI {
             return;
         }
         List<ConsumerInput> input = new ArrayList<>();
-        for (int i = 1; i < args.length; i += 2) {
+        for (int i = 2; i < args.length; i += 2) {
             input.add(new ConsumerInput(args[i], args[i+1]));
         }
-        t.parallelConsume(input);
+        printFailures(t.parallelConsume(input));
+    }
+
+    private static void printFailures(List<? extends InputResult<?>> results) {
+        results.stream()
+                .filter(x -> !x.isSuccess())
+                .forEach(x -> System.out.println(x.getError().getMessage()));
     }
 
     private static boolean validInput(int n, String expected, String[] args) {
@@ -0,0 +1,114 @@
+package cli;
+
+import org.json.JSONObject;
+import tributary.Allocation;
+import tributary.Rebalance;
+import tributary.Tributary;
+import tributary.http.TributaryServer;
+import tributary.metrics.Histogram;
+import tributary.metrics.HistogramSnapshot;
+import tributary.sink.NoOpSink;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs a TributaryServer on localhost and drives it with concurrent producing and fetching clients,
+ * then prints the requests per second and latency percentiles of each.
+ * Usage: HttpLoadTest [port] [producers] [consumers] [seconds] [events per request]
+ */
+public class HttpLoadTest {
+    private static final int PARTITIONS = 8;
+
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 4567;
+        int producers = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+        int consumers = args.length > 2 ? Integer.parseInt(args[2]) : 8;
+        long seconds = args.length > 3 ? Long.parseLong(args[3]) : 10;
+        int batchSize = args.length > 4 ? Integer.parseInt(args[4]) : 10;
+
+        try (Tributary t = new Tributary()) {
+            t.setEventSink(new NoOpSink());
+            t.createTopic("load", JSONObject.class);
+            for (int i = 0; i < PARTITIONS; i++) t.createPartition("load", "p" + i);
+            t.createProducer("producer", String.class, Allocation.ROUNDROBIN);
+            t.createConsumerGroup("group", "load", Rebalance.RANGE);
+            for (int i = 0; i < consumers; i++) t.createConsumer("group", "consumer" + i);
+
+            try (TributaryServer server = new TributaryServer(t, port, producers + consumers + 8)) {
+                server.start();
+                run(port, producers, consumers, seconds, batchSize);
+            }
+        }
+    }
+
+    private static void run(int port, int producers, int consumers, long seconds, int batchSize)
+            throws InterruptedException {
+        HttpClient client = HttpClient.newHttpClient();
+        String base = "http://localhost:" + port;
+        String events = events(batchSize);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+
+        Histogram produceLatency = new Histogram();
+        Histogram fetchLatency = new Histogram();
+        AtomicLong errors = new AtomicLong();
+
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < producers; i++) {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(base + "/topics/load/events"))
+                    .POST(HttpRequest.BodyPublishers.ofString(events))
+                    .build();
+            threads.add(new Thread(() -> drive(client, request, deadline, produceLatency, errors)));
+        }
+        for (int i = 0; i < consumers; i++) {
+            HttpRequest request = HttpRequest.newBuilder(
+                    URI.create(base + "/consumers/consumer" + i + "/events?timeoutMs=100")).GET().build();
+            threads.add(new Thread(() -> drive(client, request, deadline, fetchLatency, errors)));
+        }
+
+        long start = System.nanoTime();
+        for (Thread thread : threads) thread.start();
+        for (Thread thread : threads) thread.join();
+        double elapsed = (System.nanoTime() - start) / 1e9;
+
+        report("produce", produceLatency.snapshot(), elapsed);
+        report("fetch", fetchLatency.snapshot(), elapsed);
+        System.out.println("errors: " + errors.get());
+    }
+
+    private static void drive(HttpClient client, HttpRequest request, long deadline, Histogram latency,
+                              AtomicLong errors) {
+        while (System.nanoTime() < deadline) {
+            long start = System.nanoTime();
+            try {
+                HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+                if (response.statusCode() != 200) errors.incrementAndGet();
+            } catch (Exception e) {
+                errors.incrementAndGet();
+                continue;
+            }
+            latency.record(System.nanoTime() - start);
+        }
+    }
+
+    private static String events(int batchSize) {
+        StringBuilder events = new StringBuilder("{\"producer\":\"producer\",\"events\":[");
+        for (int i = 0; i < batchSize; i++) {
+            if (i > 0) events.append(',');
+            events.append("{\"id\":\"event").append(i).append("\",\"value\":{\"event\":").append(i).append("}}");
+        }
+        return events.append("]}").toString();
+    }
+
+    private static void report(String name, HistogramSnapshot latency, double elapsed) {
+        System.out.printf("%s: %.0f requests/s, p50 %.2f ms, p99 %.2f ms, max %.2f ms%n",
+                name, latency.getCount() / elapsed, latency.getP50() / 1e6, latency.getP99() / 1e6,
+                latency.getMax() / 1e6);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,444 @@
+package cli;
+
+import org.json.JSONObject;
+import tributary.Allocation;
+import tributary.Rebalance;
+import tributary.Tributary;
+import tributary.inputs.EventInput;
+import tributary.metrics.Histogram;
+import tributary.metrics.HistogramSnapshot;
+import tributary.producer.message.Message;
+import tributary.sink.NoOpSink;
+import tributary.storage.DiskStorage;
+import tributary.topic.RetentionPolicy;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Puts reproducible load on a Tributary in this process: creates the topics, partitions, producers and
+ * consumer groups, drives producing and polling threads at the rates given for a number of seconds, then
+ * prints throughput, latency percentiles, consumer lag and GC and heap statistics. Progress is printed
+ * every --report-seconds, so that a long soak run shows lag or heap growing before it ends.
+ * <p>
+ * Rates are totals over every producing or every polling thread, 0 being as fast as possible. With a rate,
+ * each thread sends on a fixed schedule and produce latency is measured from when an event was due rather
+ * than when it was sent, so a stall counts against every event it delays. Events have unique ids, and keys
+ * that are unique, routed round robin, or uniform:n over n keys or zipf:n[:exponent] over n keys, each key
+ * routed to one partition by its hash; the seed makes the keys of a run repeatable. Retention limits
+ * the age and bytes kept per partition, so that a soak run keeps a bounded heap or disk.
+ * Usage: LoadTest [--topics n] [--partitions n] [--producers n] [--groups n] [--consumers n] [--seconds n]
+ * [--produce-rate events/s] [--consume-rate events/s] [--payload bytes] [--batch events] [--keys spec]
+ * [--seed n] [--report-seconds n] [--retention-ms n] [--retention-bytes n] [--data directory]
+ */
+public class LoadTest {
+    private static final int POLL_MAX_RECORDS = 500;
+    private static final long POLL_MAX_BYTES = 1024 * 1024;
+    private static final long POLL_TIMEOUT_MS = 100;
+
+    private final int topics;
+    private final int partitions;
+    private final int producers;
+    private final int groups;
+    private final int consumers;
+    private final long seconds;
+    private final long produceRate;
+    private final long consumeRate;
+    private final int batchSize;
+    private final Keys keys;
+    private final long seed;
+    private final long reportSeconds;
+    private final long retentionMs;
+    private final long retentionBytes;
+    private final JSONObject payload;
+
+    private final Histogram produceLatency = new Histogram();
+    private final Histogram pollLatency = new Histogram();
+    private final Histogram endToEndLatency = new Histogram();
+    private final AtomicLong produced = new AtomicLong();
+    private final AtomicLong consumed = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private volatile boolean stopped = false;
+
+    private LoadTest(List<String> options) {
+        topics = Integer.parseInt(option(options, "--topics", "1"));
+        partitions = Integer.parseInt(option(options, "--partitions", "8"));
+        producers = Integer.parseInt(option(options, "--producers", "4"));
+        groups = Integer.parseInt(option(options, "--groups", "1"));
+        consumers = Integer.parseInt(option(options, "--consumers", "4"));
+        seconds = Long.parseLong(option(options, "--seconds", "30"));
+        produceRate = Long.parseLong(option(options, "--produce-rate", "0"));
+        consumeRate = Long.parseLong(option(options, "--consume-rate", "0"));
+        batchSize = Integer.parseInt(option(options, "--batch", "1"));
+        keys = Keys.parse(option(options, "--keys", "unique"));
+        seed = Long.parseLong(option(options, "--seed", "42"));
+        reportSeconds = Long.parseLong(option(options, "--report-seconds", "10"));
+        retentionMs = Long.parseLong(option(options, "--retention-ms", "0"));
+        retentionBytes = Long.parseLong(option(options, "--retention-bytes", "0"));
+        payload = payload(Integer.parseInt(option(options, "--payload", "100")));
+        if (topics < 1 || partitions < 1 || producers < 0 || groups < 0 || consumers < 1 || batchSize < 1
+                || seconds < 1 || reportSeconds < 1 || produceRate < 0 || consumeRate < 0 || retentionMs < 0
+                || retentionBytes < 0)
+            throw new IllegalArgumentException("Counts, seconds and batch must be positive, rates and retention "
+                    + "not negative");
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        List<String> options = new ArrayList<>(Arrays.asList(args));
+        String data = option(options, "--data", null);
+        LoadTest test = new LoadTest(options);
+        if (!options.isEmpty()) throw new IllegalArgumentException("Unknown options " + options);
+
+        try (Tributary t = data == null ? new Tributary() : new Tributary(new DiskStorage(Paths.get(data)))) {
+            t.setEventSink(new NoOpSink());
+            test.setUp(t);
+            test.run(t);
+        }
+    }
+
+    private static String option(List<String> options, String name, String defaultValue) {
+        int i = options.indexOf(name);
+        if (i < 0) return defaultValue;
+        if (i + 1 == options.size()) throw new IllegalArgumentException("Option " + name + " needs a value");
+        String value = options.get(i + 1);
+        options.subList(i, i + 2).clear();
+        return value;
+    }
+
+    private void setUp(Tributary t) {
+        // keyed events name their partition, so that the ids stay unique while the keys repeat
+        Allocation allocation = keys instanceof UniqueKeys ? Allocation.ROUNDROBIN : Allocation.MANUAL;
+        for (int i = 0; i < producers; i++) t.createProducer(producerId(i), String.class, allocation);
+        for (int i = 0; i < topics; i++) {
+            t.createTopic(topicId(i), JSONObject.class);
+            if (retentionMs > 0 || retentionBytes > 0)
+                t.setRetention(topicId(i), new RetentionPolicy(retentionMs, retentionBytes, 0, false));
+            for (int j = 0; j < partitions; j++) t.createPartition(topicId(i), partitionId(j));
+            for (int j = 0; j < groups; j++) {
+                t.createConsumerGroup(groupId(i, j), topicId(i), Rebalance.RANGE);
+                for (int k = 0; k < consumers; k++) t.createConsumer(groupId(i, j), consumerId(i, j, k));
+            }
+        }
+    }
+
+    private static String topicId(int topic) {
+        return "load" + topic;
+    }
+
+    private static String partitionId(int partition) {
+        return "p" + partition;
+    }
+
+    /**
+     * @return the partition of the events with key, or null to route events without a key round robin
+     */
+    private String partitionOf(String key) {
+        return key == null ? null : partitionId(Math.floorMod(key.hashCode(), partitions));
+    }
+
+    private static String producerId(int producer) {
+        return "producer" + producer;
+    }
+
+    private static String groupId(int topic, int group) {
+        return topicId(topic) + "-group" + group;
+    }
+
+    private static String consumerId(int topic, int group, int consumer) {
+        return groupId(topic, group) + "-consumer" + consumer;
+    }
+
+    private void run(Tributary t) throws InterruptedException {
+        int consumerThreads = topics * groups * consumers;
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < producers; i++) {
+            int producer = i;
+            Pacer pacer = new Pacer(produceRate, producers);
+            threads.add(new Thread(() -> produce(t, producer, pacer), "load-" + producerId(i)));
+        }
+        for (int i = 0; i < topics; i++) {
+            for (int j = 0; j < groups; j++) {
+                for (int k = 0; k < consumers; k++) {
+                    String consumerId = consumerId(i, j, k);
+                    Pacer pacer = new Pacer(consumeRate, consumerThreads);
+                    threads.add(new Thread(() -> consume(t, consumerId, pacer), "load-" + consumerId));
+                }
+            }
+        }
+
+        System.out.printf("%d topics of %d partitions, %d producers, %d consumers in %d groups per topic, "
+                        + "%d s%n", topics, partitions, producers, consumers, groups, seconds);
+        Jvm start = new Jvm();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) pool.resetPeakUsage();
+        long startNanos = System.nanoTime();
+        for (Thread thread : threads) thread.start();
+
+        long deadline = startNanos + TimeUnit.SECONDS.toNanos(seconds);
+        long lastProduced = 0;
+        long lastConsumed = 0;
+        Jvm last = start;
+        for (long now = System.nanoTime(); now < deadline; now = System.nanoTime()) {
+            long next = Math.min(deadline, now + TimeUnit.SECONDS.toNanos(reportSeconds));
+            TimeUnit.NANOSECONDS.sleep(next - now);
+            if (next == deadline) break;
+
+            Jvm jvm = new Jvm();
+            long producedNow = produced.get();
+            long consumedNow = consumed.get();
+            System.out.printf("%5ds: produced %.0f/s, consumed %.0f/s, lag %d, heap %d MB, gc %d in %d ms%n",
+                    TimeUnit.NANOSECONDS.toSeconds(next - startNanos),
+                    (double) (producedNow - lastProduced) / reportSeconds,
+                    (double) (consumedNow - lastConsumed) / reportSeconds, lag(t), jvm.heapUsed >> 20,
+                    jvm.gcCount - last.gcCount, jvm.gcMillis - last.gcMillis);
+            lastProduced = producedNow;
+            lastConsumed = consumedNow;
+            last = jvm;
+        }
+        stopped = true;
+        for (Thread thread : threads) thread.join();
+        double elapsed = (System.nanoTime() - startNanos) / 1e9;
+        report(t, elapsed, start);
+    }
+
+    private void produce(Tributary t, int producer, Pacer pacer) {
+        Random random = new Random(seed + producer);
+        String producerId = producerId(producer);
+        long sequence = 0;
+        int topic = producer % topics;
+        List<EventInput> batch = new ArrayList<>(batchSize);
+        while (!stopped) {
+            long due = pacer.acquire(batchSize);
+            String topicId = topicId(topic);
+            topic = (topic + 1) % topics;
+            try {
+                if (batchSize == 1) {
+                    t.produceEvent(producerId, topicId, payload, eventId(producer, sequence++),
+                            partitionOf(keys.next(random)));
+                } else {
+                    batch.clear();
+                    for (int i = 0; i < batchSize; i++) {
+                        batch.add(new EventInput(producerId, topicId, payload, eventId(producer, sequence++),
+                                partitionOf(keys.next(random))));
+                    }
+                    t.produceEvents(batch);
+                }
+            } catch (RuntimeException e) {
+                errors.incrementAndGet();
+                continue;
+            }
+            produceLatency.record(System.nanoTime() - due);
+            produced.addAndGet(batchSize);
+        }
+    }
+
+    private static String eventId(int producer, long sequence) {
+        return "event" + producer + "-" + sequence;
+    }
+
+    private void consume(Tributary t, String consumerId, Pacer pacer) {
+        while (!stopped) {
+            long start = System.nanoTime();
+            List<Message<JSONObject>> records;
+            try {
+                records = t.poll(consumerId, POLL_MAX_RECORDS, POLL_MAX_BYTES, POLL_TIMEOUT_MS);
+            } catch (InterruptedException e) {
+                return;
+            } catch (RuntimeException e) {
+                errors.incrementAndGet();
+                continue;
+            }
+            long now = Message.now();
+            pollLatency.record(System.nanoTime() - start);
+            for (Message<JSONObject> record : records) endToEndLatency.record(now - record.getTimeCreated());
+            consumed.addAndGet(records.size());
+            pacer.acquire(records.size());
+        }
+    }
+
+    /**
+     * @return the events produced but not yet consumed, summed over every group and partition
+     */
+    private static long lag(Tributary t) {
+        return t.getMetrics().getGauges().entrySet().stream()
+                .filter(x -> x.getKey().endsWith(".lag"))
+                .mapToLong(x -> x.getValue())
+                .sum();
+    }
+
+    private void report(Tributary t, double elapsed, Jvm start) {
+        Jvm end = new Jvm();
+        long peakHeap = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) peakHeap += pool.getPeakUsage().getUsed();
+        }
+        long bytes = (long) payload.toString().length() * produced.get();
+
+        System.out.println();
+        System.out.printf("produced: %d events, %.0f events/s, %.1f MB/s of payload%n", produced.get(),
+                produced.get() / elapsed, bytes / elapsed / (1 << 20));
+        System.out.printf("consumed: %d events, %.0f events/s%n", consumed.get(), consumed.get() / elapsed);
+        report(batchSize == 1 ? "produce latency" : "produce latency per batch", produceLatency.snapshot());
+        report("poll latency", pollLatency.snapshot());
+        report("end-to-end latency", endToEndLatency.snapshot());
+        System.out.println("consumer lag: " + lag(t) + " events");
+        System.out.printf("gc: %d collections, %d ms, %.2f%% of the run%n", end.gcCount - start.gcCount,
+                end.gcMillis - start.gcMillis, (end.gcMillis - start.gcMillis) / (elapsed * 10));
+        System.out.printf("heap: %d MB used, %d MB peak, %d MB committed, %d MB max%n", end.heapUsed >> 20,
+                peakHeap >> 20, end.heapCommitted >> 20, end.heapMax >> 20);
+        System.out.println("errors: " + errors.get());
+    }
+
+    private static void report(String name, HistogramSnapshot latency) {
+        System.out.printf("%s: p50 %.3f ms, p99 %.3f ms, p99.9 %.3f ms, max %.3f ms%n", name,
+                latency.getP50() / 1e6, latency.getP99() / 1e6, latency.getP999() / 1e6, latency.getMax() / 1e6);
+    }
+
+    /**
+     * @return a JSON payload whose serialised form is about size bytes
+     */
+    private static JSONObject payload(int size) {
+        StringBuilder value = new StringBuilder();
+        for (int i = 0; i < Math.max(1, size - "{\"event\":\"\"}".length()); i++) value.append((char) ('a' + i % 26));
+        return new JSONObject().put("event", value.toString());
+    }
+
+    /**
+     * Spaces the events of one of threads threads sharing a rate evenly. A thread that falls behind sends
+     * without waiting until it is back on schedule, rather than skipping the events it owes.
+     */
+    private static final class Pacer {
+        private final long intervalNanos;
+        private long next = System.nanoTime();
+
+        private Pacer(long rate, int threads) {
+            this.intervalNanos = rate == 0 ? 0 : TimeUnit.SECONDS.toNanos(threads) / rate;
+        }
+
+        /**
+         * waits until events may be sent
+         * @return when they were due
+         */
+        private long acquire(int events) {
+            if (intervalNanos == 0) return System.nanoTime();
+            long due = next;
+            next += intervalNanos * events;
+            for (long wait = due - System.nanoTime(); wait > 0; wait = due - System.nanoTime()) {
+                LockSupport.parkNanos(wait);
+            }
+            return due;
+        }
+    }
+
+    /**
+     * Picks the key of each event, which picks its partition.
+     */
+    private interface Keys {
+        /**
+         * @return the key, or null for none
+         */
+        String next(Random random);
+
+        /**
+         * @param spec unique, uniform:n or zipf:n[:exponent]
+         */
+        static Keys parse(String spec) {
+            String[] parts = spec.split(":");
+            try {
+                switch (parts[0]) {
+                    case "unique":
+                        if (parts.length == 1) return new UniqueKeys();
+                        break;
+                    case "uniform":
+                        if (parts.length == 2) {
+                            int n = Integer.parseInt(parts[1]);
+                            if (n > 0) return random -> "key" + random.nextInt(n);
+                        }
+                        break;
+                    case "zipf":
+                        if (parts.length == 2 || parts.length == 3) {
+                            int n = Integer.parseInt(parts[1]);
+                            double exponent = parts.length == 3 ? Double.parseDouble(parts[2]) : 1;
+                            if (n > 0 && exponent > 0) return new ZipfKeys(n, exponent);
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            } catch (NumberFormatException e) {
+                // reported below
+            }
+            throw new IllegalArgumentException("Keys must be unique, uniform:n or zipf:n[:exponent], not " + spec);
+        }
+    }
+
+    /**
+     * Events keyed by their unique id alone, so without a key of their own.
+     */
+    private static final class UniqueKeys implements Keys {
+        @Override
+        public String next(Random random) {
+            return null;
+        }
+    }
+
+    /**
+     * Key i of n is picked with probability proportional to 1 / (i + 1)^exponent, so a few keys take most
+     * of the events, by binary search of the cumulative distribution.
+     */
+    private static final class ZipfKeys implements Keys {
+        private final double[] cumulative;
+
+        private ZipfKeys(int n, double exponent) {
+            cumulative = new double[n];
+            double sum = 0;
+            for (int i = 0; i < n; i++) {
+                sum += 1 / Math.pow(i + 1, exponent);
+                cumulative[i] = sum;
+            }
+            for (int i = 0; i < n; i++) cumulative[i] /= sum;
+        }
+
+        @Override
+        public String next(Random random) {
+            int i = Arrays.binarySearch(cumulative, random.nextDouble());
+            return "key" + Math.min(i < 0 ? -i - 1 : i, cumulative.length - 1);
+        }
+    }
+
+    /**
+     * The GC and heap figures of this JVM at one point in time.
+     */
+    private static final class Jvm {
+        private final long gcCount;
+        private final long gcMillis;
+        private final long heapUsed;
+        private final long heapCommitted;
+        private final long heapMax;
+
+        private Jvm() {
+            long count = 0;
+            long millis = 0;
+            for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+                count += Math.max(0, collector.getCollectionCount());
+                millis += Math.max(0, collector.getCollectionTime());
+            }
+            MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+            gcCount = count;
+            gcMillis = millis;
+            heapUsed = heap.getUsed();
+            heapCommitted = heap.getCommitted();
+            heapMax = heap.getMax();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,9 @@
+package tributary;
+
+/**
+ * When producing an event returns: once the leader appended it, or once every in-sync replica has it
+ */
+public enum Acks {
+    LEADER,
+    ALL
+}
\ No newline at end of file
@@ -2,5 +2,9 @@ package tributary;
 
 public enum Allocation {
     RANDOM,
-    MANUAL
+    MANUAL,
+    ROUNDROBIN,
+    STICKY,
+    HASH,
+    CUSTOM
 }
@@ -2,5 +2,6 @@ package tributary;
 
 public enum Rebalance {
     RANGE,
-    ROUNDROBIN
+    ROUNDROBIN,
+    STICKY
 }
@@ -1,19 +1,311 @@
 package tributary;
 
 import org.json.JSONObject;
+import tributary.compression.CompressionCodec;
+import tributary.compression.CompressionCodecs;
 import tributary.consumer.ConsumerGroup;
+import tributary.consumer.GroupCoordinator;
+import tributary.consumer.Subscription;
 import tributary.inputs.ConsumerInput;
 import tributary.inputs.EventInput;
+import tributary.inputs.InputResult;
+import tributary.metrics.MetricsRegistry;
+import tributary.metrics.MetricsSnapshot;
+import tributary.producer.BatchProducer;
 import tributary.producer.message.Message;
 import tributary.producer.Producer;
+import tributary.producer.partitioner.Partitioner;
+import tributary.replication.ReplicaFetcher;
+import tributary.replication.ReplicaSet;
+import tributary.replication.ReplicationServer;
+import tributary.serde.Serde;
+import tributary.serde.Serdes;
+import tributary.sink.AsyncLogSink;
+import tributary.sink.EventSink;
+import tributary.storage.DiskStorage;
+import tributary.snapshot.Snapshot;
+import tributary.topic.AppendNotifier;
+import tributary.topic.CompressedLog;
+import tributary.topic.EventLog;
+import tributary.topic.Partition;
+import tributary.topic.PartitionLog;
+import tributary.topic.RetentionPolicy;
 import tributary.topic.Topic;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collectors;
 
-public class Tributary {
-    private final HashMap<String, Topic> topics = new HashMap<>();
-    private final HashMap<String, Producer> producers = new HashMap<>();
+public class Tributary implements AutoCloseable {
+    public static final long CLEANER_INTERVAL_MS = 1000;
+    // how long producing with Acks.ALL waits for the replicas in sync, longer than a follower stays in sync
+    public static final long ACKS_TIMEOUT_MS = 3 * ReplicaSet.DEFAULT_MAX_LAG_MS;
+
+    private final Map<String, Topic<?>> topics = new ConcurrentHashMap<>();
+    private final Map<String, Producer<?>> producers = new ConcurrentHashMap<>();
+    // indexes kept in step with the topics so lookups never scan them
+    private final Map<String, ConsumerGroup<?>> consumerGroups = new ConcurrentHashMap<>();
+    private final Map<String, Topic<?>> consumerGroupTopics = new ConcurrentHashMap<>();
+    private final Map<String, ConsumerGroup<?>> consumers = new ConcurrentHashMap<>();
+    private final Map<String, Subscription<?>> subscriptions = new ConcurrentHashMap<>();
+    private final Map<Partition<?>, ReplicaFetcher<?>> fetchers = new ConcurrentHashMap<>();
+    private final Set<BatchProducer<?>> batchProducers = ConcurrentHashMap.newKeySet();
+    // identifies this Tributary to the leaders of the partitions it follows
+    private final String replicaId = UUID.randomUUID().toString();
+    private ReplicationServer replicationServer;
+    private final ExecutorService executor;
+    private final DiskStorage storage;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(x -> {
+        Thread thread = new Thread(x, "tributary-scheduler");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AsyncLogSink defaultSink = new AsyncLogSink(System.out);
+    private volatile EventSink sink = defaultSink;
+    private final MetricsRegistry metrics = new MetricsRegistry();
+    private final GroupCoordinator coordinator = new GroupCoordinator(this::applyGroupChanges);
+    // snapshots are written one after another, so that an older snapshot never replaces a newer one
+    private CompletableFuture<Void> lastSnapshot = CompletableFuture.completedFuture(null);
+
+    public Tributary() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public Tributary(ExecutorService executor) {
+        this(executor, null);
+    }
+
+    public Tributary(DiskStorage storage) {
+        this(ForkJoinPool.commonPool(), storage);
+    }
+
+    /**
+     * @param executor the executor on which parallelProduce and parallelConsume run their inputs,
+     * e.g. a ForkJoinPool or a virtual thread per task executor
+     * @param storage where partitions are stored, or null to keep them in memory. Topics and partitions
+     * already in storage are recovered
+     */
+    public Tributary(ExecutorService executor, DiskStorage storage) {
+        this.executor = executor;
+        this.storage = storage;
+        if (storage != null) recover();
+        if (storage != null && storage.getFlushIntervalMs() > 0) {
+            scheduler.scheduleWithFixedDelay(this::flush, storage.getFlushIntervalMs(), storage.getFlushIntervalMs(),
+                    TimeUnit.MILLISECONDS);
+        }
+        scheduler.scheduleWithFixedDelay(this::clean, CLEANER_INTERVAL_MS, CLEANER_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(this::coordinate, GroupCoordinator.TICK_MS, GroupCoordinator.TICK_MS,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * sets where produced and consumed events are reported, by default logged to System.out
+     * from a background thread
+     * @param sink the sink, e.g. a NoOpSink to report nothing
+     */
+    public void setEventSink(EventSink sink) {
+        this.sink = sink;
+    }
+
+    /**
+     * appends the batches of open batch producers, writes out events still queued for the default sink,
+     * stops background work and flushes and closes the topics stored on disk
+     */
+    @Override
+    public void close() {
+        for (BatchProducer<?> batchProducer : batchProducers) {
+            try {
+                batchProducer.close();
+            } catch (RuntimeException e) {
+                System.out.println("Closing a batch producer failed: " + e.getMessage());
+            }
+        }
+        subscriptions.values().forEach(Subscription::close);
+        fetchers.values().forEach(ReplicaFetcher::close);
+        synchronized (this) {
+            if (replicationServer != null) replicationServer.close();
+        }
+        scheduler.shutdownNow();
+        defaultSink.close();
+        try {
+            // a flush or clean still running would find its files closed
+            scheduler.awaitTermination(CLEANER_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Topic<?> topic : topics.values()) {
+            try {
+                topic.close();
+            } catch (RuntimeException e) {
+                System.out.println("Closing topic " + topic.getTopicId() + " failed: " + e.getMessage());
+            }
+        }
+    }
+
+    private void recover() {
+        for (String topicId : storage.getTopicIds()) {
+            // topics stored before topics had serdes hold JSONObject events
+            String serdeName = storage.getSerdeName(topicId);
+            Serde<?> serde = serdeName == null ? Serdes.JSON : Serdes.forName(serdeName);
+            recoverTopic(topicId, serde);
+        }
+    }
+
+    private <T> void recoverTopic(String topicId, Serde<T> serde) {
+        Topic<T> topic = new Topic<>(topicId, storage, metrics, serde);
+        storage.getPartitionIds(topicId).forEach(topic::createPartition);
+        topics.put(topicId, topic);
+    }
+
+    /**
+     * writes the state of this Tributary to file in the background: its topics with their retention,
+     * partitions and events, producers, consumer groups, consumer assignments and committed offsets.
+     * Events are not copied and produce and consume are not paused, only creating and deleting waits
+     * while the state is captured. Events of topics stored on disk are not written, as storage holds them
+     * @param file the file to write, replaced only once the snapshot is written
+     * @return completes once the snapshot is written
+     */
+    public synchronized CompletableFuture<Void> snapshot(Path file) {
+        Snapshot snapshot = Snapshot.capture(topics.values(), producers.values());
+        lastSnapshot = lastSnapshot
+                .handle((ignored, e) -> null)
+                .thenRunAsync(() -> snapshot.write(file), executor);
+        return lastSnapshot;
+    }
+
+    /**
+     * writes a snapshot to file every intervalMs, until closed
+     */
+    public void scheduleSnapshots(Path file, long intervalMs) {
+        scheduler.scheduleWithFixedDelay(() -> snapshot(file).whenComplete((ignored, e) -> {
+            if (e != null) System.out.println("Snapshot to " + file + " failed: " + unwrap(e).getMessage());
+        }), intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * restores the state written to file by snapshot. The events of each partition are read on the
+     * executor in parallel. Topics stored on disk that were already recovered from storage keep their events
+     * @throws IllegalArgumentException if file is not a snapshot, a producer, consumer group or consumer of
+     * the snapshot already exists, or the codec of one of its topics is not registered
+     */
+    public synchronized void restore(Path file) {
+        Snapshot snapshot = Snapshot.read(file);
+        for (Snapshot.ProducerState producer : snapshot.getProducers()) {
+            if (producerExists(producer.getProducerId()))
+                throw new IllegalArgumentException("Producer with id " + producer.getProducerId()
+                        + " already exists");
+        }
+        for (Snapshot.TopicState topic : snapshot.getTopics()) {
+            CompressionCodecs.forName(topic.getCompression());
+            for (Snapshot.ConsumerGroupState consumerGroup : topic.getConsumerGroups()) {
+                if (consumerGroupExists(consumerGroup.getConsumerGroupId()))
+                    throw new IllegalArgumentException("Consumer group with id "
+                            + consumerGroup.getConsumerGroupId() + " already exists");
+                for (String consumerId : consumerGroup.getAssignments().keySet()) {
+                    if (consumerExists(consumerId))
+                        throw new IllegalArgumentException("Consumer with id " + consumerId + " already exists");
+                }
+            }
+        }
+
+        Map<String, Map<String, CompletableFuture<EventLog<Object>>>> logs = snapshot.loadEvents(file, executor);
+        for (Snapshot.TopicState state : snapshot.getTopics()) {
+            restoreTopic(state, logs.get(state.getTopicId()));
+        }
+        for (Snapshot.ProducerState producer : snapshot.getProducers()) {
+            producers.put(producer.getProducerId(),
+                    new Producer<>(producer.getProducerId(), producer.getAllocation()));
+        }
+
+        System.out.println("Snapshot " + file + " was successfully restored");
+    }
+
+    private <T> void restoreTopic(Snapshot.TopicState state, Map<String, CompletableFuture<EventLog<T>>> logs) {
+        Topic<T> topic = restoredTopic(state);
+        if (!topic.isStored() || !state.getRetention().isCompact()) topic.setRetention(state.getRetention());
+
+        // the events of a compressed topic are compressed in parallel too
+        CompressionCodec compression = topic.getCompression();
+        Map<String, CompletableFuture<? extends PartitionLog<T>>> partitionLogs = new HashMap<>();
+        for (Snapshot.PartitionState partition : state.getPartitions()) {
+            CompletableFuture<EventLog<T>> log = logs.get(partition.getPartitionId());
+            if (log == null || topic.getPartitions().containsKey(partition.getPartitionId())) continue;
+            partitionLogs.put(partition.getPartitionId(), compression == null ?
+                    log :
+                    log.thenApplyAsync(x -> CompressedLog.copyOf(compression, x), executor));
+        }
+
+        for (Snapshot.PartitionState partition : state.getPartitions()) {
+            if (topic.getPartitions().containsKey(partition.getPartitionId())) continue;
+            CompletableFuture<? extends PartitionLog<T>> log = partitionLogs.get(partition.getPartitionId());
+            // a partition stored on disk but not recovered keeps the offsets it had, without its events
+            topic.createPartition(partition.getPartitionId(), log != null ?
+                    join(log) :
+                    EventLog.restore(partition.getEndOffset(), Collections.emptyList()));
+        }
+
+        for (Snapshot.ConsumerGroupState groupState : state.getConsumerGroups()) {
+            String consumerGroupId = groupState.getConsumerGroupId();
+            ConsumerGroup<T> consumerGroup = topic.addConsumerGroup(consumerGroupId, groupState.getRebalance());
+            consumerGroups.put(consumerGroupId, consumerGroup);
+            consumerGroupTopics.put(consumerGroupId, topic);
+
+            groupState.getAssignments().forEach((consumerId, partitionIds) -> {
+                consumerGroup.addConsumer(consumerId);
+                consumers.put(consumerId, consumerGroup);
+                tributary.consumer.Consumer<T> consumer = consumerGroup.getConsumers().get(consumerId);
+                for (String partitionId : partitionIds) {
+                    Partition<T> partition = topic.getPartitions().get(partitionId);
+                    partition.addConsumer(consumer);
+                    consumer.assignPartition(partition);
+                }
+            });
+            groupState.getOffsets().forEach(consumerGroup::commitOffset);
+        }
+    }
+
+    private <T> Topic<T> restoredTopic(Snapshot.TopicState state) {
+        Topic<T> topic = getTopic(state.getTopicId());
+        if (topic != null) return topic;
+
+        // the events restored were read with the serde named by the snapshot
+        @SuppressWarnings("unchecked")
+        Serde<T> serde = (Serde<T>) Serdes.forName(state.getSerde());
+        Topic<T> created = new Topic<>(state.getTopicId(), null, metrics, serde);
+        created.setCompression(CompressionCodecs.forName(state.getCompression()));
+        topics.put(state.getTopicId(), created);
+        return created;
+    }
+
+    private static <L> L join(CompletableFuture<L> log) {
+        try {
+            return log.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+    }
 
     /**
      * creates a topic
@@ -23,15 +315,112 @@ public class Tributary {
      * @throws IllegalArgumentException if topicId already exists
      */
     public <T> void createTopic(String topicId, Class<T> type) {
+        createTopic(topicId, Serdes.forType(type));
+    }
+
+    /**
+     * creates a topic whose events are serialised by serde
+     * @param topicId the id with which this new topic can be interfaced with
+     * @param serde serialises the values of the events, e.g. one of Serdes
+     * @throws IllegalArgumentException if topicId already exists
+     */
+    public synchronized <T> void createTopic(String topicId, Serde<T> serde) {
         if (topicExists(topicId))
             throw new IllegalArgumentException("Topic with " + topicId + " already exists");
 
-        topics.put(topicId, new Topic<T>(topicId));
+        topics.put(topicId, new Topic<>(topicId, storage, metrics, serde));
 
-        System.out.println("Topic with id " + topicId + " of type " + type.getSimpleName()
+        System.out.println("Topic with id " + topicId + " of type " + serde.getType().getSimpleName()
                 + " was successfully created");
     }
 
+    /**
+     * @return the serde the events of a topic are serialised by
+     * @throws IllegalArgumentException if topic does not exist
+     */
+    public <T> Serde<T> getSerde(String topicId) {
+        Topic<T> topic = getTopic(topicId);
+        if (topic == null)
+            throw new IllegalArgumentException("Topic with id " + topicId + " does not exist");
+
+        return topic.getSerde();
+    }
+
+    /**
+     * @return the serde the events a consumer reads are serialised by
+     * @throws IllegalArgumentException if consumer does not exist
+     */
+    public <T> Serde<T> getConsumerSerde(String consumerId) {
+        Topic<T> topic = getTopicWithConsumer(consumerId);
+        if (topic == null)
+            throw new IllegalArgumentException("Consumer with id " + consumerId + " does not exist");
+
+        return topic.getSerde();
+    }
+
+    /**
+     * sets how long the events of a topic are kept. Events are dropped by a background cleaner
+     * every CLEANER_INTERVAL_MS, without moving the offsets of the events kept
+     * @param topicId the target topic id
+     * @param retention the limits on the age, bytes and count of the events kept per partition, and
+     * whether events superseded by a later event with the same id are dropped
+     * @throws IllegalArgumentException if topic does not exist or retention compacts a topic stored on disk
+     */
+    public void setRetention(String topicId, RetentionPolicy retention) {
+        if (!topicExists(topicId))
+            throw new IllegalArgumentException("Topic with id " + topicId + " does not exist");
+
+        getTopic(topicId).setRetention(retention);
+
+        System.out.println("Retention of topic " + topicId + " was successfully set");
+    }
+
+    /**
+     * sets the codec the events of a topic are compressed with in memory, in batches of events compressed
+     * together as they are appended and decompressed once each as they are read
+     * @param topicId the target topic id
+     * @param compression a codec, e.g. one of CompressionCodecs, or null for none
+     * @throws IllegalArgumentException if topic does not exist, already has partitions, is stored on disk
+     * or is compacted
+     */
+    public void setCompression(String topicId, CompressionCodec compression) {
+        if (!topicExists(topicId))
+            throw new IllegalArgumentException("Topic with id " + topicId + " does not exist");
+
+        getTopic(topicId).setCompression(compression);
+
+        System.out.println("Compression of topic " + topicId + " was successfully set to "
+                + CompressionCodecs.nameOf(compression));
+    }
+
+    /**
+     * drops the events of every topic its retention policy does not keep
+     */
+    public void clean() {
+        for (Topic<?> topic : topics.values()) {
+            try {
+                topic.clean();
+            } catch (RuntimeException e) {
+                // the next run tries again, failing here would cancel every later run
+                System.out.println("Cleaning topic " + topic.getTopicId() + " failed: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * forces the events appended to every topic stored on disk to the disk
+     */
+    public void flush() {
+        for (Topic<?> topic : topics.values()) {
+            try {
+                topic.flush();
+            } catch (RuntimeException e) {
+                // the next run tries again, failing here would cancel every later run
+                System.out.println("Flushing topic " + topic.getTopicId() + " failed: " + e.getMessage());
+            }
+        }
+    }
+
     /**
      * creates a new producer
      * @param producerId the id with which this new producer can be interfaced with
@@ -40,7 +429,7 @@ public class Tributary {
      * @param <T> the class type of this producer
      * @throws IllegalArgumentException if producerId already exists
      */
-    public <T> void createProducer(String producerId, Class<T> type, Allocation allocation) {
+    public synchronized <T> void createProducer(String producerId, Class<T> type, Allocation allocation) {
         if (producerExists(producerId))
             throw new IllegalArgumentException("Producer with id " + producerId + " already exists");
 
@@ -50,13 +439,31 @@ public class Tributary {
                 + " was successfully created");
     }
 
+    /**
+     * creates a new producer which routes events with a custom partitioner
+     * @param producerId the id with which this new producer can be interfaced with
+     * @param type the class type of this producer
+     * @param partitioner picks the partition of each event produced
+     * @param <T> the class type of this producer
+     * @throws IllegalArgumentException if producerId already exists
+     */
+    public synchronized <T> void createProducer(String producerId, Class<T> type, Partitioner partitioner) {
+        if (producerExists(producerId))
+            throw new IllegalArgumentException("Producer with id " + producerId + " already exists");
+
+        producers.put(producerId, new Producer<T>(producerId, partitioner));
+
+        System.out.println("Producer with id " + producerId + " and type " + type.getSimpleName()
+                + " was successfully created");
+    }
+
     /**
      * creates a new partition
      * @param topicId the target topic id where the new partition will be created
      * @param partitionId the id with which this new partition can be interfaced with
      * @throws IllegalArgumentException if topicId does not exist or partitionId already exists
      */
-    public void createPartition(String topicId, String partitionId) {
+    public synchronized void createPartition(String topicId, String partitionId) {
         if (!topicExists(topicId))
             throw new IllegalArgumentException("Topic with id " + topicId + " does not exist");
 
@@ -73,14 +480,16 @@ public class Tributary {
      * @param rebalance the rebalance method for this new consumer group (from RoundRobin and Range)
      * @throws  IllegalArgumentException if topicId does not exist or consumerGroup already exists
      */
-    public void createConsumerGroup(String consumerGroupId, String topicId, Rebalance rebalance) {
+    public synchronized void createConsumerGroup(String consumerGroupId, String topicId, Rebalance rebalance) {
         if (!topicExists(topicId))
             throw new IllegalArgumentException("Topic with id " + topicId + " does not exist");
 
         if (consumerGroupExists(consumerGroupId))
             throw new IllegalArgumentException("Consumer group with id " + consumerGroupId + " already exists");
 
-        topics.get(topicId).addConsumerGroup(consumerGroupId, rebalance);
+        Topic<?> topic = getTopic(topicId);
+        consumerGroups.put(consumerGroupId, topic.addConsumerGroup(consumerGroupId, rebalance));
+        consumerGroupTopics.put(consumerGroupId, topic);
 
         System.out.println("ConsumerGroup on topic " + topicId + " with id " + consumerGroupId +
                 " was successfully created");
@@ -92,15 +501,17 @@ public class Tributary {
      * @param consumerId the id with which this new consumer can be interfaced w
      * @throws IllegalArgumentException if consumerGroup does not exist or consumer already exists
      */
-    public void createConsumer(String consumerGroupId, String consumerId) {
+    public synchronized void createConsumer(String consumerGroupId, String consumerId) {
         if (!consumerGroupExists(consumerGroupId))
             throw new IllegalArgumentException("ConsumerGroup with id " + consumerGroupId + " does not exist");
 
         if (consumerExists(consumerId))
             throw new IllegalArgumentException("Consumer group with id " + consumerId + " already exists");
 
-        getConsumerGroup(consumerGroupId).addConsumer(consumerId);
-        getTopicWithConsumer(consumerId).rebalance();
+        ConsumerGroup<?> consumerGroup = getConsumerGroup(consumerGroupId);
+        consumerGroup.addConsumer(consumerId);
+        consumers.put(consumerId, consumerGroup);
+        rebalance(consumerGroupId);
 
         System.out.println("Consumer on consumerGroup " + consumerGroupId + " with id " + consumerId +
                 " was successfully created");
@@ -111,46 +522,150 @@ public class Tributary {
      * @param consumerId the target consumer id to be deleted
      * @throws IllegalArgumentException if consumerId does not exist
      */
-    public void deleteConsumer(String consumerId) {
+    public synchronized void deleteConsumer(String consumerId) {
         if (!consumerExists(consumerId))
             throw new IllegalArgumentException("Consumer with id " + consumerId + " does not exist");
 
-        getConsumerGroupWithConsumer(consumerId).deleteConsumer(consumerId);
-        getTopicWithConsumer(consumerId).rebalance();
+        ConsumerGroup<?> consumerGroup = removeConsumer(consumerId);
+        coordinator.remove(consumerId);
+        rebalance(consumerGroup.getConsumerGroupId());
 
         System.out.println("Successfully deleted consumer with id " + consumerId);
     }
 
-    private void produceEvent(EventInput input) {
-        String producerId = input.getProducerId();
-        String topicId = input.getTopicId();
-        JSONObject file = input.getFile();
-        String fileName = input.getFileName();
-        String allocation = input.getAllocation();
+    /**
+     * adds a consumer to a consumer group for as long as it heartbeats within sessionTimeoutMs, after which
+     * it is deleted as if it crashed. Unlike createConsumer, the group is rebalanced within
+     * GroupCoordinator.TICK_MS, once for every consumer that joined, left or expired meanwhile, so the
+     * consumer is assigned its partitions then
+     * @throws IllegalArgumentException if consumerGroup does not exist, consumer already exists or
+     * sessionTimeoutMs is not positive
+     */
+    public synchronized void joinGroup(String consumerGroupId, String consumerId, long sessionTimeoutMs) {
+        if (!consumerGroupExists(consumerGroupId))
+            throw new IllegalArgumentException("ConsumerGroup with id " + consumerGroupId + " does not exist");
 
-        if (!producerExists(producerId))
-            throw new IllegalArgumentException("Producer with id " + producerId + " doesn't exist");
+        if (consumerExists(consumerId))
+            throw new IllegalArgumentException("Consumer with id " + consumerId + " already exists");
 
-        if (!topicExists(topicId))
-            throw new IllegalArgumentException("Topic with id " + topicId + " does not exist");
+        coordinator.join(consumerId, consumerGroupId, sessionTimeoutMs);
+        ConsumerGroup<?> consumerGroup = getConsumerGroup(consumerGroupId);
+        consumerGroup.addConsumer(consumerId);
+        consumers.put(consumerId, consumerGroup);
+    }
 
-        Producer producer = getProducer(producerId);
+    /**
+     * renews the session of a consumer that joined its group. Consumers created with createConsumer have no
+     * session and never expire, so a heartbeat does nothing for them
+     * @throws IllegalArgumentException if consumer does not exist, e.g. as its session already expired
+     */
+    public void heartbeat(String consumerId) {
+        if (!coordinator.heartbeat(consumerId) && !consumerExists(consumerId))
+            throw new IllegalArgumentException("Consumer with id " + consumerId + " does not exist");
+    }
+
+    /**
+     * deletes a consumer, rebalancing its group within GroupCoordinator.TICK_MS like joinGroup does
+     * @throws IllegalArgumentException if consumer does not exist
+     */
+    public synchronized void leaveGroup(String consumerId) {
+        if (!consumerExists(consumerId))
+            throw new IllegalArgumentException("Consumer with id " + consumerId + " does not exist");
+
+        ConsumerGroup<?> consumerGroup = removeConsumer(consumerId);
+        coordinator.leave(consumerId, consumerGroup.getConsumerGroupId());
+    }
+
+    private void coordinate() {
+        try {
+            coordinator.tick();
+        } catch (RuntimeException e) {
+            // the next tick tries again, failing here would cancel every later tick
+            System.out.println("Coordinating consumer groups failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * deletes the consumers whose session expired, then rebalances each group that changed once
+     */
+    private synchronized void applyGroupChanges(List<String> expiredConsumerIds, Set<String> consumerGroupIds) {
+        for (String consumerId : expiredConsumerIds) {
+            if (!consumerExists(consumerId)) continue;
+            removeConsumer(consumerId);
+            System.out.println("Consumer with id " + consumerId + " expired as its session timed out");
+        }
+        for (String consumerGroupId : consumerGroupIds) {
+            if (consumerGroupTopics.containsKey(consumerGroupId)) rebalance(consumerGroupId);
+        }
+    }
+
+    private <T> void rebalance(String consumerGroupId) {
+        Topic<T> topic = getTopicWithConsumerGroup(consumerGroupId);
+        ConsumerGroup<T> consumerGroup = getConsumerGroup(consumerGroupId);
+        topic.rebalance(consumerGroup);
+    }
+
+    private ConsumerGroup<?> removeConsumer(String consumerId) {
+        Subscription<?> subscription = subscriptions.remove(consumerId);
+        if (subscription != null) subscription.close();
+        ConsumerGroup<?> consumerGroup = consumers.remove(consumerId);
+        consumerGroup.deleteConsumer(consumerId);
+        return consumerGroup;
+    }
+
+    private <T> void produceEvent(EventInput input) {
+        Producer<T> producer = getProducer(input.getProducerId());
+        Topic<T> topic = getTopic(producer, input);
+        Message<T> message = createMessage(producer, topic, input);
+
+        long offset = topic.addEvent(message, producer.getPartitioner());
+
+        sink.produced(input.getTopicId(), message);
+
+        if (producer.getAcks() == Acks.ALL)
+            awaitReplicated(topic.getPartitions().get(message.getKey()), offset + 1);
+    }
+
+    private static void awaitReplicated(Partition<?> partition, long endOffset) {
+        partition.awaitReplicated(endOffset, ACKS_TIMEOUT_MS);
+    }
+
+    private <T> Topic<T> getTopic(Producer<T> producer, EventInput input) {
+        if (producer == null)
+            throw new IllegalArgumentException("Producer with id " + input.getProducerId() + " doesn't exist");
+
+        Topic<T> topic = getTopic(input.getTopicId());
+        if (topic == null)
+            throw new IllegalArgumentException("Topic with id " + input.getTopicId() + " does not exist");
+
+        return topic;
+    }
+
+    private static <T> Message<T> createMessage(Producer<T> producer, Topic<T> topic, EventInput input) {
+        String producerId = input.getProducerId();
 
         if (producer.getAllocationStrategy().equals(Allocation.MANUAL) && !input.hasAllocation())
             throw new IllegalArgumentException("Producer with id " + producerId + " has manual allocation strategy" +
                     " but no partition was provided");
 
-        if (producer.getAllocationStrategy().equals(Allocation.RANDOM) && input.hasAllocation())
-            throw new IllegalArgumentException("Producer with id " + producerId + " has Random allocation" +
-                    " strategy but partition was provided");
+        if (!producer.getAllocationStrategy().equals(Allocation.MANUAL) && input.hasAllocation())
+            throw new IllegalArgumentException("Producer with id " + producerId + " has " +
+                    producer.getAllocationStrategy() + " allocation strategy but partition was provided");
 
-        Message message = input.hasAllocation() ?
-                producer.createMessage(file, fileName, allocation) :
-                producer.createMessage(file, fileName);
+        return producer.createMessage(payload(topic, input), input.getFileName(), input.getAllocation());
+    }
 
-        getTopic(topicId).addEvent(message);
+    private static byte[] payload(Topic<?> topic, EventInput input) {
+        if (input.getPayload() != null) return input.getPayload();
+        if (input.getFile() != null) return topic.serialize(input.getFile());
+        return serialize(topic.getSerde(), topic.getSerde().parse(input.getText()));
+    }
 
-        System.out.println("Event " + message.getId() + " was added to partition " + message.getKey());
+    private static <T> byte[] serialize(Serde<T> serde, Object value) {
+        if (!serde.getType().isInstance(value))
+            throw new IllegalArgumentException("Value of type " + value.getClass().getSimpleName() + " is not a "
+                    + serde.getType().getSimpleName());
+        return serde.serialize(serde.getType().cast(value));
     }
 
     /**
@@ -174,21 +689,97 @@ public class Tributary {
      * @param fileName the name of the file to be sent, also used as the id for the event
      * @param allocation the partition which this event should be allocated to
      * @throws IllegalArgumentException if producer does not exist, topic does not exist or if
-     * allocation was provided where producer allocation strategy is "Random"
+     * allocation was provided where producer allocation strategy is not "Manual"
      */
     public void produceEvent(String producerId, String topicId, JSONObject file, String fileName, String allocation) {
         produceEvent((new EventInput(producerId, topicId, file, fileName, allocation)));
     }
 
     /**
-     * produces multiple vents given an inputList
+     * produces an event whose value is serialised by the serde of the topic
+     * @param value the value, of the type of the topic
+     * @param eventId the id of the event
+     * @param allocation the partition which this event should be allocated to, or null if producer
+     * allocation strategy is not "Manual"
+     * @throws IllegalArgumentException if producer does not exist, topic does not exist, value is not of the
+     * type of the topic, or allocation is provided where producer allocation strategy is not "Manual" or the
+     * other way around
+     */
+    public void produceValue(String producerId, String topicId, Object value, String eventId, String allocation) {
+        Topic<?> topic = getTopic(topicId);
+        if (topic == null)
+            throw new IllegalArgumentException("Topic with id " + topicId + " does not exist");
+
+        produceEvent(new EventInput(producerId, topicId, serialize(topic.getSerde(), value), eventId, allocation));
+    }
+
+    /**
+     * produces a batch of events, appending the events routed to each partition as a single operation.
+     * Every input is validated and routed before any event is appended, so either all events are
+     * produced or none are
+     * @param eventInputList the events, produced in the order given within each partition
+     * @throws IllegalArgumentException if any input has a producer or topic that does not exist, or has
+     * allocation provided where producer allocation strategy is not "Manual" or the other way around
+     */
+    public void produceEvents(List<EventInput> eventInputList) {
+        // the events may be of topics of different types, each batch is of the type of its partition's topic
+        Map<Partition<Object>, List<Message<Object>>> batches = new LinkedHashMap<>();
+        Set<Partition<?>> acked = new HashSet<>();
+        List<Message<?>> messages = new ArrayList<>(eventInputList.size());
+        for (EventInput input : eventInputList) {
+            Producer<Object> producer = getProducer(input.getProducerId());
+            Topic<Object> topic = getTopic(producer, input);
+            Message<Object> message = createMessage(producer, topic, input);
+            Partition<Object> partition = topic.route(message, producer.getPartitioner());
+            batches.computeIfAbsent(partition, x -> new ArrayList<>()).add(message);
+            if (producer.getAcks() == Acks.ALL) acked.add(partition);
+            messages.add(message);
+        }
+
+        Map<Partition<?>, Long> endOffsets = new HashMap<>();
+        batches.forEach((partition, batch) -> endOffsets.put(partition, partition.addEvents(batch) + batch.size()));
+
+        EventSink sink = this.sink;
+        for (int i = 0; i < messages.size(); i++) sink.produced(eventInputList.get(i).getTopicId(), messages.get(i));
+
+        for (Partition<?> partition : acked) awaitReplicated(partition, endOffsets.get(partition));
+    }
+
+    /**
+     * creates a batching producer for a topic. Events sent through it are accumulated per partition and
+     * appended a batch at a time, without validating the producer and topic again per event
+     * @param producerId the producer which will produce the events
+     * @param topicId the topic which will receive the events
+     * @param batchSize the number of events after which a partition's batch is appended
+     * @param lingerMs the time after which a partition's batch is appended even if it is not full
+     * @throws IllegalArgumentException if producer does not exist, topic does not exist or batchSize
+     * or lingerMs are not positive
+     */
+    public <T> BatchProducer<T> createBatchProducer(String producerId, String topicId, int batchSize, long lingerMs) {
+        Producer<T> producer = getProducer(producerId);
+        if (producer == null)
+            throw new IllegalArgumentException("Producer with id " + producerId + " doesn't exist");
+
+        Topic<T> topic = getTopic(topicId);
+        if (topic == null)
+            throw new IllegalArgumentException("Topic with id " + topicId + " does not exist");
+
+        // tracked until closed, so that closing this Tributary appends the batches still lingering
+        BatchProducer<T> batchProducer = new BatchProducer<>(producer, topic, batchSize, lingerMs, scheduler,
+                () -> sink, batchProducers::remove);
+        batchProducers.add(batchProducer);
+        return batchProducer;
+    }
+
+    /**
+     * produces multiple events concurrently given an inputList
      * @param eventInputList the list of inputs
-     * @throws IllegalArgumentException if producer does not exist, topic does not exist, allocation
-     * is provided where producer allocation strategy is "Random" or allocation strategy is not provided
-     * where producer allocation strategy is "Manual";
+     * @return the result of each input, in the order given. An input fails if producer does not exist,
+     * topic does not exist, allocation is provided where producer allocation strategy is not "Manual" or
+     * allocation strategy is not provided where producer allocation strategy is "Manual"
      */
-    public void parallelProduce(List<EventInput> eventInputList) {
-        eventInputList.forEach(this::produceEvent);
+    public List<InputResult<EventInput>> parallelProduce(List<EventInput> eventInputList) {
+        return runParallel(eventInputList, this::produceEvent);
     }
 
     /**
@@ -199,10 +790,11 @@ public class Tributary {
      * consumer is not assigned to partition
      */
     public void consumeEvent(String consumerId, String partitionId) {
-        if (!consumerExists(consumerId))
+        Topic<?> topic = getTopicWithConsumer(consumerId);
+        if (topic == null)
             throw new IllegalArgumentException("Consumer with id " + consumerId + " does not exist");
 
-        getTopicWithConsumer(consumerId).consume(consumerId, partitionId);
+        report(consumerId, topic.getSerde(), topic.consume(consumerId, partitionId));
     }
 
     /**
@@ -214,17 +806,261 @@ public class Tributary {
      * consumer is not assigned to partition
      */
     public void consumeEvents(String consumerId, String partitionId, int amount) {
-        for (int i = 0; i < amount; i++) consumeEvent(consumerId, partitionId);
+        Topic<?> topic = getTopicWithConsumer(consumerId);
+        if (topic == null)
+            throw new IllegalArgumentException("Consumer with id " + consumerId + " does not exist");
+
+        report(consumerId, topic.getSerde(), topic.consume(consumerId, partitionId, amount));
+    }
+
+    private void report(String consumerId, Serde<?> serde, List<? extends Message<?>> events) {
+        EventSink sink = this.sink;
+        for (Message<?> event : events) sink.consumed(consumerId, event, serde);
+    }
+
+    /**
+     * reads the next events of every partition assigned to a consumer in one call
+     * @param consumerId the target consumer id which will consume the events
+     * @param maxRecords the maximum number of events to return
+     * @param maxBytes the maximum number of bytes to return, exceeded only to return at least one event
+     * @return the events read, in offset order within each partition
+     * @throws IllegalArgumentException if consumer does not exist
+     */
+    public <T> List<Message<T>> poll(String consumerId, int maxRecords, long maxBytes) {
+        ConsumerGroup<T> consumerGroup = getConsumerGroupWithConsumer(consumerId);
+        Topic<T> topic = getTopicWithConsumer(consumerId);
+        if (consumerGroup == null || topic == null)
+            throw new IllegalArgumentException("Consumer with id " + consumerId + " does not exist");
+
+        List<Message<T>> records = consumerGroup.getConsumers().get(consumerId).poll(maxRecords, maxBytes);
+        report(consumerId, topic.getSerde(), records);
+        return records;
+    }
+
+    /**
+     * reads the next events of every partition assigned to a consumer, waiting for events to be produced
+     * if there are none yet
+     * @param timeoutMs the longest time to wait for events
+     * @return the events read, or no events if none were produced before timeoutMs passed
+     * @throws IllegalArgumentException if consumer does not exist
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public <T> List<Message<T>> poll(String consumerId, int maxRecords, long maxBytes, long timeoutMs)
+            throws InterruptedException {
+        Topic<T> topic = getTopicWithConsumer(consumerId);
+        if (topic == null)
+            throw new IllegalArgumentException("Consumer with id " + consumerId + " does not exist");
+
+        AppendNotifier appendNotifier = topic.getAppendNotifier();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        while (true) {
+            // read the version first so that an event appended during the poll is not waited for
+            long version = appendNotifier.getVersion();
+            List<Message<T>> records = poll(consumerId, maxRecords, maxBytes);
+            long remaining = deadline - System.nanoTime();
+            if (!records.isEmpty() || remaining <= 0) return records;
+
+            appendNotifier.await(version, remaining, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * pushes the events of every partition assigned to a consumer to handler as they are produced, in
+     * batches polled like poll does, on the executor of this Tributary
+     * @throws IllegalArgumentException if consumer does not exist or is already subscribed
+     */
+    public <T> Subscription<T> subscribe(String consumerId, int maxRecords, long maxBytes,
+                                         Consumer<List<Message<T>>> handler) {
+        return subscribe(consumerId, maxRecords, maxBytes, handler, executor);
+    }
+
+    /**
+     * pushes the events of every partition assigned to a consumer to handler as they are produced. A
+     * consumer with nothing to read holds no thread, and is scheduled on executor again once an event is
+     * appended to its topic
+     * @param maxRecords the maximum number of events handled at once
+     * @param maxBytes the maximum number of bytes handled at once, exceeded only to handle at least one event
+     * @param executor where handler runs, one batch of a consumer at a time
+     * @return the subscription, delivering until closed, unsubscribe is called or the consumer is deleted
+     * @throws IllegalArgumentException if consumer does not exist or is already subscribed
+     */
+    public synchronized <T> Subscription<T> subscribe(String consumerId, int maxRecords, long maxBytes,
+                                                      Consumer<List<Message<T>>> handler, Executor executor) {
+        Topic<T> topic = getTopicWithConsumer(consumerId);
+        if (topic == null)
+            throw new IllegalArgumentException("Consumer with id " + consumerId + " does not exist");
+        Subscription<?> existing = subscriptions.get(consumerId);
+        if (existing != null && !existing.isClosed())
+            throw new IllegalArgumentException("Consumer with id " + consumerId + " is already subscribed");
+
+        ConsumerGroup<T> consumerGroup = getConsumerGroupWithConsumer(consumerId);
+        Serde<T> serde = topic.getSerde();
+        Subscription<T> subscription = new Subscription<>(consumerGroup.getConsumers().get(consumerId), maxRecords,
+                maxBytes, records -> {
+                    report(consumerId, serde, records);
+                    handler.accept(records);
+                }, topic.getAppendNotifier(), executor);
+        subscriptions.put(consumerId, subscription);
+        subscription.start();
+        return subscription;
+    }
+
+    /**
+     * stops pushing events to the handler a consumer subscribed with
+     * @throws IllegalArgumentException if consumer is not subscribed
+     */
+    public synchronized void unsubscribe(String consumerId) {
+        Subscription<?> subscription = subscriptions.remove(consumerId);
+        if (subscription == null || subscription.isClosed())
+            throw new IllegalArgumentException("Consumer with id " + consumerId + " is not subscribed");
+
+        subscription.close();
+    }
+
+    /**
+     * sets the offset of the next event a consumer group reads from a partition
+     * @param consumerGroupId the target consumer group
+     * @param partitionId the target partition id, of the topic of the consumer group
+     * @param offset the offset, between 0 and the end offset of the partition
+     * @throws IllegalArgumentException if consumer group does not exist, partition does not exist or
+     * offset is outside the partition
+     */
+    public void commitOffset(String consumerGroupId, String partitionId, long offset) {
+        if (!consumerGroupExists(consumerGroupId))
+            throw new IllegalArgumentException("ConsumerGroup with id " + consumerGroupId + " does not exist");
+
+        Topic<?> topic = getTopicWithConsumerGroup(consumerGroupId);
+        Partition<?> partition = topic.getPartitions().get(partitionId);
+        if (partition == null)
+            throw new IllegalArgumentException("Partition " + partitionId + " does not exist");
+
+        if (offset < 0 || offset > partition.getEndOffset())
+            throw new IllegalArgumentException("Offset " + offset + " is outside partition " + partitionId);
+
+        getConsumerGroup(consumerGroupId).commitOffset(partitionId, offset);
+    }
+
+    /**
+     * moves a consumer to an offset of a partition assigned to it, so that its group next reads the event
+     * at offset there
+     * @throws IllegalArgumentException if consumer does not exist, partition is not assigned to consumer or
+     * offset is outside the partition
+     */
+    public void seek(String consumerId, String partitionId, long offset) {
+        if (!getPartitionsOfConsumer(consumerId).containsKey(partitionId))
+            throw new IllegalArgumentException("Partition " + partitionId + " is not assigned to consumer "
+                    + consumerId);
+
+        commitOffset(getConsumerGroupWithConsumer(consumerId).getConsumerGroupId(), partitionId, offset);
+    }
+
+    /**
+     * moves a consumer, in every partition assigned to it, to the first event created at or after a time
+     * @param timestampMs milliseconds since the epoch
+     * @throws IllegalArgumentException if consumer does not exist
+     */
+    public void seekToTimestamp(String consumerId, long timestampMs) {
+        long timeCreated = TimeUnit.MILLISECONDS.toNanos(timestampMs);
+        seek(getConsumerGroupWithConsumer(consumerId), getPartitionsOfConsumer(consumerId),
+                x -> x.offsetForTime(timeCreated));
+    }
+
+    /**
+     * moves a consumer, in every partition assigned to it, to the first event kept
+     * @throws IllegalArgumentException if consumer does not exist
+     */
+    public void seekToBeginning(String consumerId) {
+        seek(getConsumerGroupWithConsumer(consumerId), getPartitionsOfConsumer(consumerId),
+                Partition::getStartOffset);
+    }
+
+    /**
+     * moves a consumer, in every partition assigned to it, past the last event, so that it only reads
+     * events produced from now on
+     * @throws IllegalArgumentException if consumer does not exist
+     */
+    public void seekToEnd(String consumerId) {
+        seek(getConsumerGroupWithConsumer(consumerId), getPartitionsOfConsumer(consumerId),
+                Partition::getEndOffset);
     }
 
     /**
-     * consume multiple events
+     * moves a consumer group, in every partition of its topic, to the first event created at or after a
+     * time
+     * @param timestampMs milliseconds since the epoch
+     * @throws IllegalArgumentException if consumerGroup does not exist
+     */
+    public void seekGroupToTimestamp(String consumerGroupId, long timestampMs) {
+        long timeCreated = TimeUnit.MILLISECONDS.toNanos(timestampMs);
+        seek(getConsumerGroup(consumerGroupId), getPartitionsOfConsumerGroup(consumerGroupId),
+                x -> x.offsetForTime(timeCreated));
+    }
+
+    /**
+     * moves a consumer group, in every partition of its topic, to the first event kept
+     * @throws IllegalArgumentException if consumerGroup does not exist
+     */
+    public void seekGroupToBeginning(String consumerGroupId) {
+        seek(getConsumerGroup(consumerGroupId), getPartitionsOfConsumerGroup(consumerGroupId),
+                Partition::getStartOffset);
+    }
+
+    /**
+     * moves a consumer group, in every partition of its topic, past the last event
+     * @throws IllegalArgumentException if consumerGroup does not exist
+     */
+    public void seekGroupToEnd(String consumerGroupId) {
+        seek(getConsumerGroup(consumerGroupId), getPartitionsOfConsumerGroup(consumerGroupId),
+                Partition::getEndOffset);
+    }
+
+    private static <T> void seek(ConsumerGroup<T> consumerGroup, Map<String, Partition<T>> partitions,
+                                 ToLongFunction<Partition<T>> target) {
+        partitions.forEach((id, partition) -> consumerGroup.commitOffset(id, target.applyAsLong(partition)));
+    }
+
+    private <T> Map<String, Partition<T>> getPartitionsOfConsumer(String consumerId) {
+        ConsumerGroup<T> consumerGroup = getConsumerGroupWithConsumer(consumerId);
+        if (consumerGroup == null)
+            throw new IllegalArgumentException("Consumer with id " + consumerId + " does not exist");
+
+        return consumerGroup.getConsumers().get(consumerId).getPartitions();
+    }
+
+    private <T> Map<String, Partition<T>> getPartitionsOfConsumerGroup(String consumerGroupId) {
+        if (!consumerGroupExists(consumerGroupId))
+            throw new IllegalArgumentException("ConsumerGroup with id " + consumerGroupId + " does not exist");
+
+        Topic<T> topic = getTopicWithConsumerGroup(consumerGroupId);
+        return topic.getPartitions();
+    }
+
+    /**
+     * consume multiple events concurrently
      * @param consumeInputList the list of inputs
-     * @throws IllegalArgumentException if consumer does not exist, partition does not exist or
-     * consumer is not assigned to partition
+     * @return the result of each input, in the order given. An input fails if consumer does not exist,
+     * partition does not exist or consumer is not assigned to partition
      */
-    public void parallelConsume(List<ConsumerInput> consumeInputList) {
-        consumeInputList.forEach(x -> consumeEvent(x.getConsumerId(), x.getPartitionId()));
+    public List<InputResult<ConsumerInput>> parallelConsume(List<ConsumerInput> consumeInputList) {
+        return runParallel(consumeInputList, x -> consumeEvent(x.getConsumerId(), x.getPartitionId()));
+    }
+
+    private <I> List<InputResult<I>> runParallel(List<I> inputs, Consumer<I> action) {
+        List<CompletableFuture<InputResult<I>>> futures = inputs
+                .stream()
+                .map(x -> CompletableFuture
+                        .runAsync(() -> action.accept(x), executor)
+                        .handle((ignored, e) -> new InputResult<>(x, unwrap(e))))
+                .collect(Collectors.toList());
+
+        return futures
+                .stream()
+                .map(CompletableFuture::join)
+                .collect(Collectors.toList());
+    }
+
+    private static Throwable unwrap(Throwable e) {
+        return e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
     }
 
     /**
@@ -251,6 +1087,29 @@ public class Tributary {
         getConsumerGroup(consumerGroupId).display();
     }
 
+    /**
+     * @return the current value of every metric: produce and consume counts and bytes per partition,
+     * partition end offsets, consumer group lag per partition, end-to-end latency per topic and
+     * rebalance counts and durations per topic
+     */
+    public MetricsSnapshot getMetrics() {
+        return metrics.snapshot();
+    }
+
+    /**
+     * pretty prints every metric
+     */
+    public void showMetrics() {
+        getMetrics().display();
+    }
+
+    /**
+     * @return every topic by id, e.g. to describe its partitions and consumer groups
+     */
+    public Map<String, Topic<?>> getTopics() {
+        return Collections.unmodifiableMap(topics);
+    }
+
     private boolean topicExists(String id) {
         return topics.containsKey(id);
     }
@@ -259,66 +1118,125 @@ public class Tributary {
         return producers.containsKey(id);
     }
 
-    private boolean consumerGroupExists(String consumerId) {
-        return getConsumerGroups().containsKey(consumerId);
+    private boolean consumerGroupExists(String consumerGroupId) {
+        return consumerGroups.containsKey(consumerGroupId);
     }
 
     private boolean consumerExists(String consumerId) {
-        return getConsumers().containsKey(consumerId);
+        return consumers.containsKey(consumerId);
     }
 
-    private HashMap<String, ConsumerGroup> getConsumerGroups() {
-        return topics
-                .values()
-                .stream()
-                .map(Topic::getConsumerGroups)
-                .collect(HashMap::new, HashMap::putAll, HashMap::putAll);
+    @SuppressWarnings("unchecked")
+    private <T> ConsumerGroup<T> getConsumerGroup(String consumerGroupId) {
+        return (ConsumerGroup<T>) consumerGroups.get(consumerGroupId);
     }
 
-    private ConsumerGroup getConsumerGroup(String consumerGroupId) {
-        return getConsumerGroups().get(consumerGroupId);
+    @SuppressWarnings("unchecked")
+    private <T> ConsumerGroup<T> getConsumerGroupWithConsumer(String consumerId) {
+        return (ConsumerGroup<T>) consumers.get(consumerId);
     }
 
-    private ConsumerGroup getConsumerGroupWithConsumer(String consumerId) {
-        return getConsumerGroups()
-                .values()
-                .stream()
-                .filter(x -> x.containsId(consumerId))
-                .findFirst()
-                .orElse(null);
+    private <T> Topic<T> getTopicWithConsumer(String consumerId) {
+        ConsumerGroup<?> consumerGroup = getConsumerGroupWithConsumer(consumerId);
+        return consumerGroup == null ? null : getTopicWithConsumerGroup(consumerGroup.getConsumerGroupId());
     }
 
-    private Topic getTopicWithConsumer(String consumerId) {
-        return topics
-                .values()
-                .stream()
-                .filter(x -> x.getConsumers().containsKey(consumerId))
-                .findFirst()
-                .orElse(null);
+    @SuppressWarnings("unchecked")
+    private <T> Topic<T> getTopicWithConsumerGroup(String consumerGroupId) {
+        return (Topic<T>) consumerGroupTopics.get(consumerGroupId);
     }
 
-    private Topic getTopicWithConsumerGroup(String consumerGroupId) {
-        return topics
-                .values()
-                .stream()
-                .filter(x -> x.getConsumerGroups().containsKey(consumerGroupId))
-                .findFirst()
-                .orElse(null);
+    /**
+     * sets when producing with a producer returns
+     * @param acks LEADER to return once the leader appended the events, ALL to wait until every replica
+     * in sync has them too
+     * @throws IllegalArgumentException if producer does not exist
+     */
+    public void setAcks(String producerId, Acks acks) {
+        Producer<?> producer = getProducer(producerId);
+        if (producer == null)
+            throw new IllegalArgumentException("Producer with id " + producerId + " doesn't exist");
+
+        producer.setAcks(acks);
+
+        System.out.println("Acks of producer " + producerId + " were successfully set to " + acks);
     }
 
-    private HashMap<String, ConsumerGroup> getConsumers() {
-        return topics
-                .values()
-                .stream()
-                .map(Topic::getConsumers)
-                .collect(HashMap::new, HashMap::putAll, HashMap::putAll);
+    /**
+     * serves the partitions of this Tributary to followers on other brokers, which fetch them over TCP
+     * @param port the port to listen on, or 0 for any free port
+     * @return the port listened on
+     * @throws IllegalArgumentException if replication was already started
+     * @throws UncheckedIOException if port cannot be listened on
+     */
+    public synchronized int startReplication(int port) {
+        if (replicationServer != null)
+            throw new IllegalArgumentException("Replication already listens on port " + replicationServer.getPort());
+
+        try {
+            replicationServer = new ReplicationServer(topics, port, ReplicaSet.DEFAULT_MAX_LAG_MS);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        replicationServer.start();
+
+        System.out.println("Replication is listening on port " + replicationServer.getPort());
+        return replicationServer.getPort();
+    }
+
+    /**
+     * makes a partition follow its leader on another broker, creating it if it does not exist. A follower
+     * partition cannot be produced to, and its events are consumed up to the high watermark of the leader
+     * @param host the host of the leader's broker
+     * @param port the port its replication listens on
+     * @throws IllegalArgumentException if topic does not exist or partition already follows a leader
+     */
+    public synchronized void followPartition(String topicId, String partitionId, String host, int port) {
+        Topic<?> topic = getTopic(topicId);
+        if (topic == null)
+            throw new IllegalArgumentException("Topic with id " + topicId + " does not exist");
+        if (!topic.getPartitions().containsKey(partitionId)) createPartition(topicId, partitionId);
+
+        Partition<?> partition = topic.getPartitions().get(partitionId);
+        if (fetchers.containsKey(partition))
+            throw new IllegalArgumentException("Partition " + partitionId + " already follows a leader");
+
+        ReplicaFetcher<?> fetcher = new ReplicaFetcher<>(topicId, partition, replicaId,
+                new InetSocketAddress(host, port));
+        fetchers.put(partition, fetcher);
+        fetcher.start();
+
+        System.out.println("Partition " + partitionId + " on topic " + topicId + " is following " + host + ":" + port);
+    }
+
+    /**
+     * makes a follower partition lead, e.g. once its leader failed. It keeps the events it fetched, and
+     * every one of them becomes readable
+     * @throws IllegalArgumentException if topic does not exist or partition does not follow a leader
+     */
+    public synchronized void leadPartition(String topicId, String partitionId) {
+        Topic<?> topic = getTopic(topicId);
+        if (topic == null)
+            throw new IllegalArgumentException("Topic with id " + topicId + " does not exist");
+
+        Partition<?> partition = topic.getPartitions().get(partitionId);
+        ReplicaFetcher<?> fetcher = partition == null ? null : fetchers.remove(partition);
+        if (fetcher == null)
+            throw new IllegalArgumentException("Partition " + partitionId + " does not follow a leader");
+
+        fetcher.close();
+        partition.unfollow();
+
+        System.out.println("Partition " + partitionId + " on topic " + topicId + " is now leading");
     }
 
-    private Producer getProducer(String producerId) {
-        return producers.get(producerId);
+    @SuppressWarnings("unchecked")
+    private <T> Producer<T> getProducer(String producerId) {
+        return (Producer<T>) producers.get(producerId);
     }
 
-    private Topic getTopic(String topicId) {
-        return topics.get(topicId);
+    @SuppressWarnings("unchecked")
+    private <T> Topic<T> getTopic(String topicId) {
+        return (Topic<T>) topics.get(topicId);
     }
 }
\ No newline at end of file
@@ -0,0 +1,24 @@
+package tributary.compression;
+
+/**
+ * Compresses the batches of events of a topic. A codec is shared by every partition of the topics using
+ * it, so it must be safe to call from several threads at once.
+ */
+public interface CompressionCodec {
+    /**
+     * @return the name the codec is registered under with CompressionCodecs
+     */
+    String getName();
+
+    /**
+     * @return the first length bytes of data, compressed
+     */
+    byte[] compress(byte[] data, int length);
+
+    /**
+     * @param length the number of bytes data held before it was compressed
+     * @return data decompressed
+     * @throws IllegalArgumentException if data is not compressed by this codec
+     */
+    byte[] decompress(byte[] data, int length);
+}
\ No newline at end of file
@@ -0,0 +1,51 @@
+package tributary.compression;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.Deflater;
+
+/**
+ * The codecs topics can be compressed with, by name. Snapshots refer to the codec of a topic by its name,
+ * so a codec registered by an application must be registered again before restoring one.
+ */
+public final class CompressionCodecs {
+    public static final String NONE = "none";
+    public static final CompressionCodec DEFLATE = new DeflateCodec("deflate", Deflater.DEFAULT_COMPRESSION);
+    public static final CompressionCodec DEFLATE_FAST = new DeflateCodec("deflate-fast", Deflater.BEST_SPEED);
+
+    private static final Map<String, CompressionCodec> CODECS = new ConcurrentHashMap<>();
+
+    static {
+        register(DEFLATE);
+        register(DEFLATE_FAST);
+    }
+
+    private CompressionCodecs() {
+    }
+
+    /**
+     * @throws IllegalArgumentException if a codec with the same name is already registered
+     */
+    public static void register(CompressionCodec codec) {
+        if (codec.getName().equals(NONE) || CODECS.putIfAbsent(codec.getName(), codec) != null)
+            throw new IllegalArgumentException("Codec with name " + codec.getName() + " already exists");
+    }
+
+    /**
+     * @return the codec registered under name, or null for none
+     * @throws IllegalArgumentException if no codec is registered under name
+     */
+    public static CompressionCodec forName(String name) {
+        if (name.equals(NONE)) return null;
+        CompressionCodec codec = CODECS.get(name);
+        if (codec == null) throw new IllegalArgumentException("Codec with name " + name + " does not exist");
+        return codec;
+    }
+
+    /**
+     * @return the name of codec, NONE for null
+     */
+    public static String nameOf(CompressionCodec codec) {
+        return codec == null ? NONE : codec.getName();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,70 @@
+package tributary.compression;
+
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compresses with the JDK's Deflater. Each thread reuses its own Deflater and Inflater, as creating one
+ * allocates native memory that is only released once it is collected.
+ */
+public class DeflateCodec implements CompressionCodec {
+    private final String name;
+    private final ThreadLocal<Deflater> deflater;
+    private final ThreadLocal<Inflater> inflater = ThreadLocal.withInitial(Inflater::new);
+
+    /**
+     * @param level the level of compression, from Deflater.BEST_SPEED to Deflater.BEST_COMPRESSION
+     */
+    public DeflateCodec(String name, int level) {
+        if (level != Deflater.DEFAULT_COMPRESSION && (level < Deflater.BEST_SPEED || level > Deflater.BEST_COMPRESSION))
+            throw new IllegalArgumentException("Invalid deflate level " + level);
+
+        this.name = name;
+        this.deflater = ThreadLocal.withInitial(() -> new Deflater(level));
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public byte[] compress(byte[] data, int length) {
+        Deflater deflater = this.deflater.get();
+        deflater.reset();
+        deflater.setInput(data, 0, length);
+        deflater.finish();
+
+        byte[] compressed = new byte[Math.max(64, length / 4)];
+        int size = 0;
+        while (!deflater.finished()) {
+            if (size == compressed.length) compressed = Arrays.copyOf(compressed, size * 2);
+            size += deflater.deflate(compressed, size, compressed.length - size);
+        }
+        return Arrays.copyOf(compressed, size);
+    }
+
+    @Override
+    public byte[] decompress(byte[] data, int length) {
+        Inflater inflater = this.inflater.get();
+        inflater.reset();
+        inflater.setInput(data);
+
+        byte[] decompressed = new byte[length];
+        try {
+            int size = 0;
+            while (size < length) {
+                int read = inflater.inflate(decompressed, size, length - size);
+                if (read == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary()))
+                    throw new IllegalArgumentException("Compressed batch ends after " + size + " of " + length
+                            + " bytes");
+                size += read;
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Compressed batch is corrupt", e);
+        }
+        return decompressed;
+    }
+}
\ No newline at end of file
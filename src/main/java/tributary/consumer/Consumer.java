@@ -4,45 +4,69 @@ import tributary.topic.Partition;
 import tributary.producer.message.Message;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class Consumer<T> {
     private final String consumerId;
-    private HashMap<String, Partition<T>> partitions = new HashMap<>();
-    private final List<Message<T>> consumedEvents = new ArrayList<>();
+    private final ConsumerGroup<T> consumerGroup;
+    private volatile Map<String, Partition<T>> partitions = new ConcurrentHashMap<>();
+    // the assigned partition the next poll starts from, so that no partition is starved, moved on by every
+    // poll however many threads poll at once
+    private final AtomicInteger nextPartition = new AtomicInteger();
 
-    public Consumer(String consumerId) {
+    public Consumer(String consumerId, ConsumerGroup<T> consumerGroup) {
         this.consumerId = consumerId;
+        this.consumerGroup = consumerGroup;
     }
 
-    public void consume(Message<T> event) {
-        System.out.println(event.getValue().toString());
-        consumedEvents.add(event);
+    /**
+     * reads the next events of all assigned partitions in one pass
+     * @param maxRecords the maximum number of events to return
+     * @param maxBytes the maximum number of bytes to return, exceeded only to return at least one event
+     */
+    public List<Message<T>> poll(int maxRecords, long maxBytes) {
+        List<Message<T>> records = new ArrayList<>();
+        List<Partition<T>> assigned = new ArrayList<>(partitions.values());
+        if (assigned.isEmpty()) return records;
+
+        int first = Math.floorMod(nextPartition.getAndIncrement(), assigned.size());
+        long bytes = 0;
+        for (int i = 0; i < assigned.size() && records.size() < maxRecords && bytes < maxBytes; i++) {
+            Partition<T> partition = assigned.get((first + i) % assigned.size());
+            bytes += partition.poll(consumerGroup, maxRecords - records.size(), maxBytes - bytes, records);
+        }
+        return records;
     }
 
     public void assignPartition(Partition<T> partition) {
         partitions.put(partition.getPartitionId(), partition);
     }
 
+    public void unassignPartition(String partitionId) {
+        partitions.remove(partitionId);
+    }
+
+    public Map<String, Partition<T>> getPartitions() {
+        return partitions;
+    }
+
     public void resetPartitions() {
-        this.partitions = new HashMap<>();
+        this.partitions = new ConcurrentHashMap<>();
     }
 
     public String getConsumerId() {
         return consumerId;
     }
 
+    public ConsumerGroup<T> getConsumerGroup() {
+        return consumerGroup;
+    }
+
     public void display() {
         System.out.println("Consumer: " + consumerId);
         partitions.values().forEach(Partition::display);
     }
-
-    public List<String> getConsumedEventIds() {
-        return consumedEvents
-                .stream()
-                .map(Message::getId)
-                .collect(Collectors.toList());
-    }
 }
@@ -2,27 +2,29 @@ package tributary.consumer;
 
 import tributary.Rebalance;
 
-import java.util.HashMap;
-import java.util.Objects;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class ConsumerGroup<T> {
     private Rebalance rebalance;
-    private HashMap<String, Consumer<T>> consumers = new HashMap<>();
+    private final Map<String, Consumer<T>> consumers = new ConcurrentHashMap<>();
+    // committed offset of the next event to be read, per partition
+    private final Map<String, AtomicLong> offsets = new ConcurrentHashMap<>();
 
     private final String consumerGroupId;
 
     public ConsumerGroup(Rebalance rebalance, String consumerGroupId) {
-        // Currently violates open-closed however meets current requirements
-        this.rebalance = Objects.equals(rebalance, "Range") ? Rebalance.RANGE : Rebalance.ROUNDROBIN;
+        this.rebalance = rebalance;
         this.consumerGroupId = consumerGroupId;
     }
 
-    public HashMap<String, Consumer<T>> getConsumers() {
+    public Map<String, Consumer<T>> getConsumers() {
         return consumers;
     }
 
     public void addConsumer(String consumerId) {
-        consumers.put(consumerId, new Consumer<T>(consumerId));
+        consumers.put(consumerId, new Consumer<T>(consumerId, this));
     }
 
     public boolean containsId(String consumerId) {
@@ -33,6 +35,53 @@ public class ConsumerGroup<T> {
         consumers.remove(consumerId);
     }
 
+    public long getOffset(String partitionId) {
+        return offset(partitionId).get();
+    }
+
+    public void commitOffset(String partitionId, long offset) {
+        offset(partitionId).set(offset);
+    }
+
+    /**
+     * commits offset only if the committed offset of the partition is still expected
+     * @return whether offset was committed
+     */
+    public boolean commitOffset(String partitionId, long expected, long offset) {
+        return offset(partitionId).compareAndSet(expected, offset);
+    }
+
+    /**
+     * atomically moves the committed offset of a partition forward by one
+     * @return the offset that was claimed, or -1 if the committed offset has reached endOffset
+     */
+    public long claimOffset(String partitionId, long endOffset) {
+        return claimOffset(partitionId, 0, endOffset);
+    }
+
+    /**
+     * atomically moves the committed offset of a partition forward by one, first moving it up to
+     * startOffset if the events below it were dropped
+     * @return the offset that was claimed, or -1 if the committed offset has reached endOffset
+     */
+    public long claimOffset(String partitionId, long startOffset, long endOffset) {
+        AtomicLong committed = offset(partitionId);
+        while (true) {
+            long current = committed.get();
+            long offset = Math.max(current, startOffset);
+            if (offset >= endOffset) return -1;
+            if (committed.compareAndSet(current, offset + 1)) return offset;
+        }
+    }
+
+    private AtomicLong offset(String partitionId) {
+        return offsets.computeIfAbsent(partitionId, x -> new AtomicLong());
+    }
+
+    public String getConsumerGroupId() {
+        return consumerGroupId;
+    }
+
     public Rebalance getRebalance() {
         return rebalance;
     }
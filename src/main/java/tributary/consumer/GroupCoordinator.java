@@ -0,0 +1,135 @@
+package tributary.consumer;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tracks the sessions of consumers that joined their group with a session timeout. A consumer stays in its
+ * group while it heartbeats within its session timeout, and is expired once it stops, e.g. as it crashed.
+ * A heartbeat only records its time, so it costs the same however many consumers there are; a session is
+ * looked at only when a timing wheel says it may have timed out, and scheduled again if it heartbeat since.
+ * <p>
+ * Joins, leaves and expiries are collected and applied once per tick as one batch, so a group is rebalanced
+ * once per tick however many of its consumers changed.
+ */
+public class GroupCoordinator {
+    public static final long DEFAULT_SESSION_TIMEOUT_MS = 10_000;
+    public static final long TICK_MS = 100;
+    // a rotation of about 50 s, longer than most session timeouts
+    private static final int WHEEL_SLOTS = 512;
+
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    private final Set<String> changedGroups = ConcurrentHashMap.newKeySet();
+    // guarded by itself
+    private final TimingWheel<Session> wheel;
+    private final Changes changes;
+
+    /**
+     * Applies a batch of changes to the consumer groups.
+     */
+    public interface Changes {
+        /**
+         * @param expiredConsumerIds the consumers whose session timed out, to be deleted
+         * @param consumerGroupIds the groups to rebalance, including those of the expired consumers
+         */
+        void apply(List<String> expiredConsumerIds, Set<String> consumerGroupIds);
+    }
+
+    public GroupCoordinator(Changes changes) {
+        this.changes = changes;
+        this.wheel = new TimingWheel<>(TimeUnit.MILLISECONDS.toNanos(TICK_MS), WHEEL_SLOTS, System.nanoTime());
+    }
+
+    /**
+     * starts the session of a consumer that joined its group, which is rebalanced at the next tick. A
+     * session the consumer already had is replaced
+     */
+    public void join(String consumerId, String consumerGroupId, long sessionTimeoutMs) {
+        if (sessionTimeoutMs <= 0)
+            throw new IllegalArgumentException("Session timeout must be positive, not " + sessionTimeoutMs);
+
+        Session session = new Session(consumerId, consumerGroupId, TimeUnit.MILLISECONDS.toNanos(sessionTimeoutMs));
+        sessions.put(consumerId, session);
+        synchronized (wheel) {
+            wheel.add(session, session.deadline());
+        }
+        changedGroups.add(consumerGroupId);
+    }
+
+    /**
+     * @return whether the consumer has a session, which the heartbeat renewed
+     */
+    public boolean heartbeat(String consumerId) {
+        Session session = sessions.get(consumerId);
+        if (session == null) return false;
+        session.lastHeartbeat = System.nanoTime();
+        return true;
+    }
+
+    /**
+     * ends the session of a consumer that left its group, which is rebalanced at the next tick
+     */
+    public void leave(String consumerId, String consumerGroupId) {
+        sessions.remove(consumerId);
+        changedGroups.add(consumerGroupId);
+    }
+
+    /**
+     * ends the session of a consumer deleted from its group, without rebalancing it
+     */
+    public void remove(String consumerId) {
+        sessions.remove(consumerId);
+    }
+
+    /**
+     * expires the sessions that timed out, then applies every change since the previous tick. Called every
+     * TICK_MS
+     */
+    public void tick() {
+        List<String> expired = new ArrayList<>();
+        long now = System.nanoTime();
+        synchronized (wheel) {
+            wheel.advance(now, session -> {
+                // a session ended or replaced since it was scheduled is dropped
+                if (sessions.get(session.consumerId) != session) return;
+                long deadline = session.deadline();
+                if (deadline - now > 0) {
+                    wheel.add(session, deadline);
+                } else if (sessions.remove(session.consumerId, session)) {
+                    expired.add(session.consumerId);
+                    changedGroups.add(session.consumerGroupId);
+                }
+            });
+        }
+
+        Set<String> consumerGroupIds = new HashSet<>();
+        changedGroups.removeIf(consumerGroupIds::add);
+        if (!consumerGroupIds.isEmpty()) changes.apply(expired, consumerGroupIds);
+    }
+
+    public int getSessionCount() {
+        return sessions.size();
+    }
+
+    private static final class Session {
+        private final String consumerId;
+        private final String consumerGroupId;
+        private final long timeoutNanos;
+        private volatile long lastHeartbeat = System.nanoTime();
+
+        private Session(String consumerId, String consumerGroupId, long timeoutNanos) {
+            this.consumerId = consumerId;
+            this.consumerGroupId = consumerGroupId;
+            this.timeoutNanos = timeoutNanos;
+        }
+
+        private long deadline() {
+            return lastHeartbeat + timeoutNanos;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,93 @@
+package tributary.consumer;
+
+import tributary.producer.message.Message;
+import tributary.topic.AppendNotifier;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Pushes the events of the partitions assigned to a consumer to a handler as they are produced. Each append
+ * to the topic schedules a delivery on the executor unless one is already scheduled, and a delivery polls
+ * until it finds nothing to read, so a consumer with nothing to read holds no thread. A delivery hands one
+ * batch to the handler and schedules the next, so that busy subscriptions share the executor.
+ */
+public class Subscription<T> implements AutoCloseable {
+    private final Consumer<T> consumer;
+    private final int maxRecords;
+    private final long maxBytes;
+    private final java.util.function.Consumer<List<Message<T>>> handler;
+    private final AppendNotifier appendNotifier;
+    private final Executor executor;
+    private final Runnable listener = this::schedule;
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private volatile boolean closed = false;
+
+    /**
+     * @param appendNotifier signalled after every append to the topic of consumer
+     */
+    public Subscription(Consumer<T> consumer, int maxRecords, long maxBytes,
+                        java.util.function.Consumer<List<Message<T>>> handler, AppendNotifier appendNotifier,
+                        Executor executor) {
+        this.consumer = consumer;
+        this.maxRecords = maxRecords;
+        this.maxBytes = maxBytes;
+        this.handler = handler;
+        this.appendNotifier = appendNotifier;
+        this.executor = executor;
+    }
+
+    /**
+     * starts delivering, beginning with the events already produced
+     */
+    public void start() {
+        appendNotifier.addListener(listener);
+        schedule();
+    }
+
+    public Consumer<T> getConsumer() {
+        return consumer;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * stops delivering. A batch being handled is still handled, but no batch is polled after
+     */
+    @Override
+    public void close() {
+        closed = true;
+        appendNotifier.removeListener(listener);
+    }
+
+    private void schedule() {
+        if (!closed && scheduled.compareAndSet(false, true)) executor.execute(this::deliver);
+    }
+
+    private void deliver() {
+        while (!closed) {
+            // read the version first so that an event appended during the poll is not missed
+            long version = appendNotifier.getVersion();
+            List<Message<T>> records = consumer.poll(maxRecords, maxBytes);
+            if (records.isEmpty()) {
+                scheduled.set(false);
+                // an append after the poll either moved the version or schedules a delivery itself
+                if (appendNotifier.getVersion() == version || !scheduled.compareAndSet(false, true)) return;
+                continue;
+            }
+
+            try {
+                handler.accept(records);
+            } catch (RuntimeException e) {
+                // the events were committed before they were handled, the handler has to recover them itself
+                System.out.println("Handler of consumer " + consumer.getConsumerId() + " failed: " + e.getMessage());
+            }
+            executor.execute(this::deliver);
+            return;
+        }
+        scheduled.set(false);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,77 @@
+package tributary.consumer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * A hashed timing wheel: each element is kept in the slot of the tick its deadline falls in, so adding is
+ * constant time and advancing looks only at the slots of the ticks passed, however many elements there are.
+ * A deadline more than a rotation away waits in its slot for the rotations between. Elements are never
+ * reported early, and late by at most one tick. Not thread safe.
+ */
+final class TimingWheel<E> {
+    private final long tickNanos;
+    private final long startNanos;
+    private final List<Entry<E>>[] slots;
+    // the first tick not yet advanced past
+    private long currentTick = 0;
+
+    /**
+     * @param slots the number of slots, a power of two
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    TimingWheel(long tickNanos, int slots, long startNanos) {
+        if (Integer.bitCount(slots) != 1)
+            throw new IllegalArgumentException("The number of slots must be a power of two, not " + slots);
+
+        this.tickNanos = tickNanos;
+        this.startNanos = startNanos;
+        this.slots = new List[slots];
+        for (int i = 0; i < slots; i++) this.slots[i] = new ArrayList<>();
+    }
+
+    void add(E element, long deadlineNanos) {
+        // rounded up, so that the element is reported once its deadline passed
+        long tick = Math.max(currentTick, Math.floorDiv(deadlineNanos - startNanos + tickNanos - 1, tickNanos));
+        slots[slot(tick)].add(new Entry<>(element, tick));
+    }
+
+    /**
+     * reports every element whose deadline passed by nowNanos, each once. expired may add elements
+     */
+    void advance(long nowNanos, Consumer<E> expired) {
+        long lastTick = Math.floorDiv(nowNanos - startNanos, tickNanos);
+        // after a pause of more than a rotation, each slot is looked at once
+        long until = Math.min(lastTick, currentTick + slots.length - 1);
+        for (long tick = currentTick; tick <= until; tick++) {
+            List<Entry<E>> slot = slots[slot(tick)];
+            if (slot.isEmpty()) continue;
+
+            List<Entry<E>> kept = new ArrayList<>();
+            List<E> due = new ArrayList<>();
+            for (Entry<E> entry : slot) {
+                if (entry.tick <= lastTick) due.add(entry.element);
+                else kept.add(entry);
+            }
+            slots[slot(tick)] = kept;
+            currentTick = Math.max(currentTick, tick + 1);
+            due.forEach(expired);
+        }
+        currentTick = Math.max(currentTick, lastTick + 1);
+    }
+
+    private int slot(long tick) {
+        return (int) (tick & (slots.length - 1));
+    }
+
+    private static final class Entry<E> {
+        private final E element;
+        private final long tick;
+
+        private Entry(E element, long tick) {
+            this.element = element;
+            this.tick = tick;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,250 @@
+package tributary.http;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import spark.Request;
+import spark.Response;
+import spark.Service;
+import tributary.Tributary;
+import tributary.consumer.Consumer;
+import tributary.consumer.ConsumerGroup;
+import tributary.consumer.GroupCoordinator;
+import tributary.inputs.EventInput;
+import tributary.producer.message.Message;
+import tributary.serde.Serde;
+import tributary.topic.Partition;
+import tributary.topic.Topic;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Serves a Tributary over HTTP, to any number of concurrent clients:
+ * <pre>
+ * GET  /topics                         topics, their partitions and consumer groups
+ * GET  /topics/:topic                  one topic
+ * POST /topics/:topic/events           {"producer": id, "events": [{"id": id, "value": {...}, "partition": id}]}
+ * GET  /consumers/:consumer/events     ?maxRecords=&amp;maxBytes=&amp;timeoutMs=, waits up to timeoutMs for events
+ * POST /consumers/:consumer/heartbeat  keeps a consumer that joined its group in it
+ * DELETE /consumers/:consumer          leaves the group of a consumer
+ * POST /groups/:group/members          {"consumer": id, "sessionTimeoutMs": n}, joins a group until heartbeats stop
+ * POST /groups/:group/offsets          {"partition": id, "offset": n}
+ * POST /groups/:group/seek             {"to": "beginning" | "end"} or {"timestampMs": n}
+ * </pre>
+ * Requests that are invalid for the Tributary are answered with 400 and {"error": message}. Fetches of at least
+ * GZIP_MIN_BYTES are gzipped for clients sending Accept-Encoding: gzip, as JSON events compress well.
+ */
+public class TributaryServer implements AutoCloseable {
+    public static final int DEFAULT_MAX_THREADS = 200;
+    public static final int DEFAULT_MAX_RECORDS = 500;
+    public static final long DEFAULT_MAX_BYTES = 1 << 20;
+    // a waiting fetch holds a server thread, so no fetch may hold one for long
+    public static final long MAX_TIMEOUT_MS = 30_000;
+    public static final int GZIP_MIN_BYTES = 1024;
+
+    private final Tributary tributary;
+    private final Service http;
+
+    public TributaryServer(Tributary tributary, int port) {
+        this(tributary, port, DEFAULT_MAX_THREADS);
+    }
+
+    /**
+     * @param maxThreads the number of requests handled at once, including fetches waiting for events
+     */
+    public TributaryServer(Tributary tributary, int port, int maxThreads) {
+        this.tributary = tributary;
+        this.http = Service.ignite().port(port).threadPool(maxThreads);
+    }
+
+    /**
+     * starts serving, returning once the server accepts requests
+     */
+    public void start() {
+        http.before((req, res) -> res.type("application/json"));
+        http.get("/topics", (req, res) -> topics());
+        http.get("/topics/:topic", (req, res) -> topic(req.params("topic")));
+        http.post("/topics/:topic/events", this::produce);
+        http.get("/consumers/:consumer/events", this::fetch);
+        http.post("/consumers/:consumer/heartbeat", this::heartbeat);
+        http.delete("/consumers/:consumer", this::leave);
+        http.post("/groups/:group/members", this::join);
+        http.post("/groups/:group/offsets", this::commit);
+        http.post("/groups/:group/seek", this::seek);
+        http.exception(IllegalArgumentException.class, TributaryServer::badRequest);
+        http.exception(JSONException.class, TributaryServer::badRequest);
+        http.awaitInitialization();
+    }
+
+    @Override
+    public void close() {
+        http.stop();
+        http.awaitStop();
+    }
+
+    private static void badRequest(Exception e, Request req, Response res) {
+        res.status(400);
+        res.type("application/json");
+        res.body(new JSONObject().put("error", e.getMessage()).toString());
+    }
+
+    private Object produce(Request req, Response res) {
+        String topicId = req.params("topic");
+        JSONObject body = new JSONObject(req.body());
+        String producerId = body.getString("producer");
+        JSONArray events = body.getJSONArray("events");
+
+        List<EventInput> inputs = new ArrayList<>(events.length());
+        for (int i = 0; i < events.length(); i++) {
+            JSONObject event = events.getJSONObject(i);
+            String partitionId = event.optString("partition", null);
+            // values other than objects, e.g. of Integer or String topics, are read by the serde of the topic
+            Object value = event.get("value");
+            inputs.add(value instanceof JSONObject ?
+                    new EventInput(producerId, topicId, (JSONObject) value, event.getString("id"), partitionId) :
+                    new EventInput(producerId, topicId, String.valueOf(value), event.getString("id"), partitionId));
+        }
+        tributary.produceEvents(inputs);
+
+        return new JSONObject().put("produced", inputs.size()).toString();
+    }
+
+    private Object fetch(Request req, Response res) throws InterruptedException {
+        int maxRecords = intParam(req, "maxRecords", DEFAULT_MAX_RECORDS);
+        long maxBytes = longParam(req, "maxBytes", DEFAULT_MAX_BYTES);
+        long timeoutMs = Math.min(longParam(req, "timeoutMs", 0), MAX_TIMEOUT_MS);
+        if (maxRecords <= 0 || maxBytes <= 0 || timeoutMs < 0)
+            throw new IllegalArgumentException("maxRecords and maxBytes must be positive and timeoutMs not negative");
+
+        String consumerId = req.params("consumer");
+        Serde<Object> serde = tributary.getConsumerSerde(consumerId);
+        List<Message<Object>> records = tributary.poll(consumerId, maxRecords, maxBytes, timeoutMs);
+
+        // the values are written as JSON by the serde straight from their bytes instead of being deserialised
+        StringBuilder body = new StringBuilder("{\"records\":[");
+        for (int i = 0; i < records.size(); i++) {
+            Message<Object> record = records.get(i);
+            if (i > 0) body.append(',');
+            body.append("{\"id\":").append(JSONObject.quote(record.getId()))
+                    .append(",\"partition\":").append(JSONObject.quote(record.getKey()))
+                    .append(",\"timeCreated\":").append(record.getTimeCreated())
+                    .append(",\"value\":").append(serde.toJson(record.getPayload()))
+                    .append('}');
+        }
+        body.append("]}");
+
+        // Spark gzips the body only when it is marked so and the client accepts gzip, so it is marked only then
+        if (body.length() >= GZIP_MIN_BYTES && acceptsGzip(req)) res.header("Content-Encoding", "gzip");
+        return body.toString();
+    }
+
+    private Object join(Request req, Response res) {
+        JSONObject body = new JSONObject(req.body());
+        String consumerId = body.getString("consumer");
+        long sessionTimeoutMs = body.optLong("sessionTimeoutMs", GroupCoordinator.DEFAULT_SESSION_TIMEOUT_MS);
+        tributary.joinGroup(req.params("group"), consumerId, sessionTimeoutMs);
+
+        return new JSONObject().put("consumer", consumerId).put("sessionTimeoutMs", sessionTimeoutMs).toString();
+    }
+
+    private Object heartbeat(Request req, Response res) {
+        tributary.heartbeat(req.params("consumer"));
+        return new JSONObject().put("consumer", req.params("consumer")).toString();
+    }
+
+    private Object leave(Request req, Response res) {
+        tributary.leaveGroup(req.params("consumer"));
+        return new JSONObject().put("consumer", req.params("consumer")).toString();
+    }
+
+    private Object commit(Request req, Response res) {
+        JSONObject body = new JSONObject(req.body());
+        String partitionId = body.getString("partition");
+        long offset = body.getLong("offset");
+        tributary.commitOffset(req.params("group"), partitionId, offset);
+
+        return new JSONObject().put("partition", partitionId).put("offset", offset).toString();
+    }
+
+    private Object seek(Request req, Response res) {
+        String consumerGroupId = req.params("group");
+        JSONObject body = new JSONObject(req.body());
+        String to = body.optString("to", null);
+        if (body.has("timestampMs"))
+            tributary.seekGroupToTimestamp(consumerGroupId, body.getLong("timestampMs"));
+        else if ("beginning".equals(to))
+            tributary.seekGroupToBeginning(consumerGroupId);
+        else if ("end".equals(to))
+            tributary.seekGroupToEnd(consumerGroupId);
+        else
+            throw new IllegalArgumentException("Expected \"to\": \"beginning\" or \"end\", or \"timestampMs\"");
+
+        return new JSONObject().put("group", consumerGroupId).toString();
+    }
+
+    private Object topics() {
+        JSONArray topics = new JSONArray();
+        for (Topic<?> topic : tributary.getTopics().values()) topics.put(describe(topic));
+        return new JSONObject().put("topics", topics).toString();
+    }
+
+    private Object topic(String topicId) {
+        Topic<?> topic = tributary.getTopics().get(topicId);
+        if (topic == null)
+            throw new IllegalArgumentException("Topic with id " + topicId + " does not exist");
+
+        return describe(topic).toString();
+    }
+
+    private static <T> JSONObject describe(Topic<T> topic) {
+        JSONArray partitions = new JSONArray();
+        for (Partition<T> partition : topic.getPartitions().values()) {
+            partitions.put(new JSONObject()
+                    .put("id", partition.getPartitionId())
+                    .put("endOffset", partition.getEndOffset())
+                    .put("highWatermark", partition.getHighWatermark()));
+        }
+
+        JSONArray consumerGroups = new JSONArray();
+        for (ConsumerGroup<T> consumerGroup : topic.getConsumerGroups().values()) {
+            JSONObject offsets = new JSONObject();
+            for (String partitionId : topic.getPartitions().keySet())
+                offsets.put(partitionId, consumerGroup.getOffset(partitionId));
+
+            JSONArray consumers = new JSONArray();
+            for (Consumer<T> consumer : consumerGroup.getConsumers().values()) {
+                consumers.put(new JSONObject()
+                        .put("id", consumer.getConsumerId())
+                        .put("partitions", new JSONArray(consumer.getPartitions().keySet())));
+            }
+
+            consumerGroups.put(new JSONObject()
+                    .put("id", consumerGroup.getConsumerGroupId())
+                    .put("rebalance", consumerGroup.getRebalance().toString())
+                    .put("offsets", offsets)
+                    .put("consumers", consumers));
+        }
+
+        return new JSONObject()
+                .put("id", topic.getTopicId())
+                .put("type", topic.getSerde().getName())
+                .put("partitions", partitions)
+                .put("consumerGroups", consumerGroups);
+    }
+
+    private static boolean acceptsGzip(Request req) {
+        String accepted = req.headers("Accept-Encoding");
+        return accepted != null && accepted.toLowerCase().contains("gzip");
+    }
+
+    private static int intParam(Request req, String name, int defaultValue) {
+        String value = req.queryParams(name);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+
+    private static long longParam(Request req, String name, long defaultValue) {
+        String value = req.queryParams(name);
+        return value == null ? defaultValue : Long.parseLong(value);
+    }
+}
\ No newline at end of file
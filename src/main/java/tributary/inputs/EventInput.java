@@ -6,21 +6,43 @@ public class EventInput {
     private final String producerId;
     private final String topicId;
     private final JSONObject file;
+    private final byte[] payload;
+    private final String text;
     private final String fileName;
     private final String allocation;
 
     public EventInput(String producerId, String topicId, JSONObject file, String fileName) {
-        this.producerId = producerId;
-        this.topicId = topicId;
-        this.file = file;
-        this.fileName = fileName;
-        this.allocation = null;
+        this(producerId, topicId, file, fileName, null);
     }
 
+    /**
+     * an event whose value is file, produced to a topic of another type as its JSON text
+     */
     public EventInput(String producerId, String topicId, JSONObject file, String fileName, String allocation) {
+        this(producerId, topicId, file, null, null, fileName, allocation);
+    }
+
+    /**
+     * an event whose value is already serialised by the serde of the topic, e.g. by IntSerde.serializeInt
+     */
+    public EventInput(String producerId, String topicId, byte[] payload, String fileName, String allocation) {
+        this(producerId, topicId, null, payload, null, fileName, allocation);
+    }
+
+    /**
+     * an event whose value is read from text by the serde of the topic, as typed in the CLI
+     */
+    public EventInput(String producerId, String topicId, String text, String fileName, String allocation) {
+        this(producerId, topicId, null, null, text, fileName, allocation);
+    }
+
+    private EventInput(String producerId, String topicId, JSONObject file, byte[] payload, String text,
+                       String fileName, String allocation) {
         this.producerId = producerId;
         this.topicId = topicId;
         this.file = file;
+        this.payload = payload;
+        this.text = text;
         this.fileName = fileName;
         this.allocation = allocation;
     }
@@ -29,6 +51,20 @@ public class EventInput {
         return file;
     }
 
+    /**
+     * @return the serialised value, or null if the value is given as a JSONObject or text
+     */
+    public byte[] getPayload() {
+        return payload;
+    }
+
+    /**
+     * @return the text of the value, or null if the value is given as a JSONObject or serialised
+     */
+    public String getText() {
+        return text;
+    }
+
     public String getFileName() {
         return fileName;
     }
@@ -0,0 +1,23 @@
+package tributary.inputs;
+
+public class InputResult<I> {
+    private final I input;
+    private final Throwable error;
+
+    public InputResult(I input, Throwable error) {
+        this.input = input;
+        this.error = error;
+    }
+
+    public I getInput() {
+        return input;
+    }
+
+    public boolean isSuccess() {
+        return error == null;
+    }
+
+    public Throwable getError() {
+        return error;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,22 @@
+package tributary.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A striped counter, cheap to update from many threads at once.
+ */
+public class Counter {
+    private final LongAdder value = new LongAdder();
+
+    public void increment() {
+        value.increment();
+    }
+
+    public void add(long amount) {
+        value.add(amount);
+    }
+
+    public long get() {
+        return value.sum();
+    }
+}
\ No newline at end of file
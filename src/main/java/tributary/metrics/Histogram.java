@@ -0,0 +1,66 @@
+package tributary.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A log-linear histogram in the style of HdrHistogram: values are counted in buckets whose width doubles
+ * every 64 buckets, so any recorded value is reported within about 1.5% of its true value. Recording is
+ * lock-free and allocation-free. Values above 2^40 (about 18 minutes in nanoseconds) are clamped.
+ */
+public class Histogram {
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int HALF_SUB_BUCKET_BITS = SUB_BUCKET_BITS - 1;
+    private static final long MAX_VALUE = 1L << 40;
+
+    private final AtomicLongArray counts = new AtomicLongArray(index(MAX_VALUE) + 1);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    public void record(long value) {
+        value = Math.max(0, Math.min(value, MAX_VALUE));
+        counts.incrementAndGet(index(value));
+        count.increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    private static int index(long value) {
+        if (value < (1 << SUB_BUCKET_BITS)) return (int) value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value) - HALF_SUB_BUCKET_BITS;
+        return (exponent << HALF_SUB_BUCKET_BITS) + (int) (value >>> exponent);
+    }
+
+    private static long highestValue(int index) {
+        if (index < (1 << SUB_BUCKET_BITS)) return index;
+        int exponent = (index >> HALF_SUB_BUCKET_BITS) - 1;
+        long subBucket = index - ((long) exponent << HALF_SUB_BUCKET_BITS);
+        return ((subBucket + 1) << exponent) - 1;
+    }
+
+    public HistogramSnapshot snapshot() {
+        long[] snapshot = new long[counts.length()];
+        long total = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        long max = this.max.get();
+        return new HistogramSnapshot(count.sum(), sum.sum(), max,
+                Math.min(max, percentile(snapshot, total, 0.5)),
+                Math.min(max, percentile(snapshot, total, 0.99)),
+                Math.min(max, percentile(snapshot, total, 0.999)));
+    }
+
+    private static long percentile(long[] counts, long total, double quantile) {
+        long rank = (long) Math.ceil(quantile * total);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank && seen > 0) return highestValue(i);
+        }
+        return 0;
+    }
+}
\ No newline at end of file
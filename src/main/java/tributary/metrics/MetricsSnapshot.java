@@ -0,0 +1,53 @@
+package tributary.metrics;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+public class MetricsSnapshot {
+    private final long uptimeNanos;
+    private final Map<String, Long> counters;
+    private final Map<String, Long> gauges;
+    private final Map<String, HistogramSnapshot> histograms;
+
+    public MetricsSnapshot(long uptimeNanos, Map<String, Long> counters, Map<String, Long> gauges,
+                           Map<String, HistogramSnapshot> histograms) {
+        this.uptimeNanos = uptimeNanos;
+        this.counters = counters;
+        this.gauges = gauges;
+        this.histograms = histograms;
+    }
+
+    public Map<String, Long> getCounters() {
+        return counters;
+    }
+
+    public Map<String, Long> getGauges() {
+        return gauges;
+    }
+
+    public Map<String, HistogramSnapshot> getHistograms() {
+        return histograms;
+    }
+
+    public long getUptimeNanos() {
+        return uptimeNanos;
+    }
+
+    /**
+     * @return the average rate per second of a counter since the registry was created
+     */
+    public double getRate(String counter) {
+        double seconds = (double) uptimeNanos / TimeUnit.SECONDS.toNanos(1);
+        return seconds == 0 ? 0 : counters.getOrDefault(counter, 0L) / seconds;
+    }
+
+    public void display() {
+        System.out.println("");
+        System.out.println("Metrics after " + TimeUnit.NANOSECONDS.toSeconds(uptimeNanos) + "s");
+        counters.forEach((name, value) ->
+                System.out.println(String.format("\t%s: %d (%.1f/s)", name, value, getRate(name))));
+        gauges.forEach((name, value) -> System.out.println("\t" + name + ": " + value));
+        histograms.forEach((name, value) -> System.out.println("\t" + name + ": " + value));
+        System.out.println("");
+    }
+}
\ No newline at end of file
@@ -0,0 +1,221 @@
+package tributary.producer;
+
+import org.json.JSONObject;
+import tributary.Acks;
+import tributary.Allocation;
+import tributary.Tributary;
+import tributary.producer.message.Message;
+import tributary.sink.EventSink;
+import tributary.sink.NoOpSink;
+import tributary.topic.Partition;
+import tributary.topic.Topic;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Accumulates the events of one producer to one topic per target partition. A partition's batch is
+ * appended as a single operation once it holds batchSize events, or once its oldest event has waited
+ * lingerMs. A batch that fails to append is kept and appended again with the next flush, but a send
+ * that fills a batch which then fails to append takes its event back and throws, so that a partition
+ * that cannot be appended to holds fewer than batchSize events and the event is not appended twice if sent
+ * again.
+ * <p>
+ * With Acks.ALL, sending, flushing and closing wait until the replicas in sync have every batch appended
+ * so far, including those appended as they lingered, and throw if they do not within
+ * Tributary.ACKS_TIMEOUT_MS. The wait holds no lock, so the linger task is not held up.
+ */
+public class BatchProducer<T> implements AutoCloseable {
+    private final Producer<T> producer;
+    private final Topic<T> topic;
+    private final int batchSize;
+    private final long lingerNanos;
+    private final Map<Partition<T>, Batch<T>> batches = new HashMap<>();
+    // the end offset of the batches appended per partition that sending has yet to wait for, with Acks.ALL
+    private final Map<Partition<T>, Long> unreplicated = new HashMap<>();
+    private final ScheduledFuture<?> lingerTask;
+    private final Supplier<EventSink> sink;
+    private final Consumer<BatchProducer<T>> onClose;
+
+    public BatchProducer(Producer<T> producer, Topic<T> topic, int batchSize, long lingerMs,
+                         ScheduledExecutorService scheduler) {
+        this(producer, topic, batchSize, lingerMs, scheduler, NoOpSink::new, x -> { });
+    }
+
+    /**
+     * @param sink where each event is reported once its batch is appended, looked up per batch
+     * @param onClose run once the producer is closed, e.g. to stop tracking it
+     */
+    public BatchProducer(Producer<T> producer, Topic<T> topic, int batchSize, long lingerMs,
+                         ScheduledExecutorService scheduler, Supplier<EventSink> sink,
+                         Consumer<BatchProducer<T>> onClose) {
+        if (batchSize <= 0 || lingerMs <= 0)
+            throw new IllegalArgumentException("Batch size and linger must be positive");
+
+        this.producer = producer;
+        this.topic = topic;
+        this.batchSize = batchSize;
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(lingerMs);
+        this.sink = sink;
+        this.onClose = onClose;
+        this.lingerTask = scheduler.scheduleAtFixedRate(this::flushExpired, lingerMs, lingerMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the producer has manual allocation strategy
+     */
+    public void send(JSONObject value, String messageId) {
+        send(topic.serialize(value), messageId, null);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the producer does not have manual allocation strategy or partition
+     * does not exist
+     */
+    public void send(JSONObject value, String messageId, String partitionId) {
+        send(topic.serialize(value), messageId, checkPartition(partitionId));
+    }
+
+    /**
+     * sends a value serialised by the serde of the topic
+     * @throws IllegalArgumentException if the producer has manual allocation strategy
+     */
+    public void sendValue(T value, String messageId) {
+        send(topic.getSerde().serialize(value), messageId, null);
+    }
+
+    /**
+     * sends a value serialised by the serde of the topic
+     * @throws IllegalArgumentException if the producer does not have manual allocation strategy or partition
+     * does not exist
+     */
+    public void sendValue(T value, String messageId, String partitionId) {
+        send(topic.getSerde().serialize(value), messageId, checkPartition(partitionId));
+    }
+
+    private String checkPartition(String partitionId) {
+        if (producer.getAllocationStrategy() != Allocation.MANUAL)
+            throw new IllegalArgumentException("Producer has " + producer.getAllocationStrategy() +
+                    " allocation strategy but partition was provided");
+        return partitionId;
+    }
+
+    private void send(byte[] payload, String messageId, String partitionId) {
+        if (partitionId == null && producer.getAllocationStrategy() == Allocation.MANUAL)
+            throw new IllegalArgumentException("Producer has manual allocation strategy but no partition was provided");
+
+        awaitReplicated(add(producer.createMessage(payload, messageId, partitionId)));
+    }
+
+    /**
+     * @return the end offsets to wait for
+     */
+    private synchronized Map<Partition<T>, Long> add(Message<T> message) {
+        Partition<T> partition = topic.route(message, producer.getPartitioner());
+        Batch<T> batch = batches.computeIfAbsent(partition, x -> new Batch<>());
+        batch.add(message);
+        if (batch.size() >= batchSize) {
+            try {
+                flush(partition, batch);
+            } catch (RuntimeException e) {
+                batch.removeLast();
+                if (batch.size() == 0) batches.remove(partition);
+                throw e;
+            }
+        }
+        return takeUnreplicated();
+    }
+
+    /**
+     * appends every batch
+     * @throws IllegalStateException if producing with Acks.ALL and the batches were not replicated in time
+     */
+    public void flush() {
+        Map<Partition<T>, Long> appended;
+        synchronized (this) {
+            new ArrayList<>(batches.keySet()).forEach(x -> flush(x, batches.get(x)));
+            appended = takeUnreplicated();
+        }
+        awaitReplicated(appended);
+    }
+
+    private Map<Partition<T>, Long> takeUnreplicated() {
+        if (unreplicated.isEmpty()) return Map.of();
+        Map<Partition<T>, Long> taken = new HashMap<>(unreplicated);
+        unreplicated.clear();
+        return taken;
+    }
+
+    private static <T> void awaitReplicated(Map<Partition<T>, Long> endOffsets) {
+        endOffsets.forEach((partition, endOffset) -> partition.awaitReplicated(endOffset, Tributary.ACKS_TIMEOUT_MS));
+    }
+
+    private synchronized void flushExpired() {
+        long now = System.nanoTime();
+        new ArrayList<>(batches.keySet()).forEach(x -> {
+            Batch<T> batch = batches.get(x);
+            if (now - batch.getCreated() < lingerNanos) return;
+            try {
+                flush(x, batch);
+            } catch (RuntimeException e) {
+                // the batch is kept for the next run, failing here would cancel every later run
+                System.out.println("Appending a batch to partition " + x.getPartitionId() + " failed: "
+                        + e.getMessage());
+            }
+        });
+    }
+
+    private void flush(Partition<T> partition, Batch<T> batch) {
+        long offset = partition.addEvents(batch.getMessages());
+        batches.remove(partition);
+        if (producer.getAcks() == Acks.ALL) unreplicated.merge(partition, offset + batch.size(), Math::max);
+        EventSink current = sink.get();
+        for (Message<T> message : batch.getMessages()) current.produced(topic.getTopicId(), message);
+    }
+
+    /**
+     * stops lingering and appends every batch
+     * @throws IllegalStateException if producing with Acks.ALL and the batches were not replicated in time
+     */
+    @Override
+    public void close() {
+        lingerTask.cancel(false);
+        try {
+            flush();
+        } finally {
+            onClose.accept(this);
+        }
+    }
+
+    private static class Batch<T> {
+        private final long created = System.nanoTime();
+        private final List<Message<T>> messages = new ArrayList<>();
+
+        void add(Message<T> message) {
+            messages.add(message);
+        }
+
+        void removeLast() {
+            messages.remove(messages.size() - 1);
+        }
+
+        int size() {
+            return messages.size();
+        }
+
+        long getCreated() {
+            return created;
+        }
+
+        List<Message<T>> getMessages() {
+            return messages;
+        }
+    }
+}
\ No newline at end of file
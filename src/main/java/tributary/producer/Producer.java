@@ -1,27 +1,80 @@
 package tributary.producer;
 
-import org.json.JSONObject;
+import tributary.Acks;
 import tributary.Allocation;
 import tributary.producer.message.Message;
+import tributary.producer.partitioner.HashPartitioner;
+import tributary.producer.partitioner.Partitioner;
+import tributary.producer.partitioner.RandomPartitioner;
+import tributary.producer.partitioner.RoundRobinPartitioner;
+import tributary.producer.partitioner.StickyPartitioner;
 
 public class Producer<T> {
     private Allocation allocation;
     private String id;
+    // shared by every message this producer creates
+    private final String source;
+    // null for manual allocation
+    private final Partitioner partitioner;
+    private volatile Acks acks = Acks.LEADER;
 
     public Producer(String producerId, Allocation allocation) {
+        this(producerId, allocation, partitionerFor(allocation));
+    }
+
+    public Producer(String producerId, Partitioner partitioner) {
+        this(producerId, Allocation.CUSTOM, partitioner);
+    }
+
+    private Producer(String producerId, Allocation allocation, Partitioner partitioner) {
         this.allocation = allocation;
         this.id = producerId;
+        this.source = "Producer" + producerId;
+        this.partitioner = partitioner;
+    }
+
+    private static Partitioner partitionerFor(Allocation allocation) {
+        switch (allocation) {
+            case MANUAL:
+                return null;
+            case ROUNDROBIN:
+                return new RoundRobinPartitioner();
+            case STICKY:
+                return new StickyPartitioner();
+            case HASH:
+                return new HashPartitioner();
+            case RANDOM:
+                return new RandomPartitioner();
+            default:
+                throw new IllegalArgumentException("Allocation " + allocation + " needs a partitioner");
+        }
+    }
+
+    public String getProducerId() {
+        return id;
     }
 
     public Allocation getAllocationStrategy() {
         return allocation;
     }
 
-    public Message createMessage(JSONObject value, String messageId, String allocation) {
-        return new Message("Producer" + id, allocation, value, messageId);
+    public Partitioner getPartitioner() {
+        return partitioner;
+    }
+
+    public Acks getAcks() {
+        return acks;
+    }
+
+    public void setAcks(Acks acks) {
+        this.acks = acks;
     }
 
-    public Message createMessage(JSONObject value, String messageId) {
-        return new Message("Producer" + id, value, messageId);
+    /**
+     * @param payload the value serialised by the serde of the topic
+     * @param allocation the partition of the message, or null to route it with the partitioner
+     */
+    public Message<T> createMessage(byte[] payload, String messageId, String allocation) {
+        return new Message<>(source, allocation, payload, messageId);
     }
 }
@@ -1,14 +1,13 @@
 package tributary.producer.message;
 
-import java.util.Date;
-
 public class Header<T> {
-    private final Date timeCreated;
+    // nanoseconds since the epoch
+    private final long timeCreated;
     private final String id;
     private final Class<T> payload_type;
     private final String source;
 
-    public Header(Date timeCreated, String id, Class<T> payload_type, String source) {
+    public Header(long timeCreated, String id, Class<T> payload_type, String source) {
         this.timeCreated = timeCreated;
         this.id = id;
         this.payload_type = payload_type;
@@ -18,4 +17,16 @@ public class Header<T> {
     public String getId() {
         return id;
     }
+
+    public long getTimeCreated() {
+        return timeCreated;
+    }
+
+    public Class<T> getPayloadType() {
+        return payload_type;
+    }
+
+    public String getSource() {
+        return source;
+    }
 }
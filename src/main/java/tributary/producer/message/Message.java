@@ -1,24 +1,105 @@
 package tributary.producer.message;
 
-import org.json.JSONObject;
+import tributary.serde.Serde;
 
-import java.util.Date;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Map;
 
+/**
+ * A message is held as a single record [timeCreated][id length][id][payload], with timeCreated in epoch
+ * nanoseconds and the payload being the value serialised by the serde of its topic, the UTF-8 JSON of the
+ * value for JSONObject topics. The value is only deserialised when read, by the serde of its topic. The
+ * source is shared by every message of a producer rather than copied into each record.
+ */
 public class Message<T> {
-    private final Header header;
+    private static final int TIME_CREATED = 0;
+    private static final int ID_LENGTH = TIME_CREATED + Long.BYTES;
+    private static final int ID = ID_LENGTH + Integer.BYTES;
+
+    private final byte[] record;
+    private final String source;
     private String key;
-    private final JSONObject value;
 
-    public Message(String source, String key, JSONObject value, String messageId) {
-        this.header = new Header(new Date(), messageId, value.getClass(), source);
+    /**
+     * @param payload the serialised value, copied into the record
+     */
+    public Message(String source, String key, byte[] payload, String messageId) {
+        this.record = encode(now(), messageId, payload);
+        this.source = source;
+        this.key = key;
+    }
+
+    private Message(byte[] record, String source, String key) {
+        this.record = record;
+        this.source = source;
         this.key = key;
-        this.value = value;
     }
 
-    public Message(String source, JSONObject value, String messageId) {
-        this.header = new Header(new Date(), messageId, value.getClass(), source);
-        this.key = null;
-        this.value = value;
+    /**
+     * @return the current time in nanoseconds since the epoch, as used by getTimeCreated
+     */
+    public static long now() {
+        Instant now = Instant.now();
+        return now.getEpochSecond() * 1_000_000_000L + now.getNano();
+    }
+
+    private static byte[] encode(long timeCreated, String messageId, byte[] payload) {
+        byte[] id = messageId.getBytes(StandardCharsets.UTF_8);
+        return ByteBuffer.allocate(ID + id.length + payload.length)
+                .putLong(timeCreated)
+                .putInt(id.length)
+                .put(id)
+                .put(payload)
+                .array();
+    }
+
+    /**
+     * @return this message encoded as [source][key][record], source and key being length prefixed UTF-8
+     * with a length of -1 for null
+     */
+    public byte[] toBytes() {
+        byte[] source = encode(this.source);
+        byte[] key = encode(this.key);
+        return ByteBuffer.allocate(2 * Integer.BYTES + source.length + key.length + record.length)
+                .putInt(this.source == null ? -1 : source.length).put(source)
+                .putInt(this.key == null ? -1 : key.length).put(key)
+                .put(record)
+                .array();
+    }
+
+    public static <T> Message<T> fromBytes(ByteBuffer buffer) {
+        String source = decode(buffer);
+        String key = decode(buffer);
+        byte[] record = new byte[buffer.remaining()];
+        buffer.get(record);
+        return new Message<>(record, source, key);
+    }
+
+    /**
+     * reads a message like fromBytes, taking its source and key from strings where an equal string was
+     * read before, so that many messages read together do not each hold a copy
+     */
+    public static <T> Message<T> fromBytes(ByteBuffer buffer, Map<String, String> strings) {
+        String source = decode(buffer);
+        String key = decode(buffer);
+        byte[] record = new byte[buffer.remaining()];
+        buffer.get(record);
+        return new Message<>(record, source == null ? null : strings.computeIfAbsent(source, x -> x),
+                key == null ? null : strings.computeIfAbsent(key, x -> x));
+    }
+
+    private static byte[] encode(String s) {
+        return s == null ? new byte[0] : s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String decode(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) return null;
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
     }
 
     public void setKey(String key) {
@@ -30,11 +111,58 @@ public class Message<T> {
     }
 
     public String getId() {
-        return header.getId();
+        return new String(record, ID, idLength(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return a view of the UTF-8 id, positioned at its first byte
+     */
+    public ByteBuffer getIdBytes() {
+        return ByteBuffer.wrap(record, ID, idLength());
+    }
+
+    /**
+     * @return the time this message was created, in nanoseconds since the epoch
+     */
+    public long getTimeCreated() {
+        return ByteBuffer.wrap(record).getLong(TIME_CREATED);
+    }
+
+    /**
+     * @param serde the serde of the topic of this message
+     */
+    public Header<T> getHeader(Serde<T> serde) {
+        return new Header<>(getTimeCreated(), getId(), serde.getType(), source);
+    }
+
+    /**
+     * @return a read-only view of the serialised value
+     */
+    public ByteBuffer getPayload() {
+        int offset = payloadOffset();
+        return ByteBuffer.wrap(record, offset, record.length - offset).slice().asReadOnlyBuffer();
+    }
+
+    /**
+     * @return the number of bytes this message's record takes
+     */
+    public int getSize() {
+        return record.length;
+    }
+
+    /**
+     * @param serde the serde of the topic of this message
+     */
+    public T getValue(Serde<T> serde) {
+        return serde.deserialize(getPayload());
+    }
+
+    private int idLength() {
+        return ByteBuffer.wrap(record).getInt(ID_LENGTH);
     }
 
-    public JSONObject getValue() {
-        return value;
+    private int payloadOffset() {
+        return ID + idLength();
     }
 
     public void display() {
@@ -0,0 +1,59 @@
+package tributary.producer.partitioner;
+
+import tributary.producer.message.Message;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Routes a message by the murmur3 hash of its id, so that all messages with the same id go to the same
+ * partition, in order, for as long as the partitions of the topic do not change.
+ */
+public class HashPartitioner implements Partitioner {
+    private static final int SEED = 0x9747b28c;
+
+    @Override
+    public int partition(Message<?> message, int numPartitions) {
+        return Math.floorMod(murmur3(message.getIdBytes()), numPartitions);
+    }
+
+    static int murmur3(ByteBuffer data) {
+        final int c1 = 0xcc9e2d51;
+        final int c2 = 0x1b873593;
+        int offset = data.position();
+        int length = data.remaining();
+        int h = SEED;
+
+        int blocks = length / Integer.BYTES;
+        for (int i = 0; i < blocks; i++) {
+            int k = Integer.reverseBytes(data.getInt(offset + i * Integer.BYTES));
+            k *= c1;
+            k = Integer.rotateLeft(k, 15);
+            k *= c2;
+            h ^= k;
+            h = Integer.rotateLeft(h, 13);
+            h = h * 5 + 0xe6546b64;
+        }
+
+        int tail = offset + blocks * Integer.BYTES;
+        // the 1 to 3 bytes after the last block, unrolled from the reference's switch falling through
+        int remaining = length & 3;
+        if (remaining > 0) {
+            int k = 0;
+            if (remaining == 3) k ^= (data.get(tail + 2) & 0xff) << 16;
+            if (remaining >= 2) k ^= (data.get(tail + 1) & 0xff) << 8;
+            k ^= data.get(tail) & 0xff;
+            k *= c1;
+            k = Integer.rotateLeft(k, 15);
+            k *= c2;
+            h ^= k;
+        }
+
+        h ^= length;
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,14 @@
+package tributary.producer.partitioner;
+
+import tributary.producer.message.Message;
+
+/**
+ * Picks the partition of a topic a message without a key is added to.
+ */
+public interface Partitioner {
+    /**
+     * @param numPartitions the number of partitions of the topic, at least one
+     * @return the index of the partition, from 0 to numPartitions - 1
+     */
+    int partition(Message<?> message, int numPartitions);
+}
\ No newline at end of file
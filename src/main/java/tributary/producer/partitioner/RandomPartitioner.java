@@ -0,0 +1,12 @@
+package tributary.producer.partitioner;
+
+import tributary.producer.message.Message;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+public class RandomPartitioner implements Partitioner {
+    @Override
+    public int partition(Message<?> message, int numPartitions) {
+        return ThreadLocalRandom.current().nextInt(numPartitions);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,14 @@
+package tributary.producer.partitioner;
+
+import tributary.producer.message.Message;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class RoundRobinPartitioner implements Partitioner {
+    private final AtomicInteger next = new AtomicInteger();
+
+    @Override
+    public int partition(Message<?> message, int numPartitions) {
+        return Math.floorMod(next.getAndIncrement(), numPartitions);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,41 @@
+package tributary.producer.partitioner;
+
+import tributary.producer.message.Message;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends runs of messages to the same partition, so that they fill one batch rather than many, moving to
+ * another random partition after every stickiness messages.
+ */
+public class StickyPartitioner implements Partitioner {
+    public static final int DEFAULT_STICKINESS = 1000;
+
+    private final int stickiness;
+    private final AtomicInteger sent = new AtomicInteger();
+    private volatile int current = -1;
+
+    public StickyPartitioner() {
+        this(DEFAULT_STICKINESS);
+    }
+
+    public StickyPartitioner(int stickiness) {
+        if (stickiness <= 0)
+            throw new IllegalArgumentException("Stickiness must be positive");
+
+        this.stickiness = stickiness;
+    }
+
+    @Override
+    public int partition(Message<?> message, int numPartitions) {
+        int partition = current;
+        // floorMod, as the count wraps around to negative after 2^31 messages
+        if (partition < 0 || partition >= numPartitions
+                || Math.floorMod(sent.getAndIncrement(), stickiness) == stickiness - 1) {
+            partition = ThreadLocalRandom.current().nextInt(numPartitions);
+            current = partition;
+        }
+        return partition;
+    }
+}
\ No newline at end of file
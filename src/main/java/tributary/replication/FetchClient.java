@@ -0,0 +1,94 @@
+package tributary.replication;
+
+import tributary.producer.message.Message;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.List;
+
+/**
+ * Reads the events of partitions from the replication port of a broker, leader or follower, over a blocking
+ * socket. Events are read below the high watermark of the broker, so a follower returns only events its
+ * leader reported as replicated. Not thread safe; each thread reading keeps a client of its own.
+ */
+public class FetchClient implements AutoCloseable {
+    private final InetSocketAddress broker;
+    private final SocketChannel channel;
+
+    public FetchClient(InetSocketAddress broker) throws IOException {
+        this.broker = broker;
+        this.channel = SocketChannel.open(broker);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+    }
+
+    /**
+     * reads the events from offset, waiting up to maxWaitMs while the broker has none
+     * @param maxBytes the size of the events to read, at least one event being read however large
+     * @throws IllegalArgumentException if the broker has no such partition, or offset is past its end
+     */
+    public <T> Batch<T> fetch(String topicId, String partitionId, long offset, int maxBytes, int maxWaitMs)
+            throws IOException {
+        ByteBuffer request = new FetchRequest(topicId, partitionId, FetchRequest.CONSUMER, offset, 0, maxBytes,
+                maxWaitMs).encode();
+        while (request.hasRemaining()) channel.write(request);
+
+        FetchResponse response = FetchResponse.read(channel);
+        switch (response.error) {
+            case FetchResponse.UNKNOWN_PARTITION:
+                throw new IllegalArgumentException("Broker " + broker + " has no partition " + partitionId
+                        + " on topic " + topicId);
+            case FetchResponse.OFFSET_OUT_OF_RANGE:
+                throw new IllegalArgumentException("Offset " + offset + " is past the end of partition "
+                        + partitionId);
+            default:
+                break;
+        }
+        return new Batch<>(response.baseOffset, response.highWatermark, response.getMessages());
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * The events of one fetch, from baseOffset. baseOffset is past the offset fetched when the events
+     * between were dropped by retention or compaction.
+     */
+    public static class Batch<T> {
+        private final long baseOffset;
+        private final long highWatermark;
+        private final List<Message<T>> messages;
+
+        private Batch(long baseOffset, long highWatermark, List<Message<T>> messages) {
+            this.baseOffset = baseOffset;
+            this.highWatermark = highWatermark;
+            this.messages = messages;
+        }
+
+        public long getBaseOffset() {
+            return baseOffset;
+        }
+
+        public long getHighWatermark() {
+            return highWatermark;
+        }
+
+        /**
+         * @return the events from baseOffset, null for an event that was dropped
+         */
+        public List<Message<T>> getMessages() {
+            return messages;
+        }
+
+        /**
+         * @return the offset to fetch next
+         */
+        public long getNextOffset() {
+            return baseOffset + messages.size();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,75 @@
+package tributary.replication;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A follower asking its leader for the events of a partition from fetchOffset, its own end offset, or a
+ * consumer asking any broker with the partition for its events from fetchOffset. Sent as
+ * [length][topic][partition][replica][fetch offset][high watermark][max bytes][max wait ms], strings being
+ * length prefixed UTF-8. The leader holds the request for up to maxWaitMs while it has nothing new to send.
+ */
+final class FetchRequest {
+    // the replica id of a consumer's fetch, answered below the high watermark and not counted as a follower
+    static final String CONSUMER = "";
+
+    final String topicId;
+    final String partitionId;
+    final String replicaId;
+    final long fetchOffset;
+    // the high watermark the follower knows, so that it is sent a newer one without waiting
+    final long highWatermark;
+    final int maxBytes;
+    final int maxWaitMs;
+
+    FetchRequest(String topicId, String partitionId, String replicaId, long fetchOffset, long highWatermark,
+                 int maxBytes, int maxWaitMs) {
+        this.topicId = topicId;
+        this.partitionId = partitionId;
+        this.replicaId = replicaId;
+        this.fetchOffset = fetchOffset;
+        this.highWatermark = highWatermark;
+        this.maxBytes = maxBytes;
+        this.maxWaitMs = maxWaitMs;
+    }
+
+    boolean isConsumer() {
+        return replicaId.equals(CONSUMER);
+    }
+
+    /**
+     * @return the framed request, ready to be written
+     */
+    ByteBuffer encode() {
+        byte[] topic = topicId.getBytes(StandardCharsets.UTF_8);
+        byte[] partition = partitionId.getBytes(StandardCharsets.UTF_8);
+        byte[] replica = replicaId.getBytes(StandardCharsets.UTF_8);
+        int length = 3 * Integer.BYTES + topic.length + partition.length + replica.length + 2 * Long.BYTES
+                + 2 * Integer.BYTES;
+        ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES + length)
+                .putInt(length)
+                .putInt(topic.length).put(topic)
+                .putInt(partition.length).put(partition)
+                .putInt(replica.length).put(replica)
+                .putLong(fetchOffset)
+                .putLong(highWatermark)
+                .putInt(maxBytes)
+                .putInt(maxWaitMs);
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * @param frame the request without its length
+     */
+    static FetchRequest decode(ByteBuffer frame) {
+        return new FetchRequest(string(frame), string(frame), string(frame), frame.getLong(), frame.getLong(),
+                frame.getInt(), frame.getInt());
+    }
+
+    private static String string(ByteBuffer frame) {
+        byte[] bytes = new byte[frame.getInt()];
+        frame.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
\ No newline at end of file
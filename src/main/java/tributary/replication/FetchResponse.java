@@ -0,0 +1,123 @@
+package tributary.replication;
+
+import tributary.producer.message.Message;
+import tributary.storage.RecordFrame;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The events a leader sends a follower, or a broker a consumer, as
+ * [length][error][high watermark][base offset][count][record]... with each record Message.toBytes() framed as
+ * RecordFrame describes, a length of -1 marking an event the leader dropped. The base offset is above the
+ * fetch offset when the events between were dropped before they were fetched, and is the end offset of the
+ * leader when the fetch offset is out of range.
+ */
+final class FetchResponse {
+    static final byte NONE = 0;
+    static final byte UNKNOWN_PARTITION = 1;
+    static final byte NOT_LEADER = 2;
+    static final byte OFFSET_OUT_OF_RANGE = 3;
+    private static final int HEADER_BYTES = 1 + 2 * Long.BYTES + Integer.BYTES;
+
+    final byte error;
+    final long highWatermark;
+    final long baseOffset;
+    final List<ByteBuffer> records;
+
+    private FetchResponse(byte error, long highWatermark, long baseOffset, List<ByteBuffer> records) {
+        this.error = error;
+        this.highWatermark = highWatermark;
+        this.baseOffset = baseOffset;
+        this.records = records;
+    }
+
+    /**
+     * @param records the records from baseOffset, null for a dropped event
+     * @return the framed response, ready to be written
+     */
+    static ByteBuffer encode(byte error, long highWatermark, long baseOffset, List<byte[]> records) {
+        int recordBytes = 0;
+        for (byte[] record : records) recordBytes += RecordFrame.frameBytes(record);
+
+        ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES + HEADER_BYTES + recordBytes);
+        header(buffer, error, highWatermark, baseOffset, records.size(), recordBytes);
+        for (byte[] record : records) RecordFrame.put(buffer, record);
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * @return the framed response without its records, to be followed by recordBytes of records
+     */
+    static ByteBuffer encodeHeader(byte error, long highWatermark, long baseOffset, int count, long recordBytes) {
+        ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES + HEADER_BYTES);
+        header(buffer, error, highWatermark, baseOffset, count, recordBytes);
+        buffer.flip();
+        return buffer;
+    }
+
+    private static void header(ByteBuffer buffer, byte error, long highWatermark, long baseOffset, int count,
+                               long recordBytes) {
+        buffer.putInt(Math.toIntExact(HEADER_BYTES + recordBytes))
+                .put(error)
+                .putLong(highWatermark)
+                .putLong(baseOffset)
+                .putInt(count);
+    }
+
+    static ByteBuffer encodeError(byte error) {
+        return encode(error, 0, 0, List.of());
+    }
+
+    /**
+     * reads one response from a blocking channel
+     * @throws EOFException if the leader closed the connection
+     * @throws IOException if a record is not the one the leader sent
+     */
+    static FetchResponse read(ReadableByteChannel channel) throws IOException {
+        ByteBuffer length = readFully(channel, ByteBuffer.allocate(Integer.BYTES));
+        ByteBuffer frame = readFully(channel, ByteBuffer.allocate(length.getInt()));
+
+        byte error = frame.get();
+        long highWatermark = frame.getLong();
+        long baseOffset = frame.getLong();
+        int count = frame.getInt();
+        List<ByteBuffer> records = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int size = frame.getInt();
+            if (size < 0) {
+                records.add(null);
+                continue;
+            }
+            int crc = frame.getInt();
+            ByteBuffer record = frame.slice();
+            record.limit(size);
+            if (!RecordFrame.matches(record, crc)) throw new IOException("Record " + i + " is corrupt");
+            records.add(record);
+            frame.position(frame.position() + size);
+        }
+        return new FetchResponse(error, highWatermark, baseOffset, records);
+    }
+
+    private static ByteBuffer readFully(ReadableByteChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) throw new EOFException("Connection closed by the broker");
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * @return the events of this response, null for a dropped event
+     */
+    <T> List<Message<T>> getMessages() {
+        List<Message<T>> messages = new ArrayList<>(records.size());
+        for (ByteBuffer record : records) messages.add(record == null ? null : Message.fromBytes(record));
+        return messages;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,146 @@
+package tributary.replication;
+
+import tributary.producer.message.Message;
+import tributary.topic.Partition;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Keeps a follower partition in step with its leader on another broker, fetching from its end offset one
+ * request at a time over a blocking socket. The leader holds a fetch while it has nothing new, so a caught
+ * up follower gets each event as soon as it is appended. A lost connection is retried until the fetcher is
+ * closed, e.g. once the follower is told to lead. A follower ahead of its leader drops the events the leader
+ * does not have and fetches on from the leader's end offset.
+ */
+public class ReplicaFetcher<T> implements AutoCloseable {
+    public static final int MAX_FETCH_BYTES = 1024 * 1024;
+    public static final int MAX_WAIT_MS = 500;
+    private static final long RETRY_MS = 1000;
+    // events the leader dropped before the follower fetched them are skipped this many at a time
+    private static final int MAX_GAP = 64 * 1024;
+
+    private final String topicId;
+    private final Partition<T> partition;
+    private final String replicaId;
+    private final InetSocketAddress leader;
+    private final Thread thread;
+    private volatile SocketChannel channel;
+    private volatile boolean closed = false;
+
+    /**
+     * @param partition the follower partition, following once the fetcher starts
+     * @param replicaId identifies this follower to the leader
+     */
+    public ReplicaFetcher(String topicId, Partition<T> partition, String replicaId, InetSocketAddress leader) {
+        this.topicId = topicId;
+        this.partition = partition;
+        this.replicaId = replicaId;
+        this.leader = leader;
+        this.thread = new Thread(this::run, "tributary-fetcher-" + topicId + "-" + partition.getPartitionId());
+        this.thread.setDaemon(true);
+    }
+
+    public void start() {
+        partition.follow();
+        thread.start();
+    }
+
+    public InetSocketAddress getLeader() {
+        return leader;
+    }
+
+    private void run() {
+        String lastError = null;
+        while (!closed) {
+            try (SocketChannel channel = SocketChannel.open(leader)) {
+                this.channel = channel;
+                if (closed) return;
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                while (!closed) {
+                    String error = fetch(channel);
+                    if (error != null && !error.equals(lastError)) System.out.println(error);
+                    lastError = error;
+                    if (error != null) Thread.sleep(RETRY_MS);
+                }
+            } catch (IOException e) {
+                if (closed) return;
+                String error = "Replica of partition " + partition.getPartitionId() + " cannot reach its leader "
+                        + leader + ": " + e.getMessage();
+                if (!error.equals(lastError)) System.out.println(error);
+                lastError = error;
+                sleep();
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return why the leader sent no events, or null if it did or the follower was ahead and dropped events
+     */
+    private String fetch(SocketChannel channel) throws IOException {
+        long end = partition.getEndOffset();
+        ByteBuffer request = new FetchRequest(topicId, partition.getPartitionId(), replicaId, end,
+                partition.getHighWatermark(), MAX_FETCH_BYTES, MAX_WAIT_MS).encode();
+        while (request.hasRemaining()) channel.write(request);
+
+        FetchResponse response = FetchResponse.read(channel);
+        switch (response.error) {
+            case FetchResponse.UNKNOWN_PARTITION:
+                return "Leader " + leader + " has no partition " + partition.getPartitionId() + " on topic " + topicId;
+            case FetchResponse.NOT_LEADER:
+                return "Partition " + partition.getPartitionId() + " on " + leader + " follows another leader";
+            case FetchResponse.OFFSET_OUT_OF_RANGE:
+                System.out.println("Replica of partition " + partition.getPartitionId() + " is ahead of its leader "
+                        + leader + " and drops the events from offset " + response.baseOffset);
+                partition.truncateReplica(response.baseOffset, response.highWatermark);
+                return null;
+            default:
+                break;
+        }
+
+        List<Message<T>> messages = new ArrayList<>();
+        long gap = response.baseOffset - end;
+        if (gap > MAX_GAP) {
+            messages.addAll(Collections.nCopies(MAX_GAP, null));
+        } else {
+            messages.addAll(Collections.nCopies((int) gap, null));
+            messages.addAll(response.getMessages());
+        }
+        partition.addReplicatedEvents(messages, response.highWatermark);
+        return null;
+    }
+
+    private void sleep() {
+        try {
+            Thread.sleep(RETRY_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * stops fetching. The partition keeps following until told to lead
+     */
+    @Override
+    public void close() {
+        closed = true;
+        thread.interrupt();
+        try {
+            SocketChannel current = channel;
+            if (current != null) current.close();
+            thread.join();
+        } catch (IOException e) {
+            // the fetcher stops either way
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,84 @@
+package tributary.replication;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The followers of a partition as its leader sees them. A follower is in sync while it has fetched up to
+ * the end offset the leader had at its previous fetch within the last maxLagMs, so a follower fetching
+ * steadily under load stays in sync and one that stops fetching drops out once maxLagMs passes. The high
+ * watermark is the lowest end offset of the replicas in sync, the leader included, and never moves back.
+ */
+public class ReplicaSet {
+    public static final long DEFAULT_MAX_LAG_MS = 10_000;
+
+    private final long maxLagNanos;
+    private final Map<String, Follower> followers = new ConcurrentHashMap<>();
+    private final AtomicLong highWatermark;
+
+    /**
+     * @param highWatermark the offset below which events were already readable
+     */
+    public ReplicaSet(long maxLagMs, long highWatermark) {
+        this.maxLagNanos = TimeUnit.MILLISECONDS.toNanos(maxLagMs);
+        this.highWatermark = new AtomicLong(highWatermark);
+    }
+
+    /**
+     * records a fetch of a follower, whose log ends at endOffset
+     * @param leaderEndOffset the end offset of the leader when the fetch was received
+     */
+    public void update(String replicaId, long endOffset, long leaderEndOffset) {
+        long now = System.nanoTime();
+        // a new follower is in sync only once it has caught up
+        Follower follower = followers.computeIfAbsent(replicaId, x -> new Follower(now - maxLagNanos - 1));
+        synchronized (follower) {
+            if (endOffset >= follower.leaderEndOffset) follower.caughtUpNanos = now;
+            follower.endOffset = endOffset;
+            follower.leaderEndOffset = leaderEndOffset;
+        }
+    }
+
+    /**
+     * @return the offset below which every replica in sync has the events of the leader
+     */
+    public long getHighWatermark(long leaderEndOffset) {
+        long now = System.nanoTime();
+        long lowest = leaderEndOffset;
+        for (Follower follower : followers.values()) {
+            if (follower.isInSync(now, maxLagNanos)) lowest = Math.min(lowest, follower.endOffset);
+        }
+        return highWatermark.accumulateAndGet(lowest, Math::max);
+    }
+
+    /**
+     * @return the ids of the followers in sync
+     */
+    public List<String> getInSyncReplicas() {
+        long now = System.nanoTime();
+        List<String> inSync = new ArrayList<>();
+        followers.forEach((id, follower) -> {
+            if (follower.isInSync(now, maxLagNanos)) inSync.add(id);
+        });
+        return inSync;
+    }
+
+    private static final class Follower {
+        private volatile long endOffset = 0;
+        private volatile long caughtUpNanos;
+        // the end offset of the leader at the previous fetch, which the next fetch has to reach
+        private long leaderEndOffset = Long.MAX_VALUE;
+
+        private Follower(long caughtUpNanos) {
+            this.caughtUpNanos = caughtUpNanos;
+        }
+
+        private boolean isInSync(long now, long maxLagNanos) {
+            return now - caughtUpNanos <= maxLagNanos;
+        }
+    }
+}
\ No newline at end of file
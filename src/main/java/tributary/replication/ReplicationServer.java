@@ -0,0 +1,338 @@
+package tributary.replication;
+
+import tributary.producer.message.Message;
+import tributary.storage.FileRegion;
+import tributary.storage.RecordFrame;
+import tributary.topic.AppendNotifier;
+import tributary.topic.Partition;
+import tributary.topic.Topic;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serves the fetches of followers and of remote consumers for the partitions of a Tributary from a single
+ * thread, with non-blocking sockets. A follower's fetch records how far it got, which may move the high
+ * watermark of the partition, and is answered with the events from its fetch offset; a consumer's fetch is
+ * answered with the events below the high watermark. A fetch with nothing new to answer is held until an
+ * event is appended to the topic, the high watermark passes the one the fetch knows, or its wait ends, so
+ * fetches that are caught up cost nothing while no events are produced.
+ * <p>
+ * Events of partitions stored on disk are sent as the records of their segment file with transferTo,
+ * never read into the heap, as the records of a segment are framed the way a fetch response frames them.
+ */
+public class ReplicationServer implements AutoCloseable {
+    private static final int READ_BUFFER_BYTES = 64 * 1024;
+    // far above any fetch request, whose size is that of its ids
+    private static final int MAX_REQUEST_BYTES = 1024 * 1024;
+    // a follower dropping out of sync moves the high watermark without a fetch, so it is checked this often
+    private static final long HIGH_WATERMARK_CHECK_MS = 100;
+
+    private final Map<String, Topic<?>> topics;
+    private final long maxLagMs;
+    private final Selector selector;
+    private final ServerSocketChannel server;
+    private final Thread thread;
+    private final Runnable wakeup;
+    // only accessed by the server thread
+    private final Set<AppendNotifier> notifiers = new HashSet<>();
+    private final List<Connection> held = new ArrayList<>();
+    // the high watermark of each partition followers fetched from, as last checked
+    private final Map<Partition<?>, Long> highWatermarks = new HashMap<>();
+    private long nextCheck = System.nanoTime();
+    private volatile boolean closed = false;
+
+    /**
+     * @param topics the topics whose partitions are served, looked up on every fetch
+     * @param port the port to listen on, or 0 for any free port
+     * @param maxLagMs how long a follower stays in sync without catching up with the leader
+     */
+    public ReplicationServer(Map<String, Topic<?>> topics, int port, long maxLagMs) throws IOException {
+        this.topics = topics;
+        this.maxLagMs = maxLagMs;
+        this.selector = Selector.open();
+        this.server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(port));
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+        this.wakeup = selector::wakeup;
+        this.thread = new Thread(this::run, "tributary-replication");
+        this.thread.setDaemon(true);
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    public int getPort() {
+        return server.socket().getLocalPort();
+    }
+
+    private void run() {
+        try {
+            while (!closed) {
+                selector.select(selectTimeoutMs());
+                for (SelectionKey key : selector.selectedKeys()) {
+                    try {
+                        if (key.isAcceptable()) accept();
+                        else if (key.isReadable()) read(key);
+                        else if (key.isWritable()) write(key);
+                    } catch (IOException e) {
+                        // a connection that fails is dropped, while failing to accept one leaves the server open
+                        if (key.channel() != server) drop(key);
+                    } catch (RuntimeException e) {
+                        // a malformed request only costs its own connection, never the thread serving the others
+                        System.out.println("Replication dropped a connection: " + e);
+                        if (key.channel() != server) drop(key);
+                    }
+                }
+                selector.selectedKeys().clear();
+                if (System.nanoTime() - nextCheck >= 0) checkHighWatermarks();
+                answerHeld();
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            if (!closed) System.out.println("Replication server stopped: " + e.getMessage());
+        } finally {
+            for (AppendNotifier notifier : notifiers) notifier.removeListener(wakeup);
+        }
+    }
+
+    /**
+     * @return the time until the first held fetch ends or the high watermarks are checked, or 0 to wait
+     * until woken if there is neither
+     */
+    private long selectTimeoutMs() {
+        long now = System.nanoTime();
+        long first = highWatermarks.isEmpty() ? Long.MAX_VALUE : nextCheck;
+        for (Connection connection : held) first = Math.min(first, connection.deadline);
+        return first == Long.MAX_VALUE ? 0 : Math.max(1, TimeUnit.NANOSECONDS.toMillis(first - now) + 1);
+    }
+
+    private void checkHighWatermarks() {
+        nextCheck = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(HIGH_WATERMARK_CHECK_MS);
+        highWatermarks.keySet().forEach(this::checkHighWatermark);
+    }
+
+    /**
+     * wakes consumers and producers waiting for the high watermark of partition if it moved
+     */
+    private void checkHighWatermark(Partition<?> partition) {
+        long highWatermark = partition.getHighWatermark();
+        Long previous = highWatermarks.put(partition, highWatermark);
+        if (previous != null && highWatermark > previous) partition.getAppendNotifier().signal();
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = server.accept();
+        if (channel == null) return;
+        channel.configureBlocking(false);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        Connection connection = new Connection();
+        connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+    }
+
+    private void read(SelectionKey key) throws IOException {
+        Connection connection = (Connection) key.attachment();
+        SocketChannel channel = (SocketChannel) key.channel();
+        if (channel.read(connection.in) < 0) throw new IOException("Connection closed by the peer");
+
+        ByteBuffer in = connection.in;
+        in.flip();
+        while (in.remaining() >= Integer.BYTES) {
+            int length = in.getInt(in.position());
+            if (length <= 0 || length > MAX_REQUEST_BYTES)
+                throw new IOException("Request of " + length + " bytes is not a fetch request");
+            if (in.remaining() < Integer.BYTES + length) {
+                // a request larger than the buffer gets a buffer of its own
+                if (Integer.BYTES + length > in.capacity()) {
+                    connection.in = ByteBuffer.allocate(Integer.BYTES + length).put(in);
+                    return;
+                }
+                break;
+            }
+            ByteBuffer frame = in.slice();
+            frame.position(Integer.BYTES).limit(Integer.BYTES + length);
+            in.position(in.position() + Integer.BYTES + length);
+            handle(key, connection, FetchRequest.decode(frame.slice()));
+        }
+        in.compact();
+    }
+
+    private void handle(SelectionKey key, Connection connection, FetchRequest request) throws IOException {
+        Topic<?> topic = topics.get(request.topicId);
+        Partition<?> partition = topic == null ? null : topic.getPartitions().get(request.partitionId);
+        if (partition == null) {
+            send(key, FetchResponse.encodeError(FetchResponse.UNKNOWN_PARTITION));
+            return;
+        }
+        // consumers may read from followers, below the high watermark their leader reported
+        if (partition.isFollowing() && !request.isConsumer()) {
+            send(key, FetchResponse.encodeError(FetchResponse.NOT_LEADER));
+            return;
+        }
+        if (request.fetchOffset > partition.getEndOffset()) {
+            send(key, FetchResponse.encode(FetchResponse.OFFSET_OUT_OF_RANGE, partition.getHighWatermark(),
+                    partition.getEndOffset(), List.of()));
+            return;
+        }
+
+        if (notifiers.add(topic.getAppendNotifier())) topic.getAppendNotifier().addListener(wakeup);
+        if (!request.isConsumer()) {
+            highWatermarks.putIfAbsent(partition, partition.getHighWatermark());
+            partition.getReplicaSet(maxLagMs).update(request.replicaId, request.fetchOffset, partition.getEndOffset());
+            // wakes producers waiting for every replica in sync, and the fetches held for the high watermark
+            checkHighWatermark(partition);
+        }
+
+        connection.request = request;
+        connection.partition = partition;
+        connection.deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(request.maxWaitMs);
+        if (request.maxWaitMs == 0 || hasNews(connection)) answer(key, connection);
+        else held.add(connection);
+    }
+
+    private static boolean hasNews(Connection connection) {
+        long highWatermark = connection.partition.getHighWatermark();
+        if (connection.request.isConsumer()) return highWatermark > connection.request.fetchOffset;
+        return connection.partition.getEndOffset() > connection.request.fetchOffset
+                || highWatermark > connection.request.highWatermark;
+    }
+
+    private void answerHeld() {
+        if (held.isEmpty()) return;
+        long now = System.nanoTime();
+        for (Connection connection : new ArrayList<>(held)) {
+            if (!hasNews(connection) && now - connection.deadline < 0) continue;
+            held.remove(connection);
+            try {
+                answer(connection.key, connection);
+            } catch (IOException e) {
+                drop(connection.key);
+            } catch (RuntimeException e) {
+                System.out.println("Replication dropped a connection: " + e);
+                drop(connection.key);
+            }
+        }
+    }
+
+    private void answer(SelectionKey key, Connection connection) throws IOException {
+        FetchRequest request = connection.request;
+        Partition<?> partition = connection.partition;
+        connection.request = null;
+        connection.partition = null;
+
+        long highWatermark = partition.getHighWatermark();
+        long end = request.isConsumer() ? highWatermark : partition.getEndOffset();
+        long base = Math.max(request.fetchOffset, partition.getStartOffset());
+
+        FileRegion region = partition.fileRegion(base, end, request.maxBytes);
+        if (region != null) {
+            send(key, FetchResponse.encodeHeader(FetchResponse.NONE, highWatermark, base, region.getCount(),
+                    region.getBytes()));
+            send(key, region);
+            return;
+        }
+
+        List<byte[]> records = new ArrayList<>();
+        long bytes = 0;
+        // at least one event is sent, however large
+        for (long offset = base; offset < end && (records.isEmpty() || bytes < request.maxBytes); offset++) {
+            Message<?> message = partition.read(offset);
+            byte[] record = message == null ? null : message.toBytes();
+            records.add(record);
+            bytes += RecordFrame.frameBytes(record);
+        }
+        send(key, FetchResponse.encode(FetchResponse.NONE, highWatermark, base, records));
+    }
+
+    /**
+     * @param response a ByteBuffer or a FileRegion
+     */
+    private void send(SelectionKey key, Object response) throws IOException {
+        Connection connection = (Connection) key.attachment();
+        connection.out.add(response);
+        write(key);
+    }
+
+    private void write(SelectionKey key) throws IOException {
+        Connection connection = (Connection) key.attachment();
+        SocketChannel channel = (SocketChannel) key.channel();
+        for (Object next; (next = connection.out.peek()) != null; connection.out.remove()) {
+            boolean sent;
+            if (next instanceof FileRegion) {
+                FileRegion region = (FileRegion) next;
+                region.transferTo(channel);
+                sent = !region.hasRemaining();
+            } else {
+                ByteBuffer buffer = (ByteBuffer) next;
+                channel.write(buffer);
+                sent = !buffer.hasRemaining();
+            }
+            if (!sent) {
+                key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                return;
+            }
+        }
+        key.interestOps(SelectionKey.OP_READ);
+    }
+
+    private void drop(SelectionKey key) {
+        if (key.attachment() != null) held.remove((Connection) key.attachment());
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException e) {
+            // the connection is dropped either way
+        }
+    }
+
+    /**
+     * stops serving and closes every connection, so followers retry until they are told to lead. Closing
+     * again does nothing
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        if (!selector.isOpen()) return;
+        try {
+            selector.wakeup();
+            thread.join();
+            for (SelectionKey key : selector.keys()) key.channel().close();
+            selector.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            // closing anyway
+        }
+    }
+
+    /**
+     * A follower's or consumer's connection, holding at most one fetch at a time as each waits for its
+     * answer.
+     */
+    private static final class Connection {
+        private ByteBuffer in = ByteBuffer.allocate(READ_BUFFER_BYTES);
+        // ByteBuffers and FileRegions, written in order
+        private final Queue<Object> out = new ArrayDeque<>();
+        private SelectionKey key;
+        private FetchRequest request;
+        private Partition<?> partition;
+        private long deadline;
+    }
+}
\ No newline at end of file
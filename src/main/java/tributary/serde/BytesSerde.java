@@ -0,0 +1,41 @@
+package tributary.serde;
+
+import java.nio.ByteBuffer;
+import java.util.Base64;
+
+/**
+ * Stores byte arrays as they are. Their text and JSON are base64.
+ */
+public class BytesSerde implements Serde<byte[]> {
+    @Override
+    public String getName() {
+        return "bytes";
+    }
+
+    @Override
+    public Class<byte[]> getType() {
+        return byte[].class;
+    }
+
+    @Override
+    public byte[] serialize(byte[] value) {
+        return value;
+    }
+
+    @Override
+    public byte[] deserialize(ByteBuffer payload) {
+        byte[] value = new byte[payload.remaining()];
+        payload.duplicate().get(value);
+        return value;
+    }
+
+    @Override
+    public byte[] parse(String text) {
+        return Base64.getDecoder().decode(text);
+    }
+
+    @Override
+    public String toJson(ByteBuffer payload) {
+        return "\"" + Base64.getEncoder().encodeToString(deserialize(payload)) + "\"";
+    }
+}
\ No newline at end of file
@@ -0,0 +1,56 @@
+package tributary.serde;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Serialises objects of any class as their UTF-8 JSON, mapped by Gson.
+ */
+public class GsonSerde<T> implements Serde<T> {
+    private static final Gson GSON = new Gson();
+
+    private final Class<T> type;
+
+    public GsonSerde(Class<T> type) {
+        this.type = type;
+    }
+
+    @Override
+    public String getName() {
+        return type.getName();
+    }
+
+    @Override
+    public Class<T> getType() {
+        return type;
+    }
+
+    @Override
+    public byte[] serialize(T value) {
+        return GSON.toJson(value).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public T deserialize(ByteBuffer payload) {
+        return parse(toJson(payload));
+    }
+
+    @Override
+    public T parse(String text) {
+        try {
+            T value = GSON.fromJson(text, type);
+            if (value == null) throw new IllegalArgumentException(text + " is not a " + type.getSimpleName());
+            return value;
+        } catch (JsonParseException e) {
+            throw new IllegalArgumentException(text + " is not a " + type.getSimpleName());
+        }
+    }
+
+    @Override
+    public String toJson(ByteBuffer payload) {
+        return StandardCharsets.UTF_8.decode(payload.duplicate()).toString();
+    }
+}
\ No newline at end of file
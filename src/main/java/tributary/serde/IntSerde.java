@@ -0,0 +1,56 @@
+package tributary.serde;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Serialises ints as 4 bytes, big-endian. serializeInt and deserializeInt read and write them without
+ * boxing them.
+ */
+public class IntSerde implements Serde<Integer> {
+    @Override
+    public String getName() {
+        return "Integer";
+    }
+
+    @Override
+    public Class<Integer> getType() {
+        return Integer.class;
+    }
+
+    @Override
+    public byte[] serialize(Integer value) {
+        return serializeInt(value);
+    }
+
+    public byte[] serializeInt(int value) {
+        return ByteBuffer.allocate(Integer.BYTES).putInt(value).array();
+    }
+
+    @Override
+    public Integer deserialize(ByteBuffer payload) {
+        return deserializeInt(payload);
+    }
+
+    /**
+     * @throws IllegalArgumentException if payload is not 4 bytes
+     */
+    public int deserializeInt(ByteBuffer payload) {
+        if (payload.remaining() != Integer.BYTES)
+            throw new IllegalArgumentException("Payload of " + payload.remaining() + " bytes is not an Integer");
+        return payload.getInt(payload.position());
+    }
+
+    @Override
+    public Integer parse(String text) {
+        try {
+            return Integer.parseInt(text);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(text + " is not an Integer");
+        }
+    }
+
+    @Override
+    public String toJson(ByteBuffer payload) {
+        return Integer.toString(deserializeInt(payload));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,46 @@
+package tributary.serde;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Serialises JSON objects as their UTF-8 JSON, the payload of the topics of untyped events.
+ */
+public class JsonSerde implements Serde<JSONObject> {
+    @Override
+    public String getName() {
+        return "JSONObject";
+    }
+
+    @Override
+    public Class<JSONObject> getType() {
+        return JSONObject.class;
+    }
+
+    @Override
+    public byte[] serialize(JSONObject value) {
+        return value.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public JSONObject deserialize(ByteBuffer payload) {
+        return parse(toJson(payload));
+    }
+
+    @Override
+    public JSONObject parse(String text) {
+        try {
+            return new JSONObject(text);
+        } catch (JSONException e) {
+            throw new IllegalArgumentException(text + " is not a JSONObject");
+        }
+    }
+
+    @Override
+    public String toJson(ByteBuffer payload) {
+        return StandardCharsets.UTF_8.decode(payload.duplicate()).toString();
+    }
+}
\ No newline at end of file
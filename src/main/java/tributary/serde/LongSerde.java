@@ -0,0 +1,56 @@
+package tributary.serde;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Serialises longs as 8 bytes, big-endian. serializeLong and deserializeLong read and write them without
+ * boxing them.
+ */
+public class LongSerde implements Serde<Long> {
+    @Override
+    public String getName() {
+        return "Long";
+    }
+
+    @Override
+    public Class<Long> getType() {
+        return Long.class;
+    }
+
+    @Override
+    public byte[] serialize(Long value) {
+        return serializeLong(value);
+    }
+
+    public byte[] serializeLong(long value) {
+        return ByteBuffer.allocate(Long.BYTES).putLong(value).array();
+    }
+
+    @Override
+    public Long deserialize(ByteBuffer payload) {
+        return deserializeLong(payload);
+    }
+
+    /**
+     * @throws IllegalArgumentException if payload is not 8 bytes
+     */
+    public long deserializeLong(ByteBuffer payload) {
+        if (payload.remaining() != Long.BYTES)
+            throw new IllegalArgumentException("Payload of " + payload.remaining() + " bytes is not a Long");
+        return payload.getLong(payload.position());
+    }
+
+    @Override
+    public Long parse(String text) {
+        try {
+            return Long.parseLong(text);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(text + " is not a Long");
+        }
+    }
+
+    @Override
+    public String toJson(ByteBuffer payload) {
+        return Long.toString(deserializeLong(payload));
+    }
+}
\ No newline at end of file
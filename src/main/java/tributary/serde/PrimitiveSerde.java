@@ -0,0 +1,92 @@
+package tributary.serde;
+
+import org.json.JSONObject;
+
+import java.nio.ByteBuffer;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Serialises the boxed values of a primitive type as their fixed number of bytes, big-endian.
+ */
+public class PrimitiveSerde<T> implements Serde<T> {
+    public static final PrimitiveSerde<Short> SHORT = new PrimitiveSerde<>(Short.class, Short.BYTES,
+            ByteBuffer::putShort, x -> x.getShort(x.position()), Short::parseShort);
+    public static final PrimitiveSerde<Byte> BYTE = new PrimitiveSerde<>(Byte.class, Byte.BYTES,
+            ByteBuffer::put, x -> x.get(x.position()), Byte::parseByte);
+    public static final PrimitiveSerde<Double> DOUBLE = new PrimitiveSerde<>(Double.class, Double.BYTES,
+            ByteBuffer::putDouble, x -> x.getDouble(x.position()), Double::parseDouble);
+    public static final PrimitiveSerde<Float> FLOAT = new PrimitiveSerde<>(Float.class, Float.BYTES,
+            ByteBuffer::putFloat, x -> x.getFloat(x.position()), Float::parseFloat);
+    public static final PrimitiveSerde<Character> CHARACTER = new PrimitiveSerde<>(Character.class,
+            Character.BYTES, ByteBuffer::putChar, x -> x.getChar(x.position()), PrimitiveSerde::parseCharacter);
+    public static final PrimitiveSerde<Boolean> BOOLEAN = new PrimitiveSerde<>(Boolean.class, 1,
+            (x, value) -> x.put((byte) (value ? 1 : 0)), x -> x.get(x.position()) != 0,
+            PrimitiveSerde::parseBoolean);
+
+    private final Class<T> type;
+    private final int bytes;
+    private final BiConsumer<ByteBuffer, T> writer;
+    private final Function<ByteBuffer, T> reader;
+    private final Function<String, T> parser;
+
+    private PrimitiveSerde(Class<T> type, int bytes, BiConsumer<ByteBuffer, T> writer, Function<ByteBuffer, T> reader,
+                           Function<String, T> parser) {
+        this.type = type;
+        this.bytes = bytes;
+        this.writer = writer;
+        this.reader = reader;
+        this.parser = parser;
+    }
+
+    private static Character parseCharacter(String text) {
+        if (text.length() != 1) throw new IllegalArgumentException(text + " is not a Character");
+        return text.charAt(0);
+    }
+
+    private static Boolean parseBoolean(String text) {
+        if (!text.equals("true") && !text.equals("false"))
+            throw new IllegalArgumentException(text + " is not a Boolean");
+        return text.equals("true");
+    }
+
+    @Override
+    public String getName() {
+        return type.getSimpleName();
+    }
+
+    @Override
+    public Class<T> getType() {
+        return type;
+    }
+
+    @Override
+    public byte[] serialize(T value) {
+        ByteBuffer buffer = ByteBuffer.allocate(bytes);
+        writer.accept(buffer, value);
+        return buffer.array();
+    }
+
+    @Override
+    public T deserialize(ByteBuffer payload) {
+        if (payload.remaining() != bytes)
+            throw new IllegalArgumentException("Payload of " + payload.remaining() + " bytes is not a "
+                    + getName());
+        return reader.apply(payload);
+    }
+
+    @Override
+    public T parse(String text) {
+        try {
+            return parser.apply(text);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(text + " is not a " + getName());
+        }
+    }
+
+    @Override
+    public String toJson(ByteBuffer payload) {
+        T value = deserialize(payload);
+        return type == Character.class ? JSONObject.quote(value.toString()) : value.toString();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,37 @@
+package tributary.serde;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Serialises the values of a topic into the payload of its events and back. A serde is shared by every
+ * producer and consumer of the topics using it, so it must be safe to call from several threads at once.
+ */
+public interface Serde<T> {
+    /**
+     * @return the name the serde is found under with Serdes.forName, stored with the topics using it
+     */
+    String getName();
+
+    Class<T> getType();
+
+    byte[] serialize(T value);
+
+    /**
+     * @param payload the serialised value, from its position to its limit
+     * @throws IllegalArgumentException if payload is not a serialised value of this serde
+     */
+    T deserialize(ByteBuffer payload);
+
+    /**
+     * reads a value from its text, as typed in the CLI or sent over HTTP: numbers and booleans as written,
+     * strings as they are, bytes in base64 and objects as JSON
+     * @throws IllegalArgumentException if text is not a value of this serde
+     */
+    T parse(String text);
+
+    /**
+     * @param payload the serialised value, from its position to its limit
+     * @return the JSON of the serialised value, e.g. to send it over HTTP
+     */
+    String toJson(ByteBuffer payload);
+}
\ No newline at end of file
@@ -0,0 +1,89 @@
+package tributary.serde;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The serdes of topics, by type and by name. Types without a registered serde are mapped by Gson. Stored
+ * topics and snapshots refer to the serde of a topic by its name, so a serde registered by an application
+ * must be registered again before recovering one.
+ */
+public final class Serdes {
+    public static final IntSerde INTEGER = new IntSerde();
+    public static final LongSerde LONG = new LongSerde();
+    public static final StringSerde STRING = new StringSerde();
+    public static final BytesSerde BYTES = new BytesSerde();
+    public static final JsonSerde JSON = new JsonSerde();
+
+    private static final Map<Class<?>, Serde<?>> BY_TYPE = new ConcurrentHashMap<>();
+    // by lower case name, names being case insensitive
+    private static final Map<String, Serde<?>> BY_NAME = new ConcurrentHashMap<>();
+
+    static {
+        register(INTEGER);
+        register(LONG);
+        register(STRING);
+        register(BYTES);
+        register(JSON);
+        register(PrimitiveSerde.SHORT);
+        register(PrimitiveSerde.BYTE);
+        register(PrimitiveSerde.DOUBLE);
+        register(PrimitiveSerde.FLOAT);
+        register(PrimitiveSerde.CHARACTER);
+        register(PrimitiveSerde.BOOLEAN);
+
+        BY_TYPE.put(int.class, INTEGER);
+        BY_TYPE.put(long.class, LONG);
+        BY_TYPE.put(short.class, PrimitiveSerde.SHORT);
+        BY_TYPE.put(byte.class, PrimitiveSerde.BYTE);
+        BY_TYPE.put(double.class, PrimitiveSerde.DOUBLE);
+        BY_TYPE.put(float.class, PrimitiveSerde.FLOAT);
+        BY_TYPE.put(char.class, PrimitiveSerde.CHARACTER);
+        BY_TYPE.put(boolean.class, PrimitiveSerde.BOOLEAN);
+        BY_NAME.put("int", INTEGER);
+        BY_NAME.put("byte[]", BYTES);
+        BY_NAME.put("json", JSON);
+    }
+
+    private Serdes() {
+    }
+
+    /**
+     * makes serde the serde of its type and name
+     * @throws IllegalArgumentException if a serde of the same type or name is already registered
+     */
+    public static synchronized void register(Serde<?> serde) {
+        String name = serde.getName().toLowerCase(Locale.ROOT);
+        if (BY_NAME.containsKey(name) || BY_TYPE.containsKey(serde.getType()))
+            throw new IllegalArgumentException("Serde for " + serde.getName() + " already exists");
+
+        BY_NAME.put(name, serde);
+        BY_TYPE.put(serde.getType(), serde);
+    }
+
+    /**
+     * @return the serde registered for type, or one mapping type with Gson if there is none
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> Serde<T> forType(Class<T> type) {
+        Serde<?> serde = BY_TYPE.get(type);
+        return serde != null ? (Serde<T>) serde : new GsonSerde<>(type);
+    }
+
+    /**
+     * @param name the name of a registered serde, e.g. String or Integer, or the name of a class to map with
+     * Gson
+     * @throws IllegalArgumentException if no serde is registered under name and it is not a class
+     */
+    public static Serde<?> forName(String name) {
+        Serde<?> serde = BY_NAME.get(name.toLowerCase(Locale.ROOT));
+        if (serde != null) return serde;
+
+        try {
+            return forType(Class.forName(name));
+        } catch (ClassNotFoundException e) {
+            throw new IllegalArgumentException("Type " + name + " does not exist");
+        }
+    }
+}
\ No newline at end of file
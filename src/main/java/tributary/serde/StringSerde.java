@@ -0,0 +1,41 @@
+package tributary.serde;
+
+import org.json.JSONObject;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Serialises strings as UTF-8.
+ */
+public class StringSerde implements Serde<String> {
+    @Override
+    public String getName() {
+        return "String";
+    }
+
+    @Override
+    public Class<String> getType() {
+        return String.class;
+    }
+
+    @Override
+    public byte[] serialize(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String deserialize(ByteBuffer payload) {
+        return StandardCharsets.UTF_8.decode(payload.duplicate()).toString();
+    }
+
+    @Override
+    public String parse(String text) {
+        return text;
+    }
+
+    @Override
+    public String toJson(ByteBuffer payload) {
+        return JSONObject.quote(deserialize(payload));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,130 @@
+package tributary.sink;
+
+import tributary.producer.message.Message;
+import tributary.serde.Serde;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Logs events to a PrintStream from a background writer thread. Events are queued unformatted in a bounded
+ * queue; when it is full further events are dropped and counted rather than blocking the caller, as are
+ * events that fail to format and events after the sink is closed.
+ */
+public class AsyncLogSink implements EventSink, AutoCloseable {
+    public static final int DEFAULT_CAPACITY = 64 * 1024;
+    // how long closing waits for the writer to take the queued events, then to write them
+    private static final long CLOSE_TIMEOUT_MS = 5000;
+
+    private static final Entry CLOSE = new Entry(false, null, null, null);
+
+    private final PrintStream out;
+    private final BlockingQueue<Entry> queue;
+    private final LongAdder dropped = new LongAdder();
+    private final Thread writer;
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    public AsyncLogSink(PrintStream out) {
+        this(out, DEFAULT_CAPACITY);
+    }
+
+    public AsyncLogSink(PrintStream out, int capacity) {
+        this.out = out;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.writer = new Thread(this::write, "tributary-log-sink");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    @Override
+    public void produced(String topicId, Message<?> message) {
+        offer(new Entry(true, topicId, message, null));
+    }
+
+    @Override
+    public void consumed(String consumerId, Message<?> message) {
+        offer(new Entry(false, consumerId, message, null));
+    }
+
+    @Override
+    public void consumed(String consumerId, Message<?> message, Serde<?> serde) {
+        offer(new Entry(false, consumerId, message, serde));
+    }
+
+    private void offer(Entry entry) {
+        if (closed.get() || !queue.offer(entry)) dropped.increment();
+    }
+
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    private void write() {
+        List<Entry> entries = new ArrayList<>();
+        try {
+            while (true) {
+                entries.add(queue.take());
+                queue.drainTo(entries);
+                for (Entry entry : entries) {
+                    if (entry == CLOSE) {
+                        out.flush();
+                        return;
+                    }
+                    try {
+                        out.println(entry.format());
+                    } catch (RuntimeException e) {
+                        // e.g. a payload its serde cannot render, which must not stop the events after it
+                        dropped.increment();
+                    }
+                }
+                out.flush();
+                entries.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * writes every event queued so far, then stops the writer thread. A writer that does not get through
+     * the queue within CLOSE_TIMEOUT_MS is interrupted instead. Closing again does nothing
+     */
+    @Override
+    public void close() {
+        if (!closed.compareAndSet(false, true)) return;
+        try {
+            if (queue.offer(CLOSE, CLOSE_TIMEOUT_MS, TimeUnit.MILLISECONDS)) writer.join(CLOSE_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (writer.isAlive()) writer.interrupt();
+        }
+    }
+
+    private static class Entry {
+        private final boolean produced;
+        private final String id;
+        private final Message<?> message;
+        private final Serde<?> serde;
+
+        Entry(boolean produced, String id, Message<?> message, Serde<?> serde) {
+            this.produced = produced;
+            this.id = id;
+            this.message = message;
+            this.serde = serde;
+        }
+
+        String format() {
+            return produced ?
+                    "Event " + message.getId() + " was added to partition " + message.getKey() :
+                    serde == null ? "Event " + message.getId() + " was consumed by " + id :
+                            serde.toJson(message.getPayload());
+        }
+    }
+}
\ No newline at end of file
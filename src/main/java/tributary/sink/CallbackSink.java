@@ -0,0 +1,32 @@
+package tributary.sink;
+
+import tributary.producer.message.Message;
+
+import java.util.function.BiConsumer;
+
+/**
+ * Hands events to application code, on the thread that produced or consumed them.
+ */
+public class CallbackSink implements EventSink {
+    private final BiConsumer<String, Message<?>> onProduced;
+    private final BiConsumer<String, Message<?>> onConsumed;
+
+    /**
+     * @param onProduced called with the topic id and message of every event produced
+     * @param onConsumed called with the consumer id and message of every event consumed
+     */
+    public CallbackSink(BiConsumer<String, Message<?>> onProduced, BiConsumer<String, Message<?>> onConsumed) {
+        this.onProduced = onProduced;
+        this.onConsumed = onConsumed;
+    }
+
+    @Override
+    public void produced(String topicId, Message<?> message) {
+        onProduced.accept(topicId, message);
+    }
+
+    @Override
+    public void consumed(String consumerId, Message<?> message) {
+        onConsumed.accept(consumerId, message);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,24 @@
+package tributary.sink;
+
+import tributary.producer.message.Message;
+import tributary.serde.Serde;
+
+/**
+ * Receives every event produced and consumed through a Tributary: produced by producing, parallel producing
+ * and batch producers once their batch is appended, consumed by consuming, polling, including the long polls
+ * of the HTTP server, and subscriptions before their handler runs. Events a follower replicates and events
+ * read over the replication protocol, e.g. by FetchClient, are not reported, as they bypass the Tributary.
+ * Called on the data path, so implementations must not block.
+ */
+public interface EventSink {
+    void produced(String topicId, Message<?> message);
+
+    void consumed(String consumerId, Message<?> message);
+
+    /**
+     * @param serde the serde of the topic of message, to read its value by
+     */
+    default void consumed(String consumerId, Message<?> message, Serde<?> serde) {
+        consumed(consumerId, message);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,13 @@
+package tributary.sink;
+
+import tributary.producer.message.Message;
+
+public class NoOpSink implements EventSink {
+    @Override
+    public void produced(String topicId, Message<?> message) {
+    }
+
+    @Override
+    public void consumed(String consumerId, Message<?> message) {
+    }
+}
\ No newline at end of file
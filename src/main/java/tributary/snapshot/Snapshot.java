@@ -0,0 +1,506 @@
+package tributary.snapshot;
+
+import tributary.Allocation;
+import tributary.Rebalance;
+import tributary.compression.CompressionCodecs;
+import tributary.consumer.Consumer;
+import tributary.consumer.ConsumerGroup;
+import tributary.producer.Producer;
+import tributary.producer.message.Message;
+import tributary.serde.Serdes;
+import tributary.topic.EventLog;
+import tributary.topic.Partition;
+import tributary.topic.RetentionPolicy;
+import tributary.topic.Topic;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * The state of a Tributary at one point: its topics with their retention and partitions, its producers
+ * and its consumer groups with the partitions assigned to each consumer and the committed offsets.
+ * Capturing a snapshot copies no events. Logs only ever append, so writing a snapshot reads each partition
+ * up to the end offset captured while producers keep appending after it. Retention of the partitions written
+ * is held from capture until the snapshot is written, so that every event captured is still there to write.
+ * <p>
+ * Written as [magic][version][state][events of each partition kept in memory]...[event positions][position
+ * of event positions]. Events of partitions stored on disk are not written, they are recovered from disk.
+ */
+public class Snapshot {
+    private static final int MAGIC = 0x54524942;
+    // version 1 snapshots, written before topics could be compressed, are read as uncompressed, and
+    // snapshots before version 3, written before topics had serdes, as of JSONObject topics
+    private static final int VERSION = 3;
+    private static final int BUFFER_BYTES = 1 << 16;
+
+    private final List<TopicState> topics;
+    private final List<ProducerState> producers;
+
+    private Snapshot(List<TopicState> topics, List<ProducerState> producers) {
+        this.topics = topics;
+        this.producers = producers;
+    }
+
+    /**
+     * captures the state of topics and producers, which must not be created or deleted meanwhile. Producers
+     * with a custom partitioner are not captured, as their partitioner cannot be written
+     */
+    public static Snapshot capture(Collection<? extends Topic<?>> topics,
+                                   Collection<? extends Producer<?>> producers) {
+        List<TopicState> topicStates = new ArrayList<>();
+        for (Topic<?> topic : topics) topicStates.add(TopicState.capture(topic));
+
+        List<ProducerState> producerStates = new ArrayList<>();
+        for (Producer<?> producer : producers) {
+            if (producer.getAllocationStrategy() == Allocation.CUSTOM) continue;
+            producerStates.add(new ProducerState(producer.getProducerId(), producer.getAllocationStrategy()));
+        }
+        return new Snapshot(topicStates, producerStates);
+    }
+
+    public List<TopicState> getTopics() {
+        return topics;
+    }
+
+    public List<ProducerState> getProducers() {
+        return producers;
+    }
+
+    /**
+     * writes this snapshot to a temporary file next to file, forces it to the disk, then moves it over file,
+     * so that file always holds a whole snapshot. Releases the retention of the partitions captured, so a
+     * snapshot is written once
+     */
+    public void write(Path file) {
+        Path directory = file.toAbsolutePath().getParent();
+        try {
+            Path temporary = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+            try {
+                FileOutputStream stream = new FileOutputStream(temporary.toFile());
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream, BUFFER_BYTES))) {
+                    out.writeInt(MAGIC);
+                    out.writeInt(VERSION);
+                    writeState(out);
+
+                    // DataOutputStream counts in an int, so positions past the state are counted here
+                    long position = out.size();
+                    List<Long> positions = new ArrayList<>();
+                    for (TopicState topic : topics) {
+                        for (PartitionState partition : topic.partitions) {
+                            if (partition.stored) continue;
+                            positions.add(position);
+                            position += partition.writeEvents(out);
+                        }
+                    }
+
+                    out.writeInt(positions.size());
+                    for (long start : positions) out.writeLong(start);
+                    out.writeLong(position);
+                    out.flush();
+                    // or a crash after the move could leave file holding a snapshot never written out
+                    stream.getFD().sync();
+                }
+                Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temporary);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            for (TopicState topic : topics) {
+                for (PartitionState partition : topic.partitions) {
+                    if (!partition.stored) partition.partition.releaseRetention();
+                }
+            }
+        }
+    }
+
+    private void writeState(DataOutputStream out) throws IOException {
+        out.writeInt(topics.size());
+        for (TopicState topic : topics) topic.write(out);
+        out.writeInt(producers.size());
+        for (ProducerState producer : producers) {
+            out.writeUTF(producer.producerId);
+            out.writeUTF(producer.allocation.name());
+        }
+    }
+
+    /**
+     * reads the state of a snapshot. Events are only read by loadEvents
+     * @throws IllegalArgumentException if file is not a snapshot
+     */
+    public static Snapshot read(Path file) {
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(file), BUFFER_BYTES))) {
+            int version = in.readInt() == MAGIC ? in.readInt() : -1;
+            if (version < 1 || version > VERSION)
+                throw new IllegalArgumentException(file + " is not a snapshot");
+
+            List<TopicState> topics = new ArrayList<>();
+            for (int i = in.readInt(); i > 0; i--) topics.add(TopicState.read(in, version));
+            List<ProducerState> producers = new ArrayList<>();
+            for (int i = in.readInt(); i > 0; i--)
+                producers.add(new ProducerState(in.readUTF(), Allocation.valueOf(in.readUTF())));
+            Snapshot snapshot = new Snapshot(topics, producers);
+            snapshot.readPositions(file);
+            return snapshot;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void readPositions(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer footer = ByteBuffer.allocate(Long.BYTES);
+            readFully(channel, footer, channel.size() - Long.BYTES);
+            long position = footer.getLong(0);
+
+            ByteBuffer count = ByteBuffer.allocate(Integer.BYTES);
+            readFully(channel, count, position);
+            ByteBuffer positions = ByteBuffer.allocate(count.getInt(0) * Long.BYTES);
+            readFully(channel, positions, position + Integer.BYTES);
+            positions.flip();
+
+            for (TopicState topic : topics) {
+                for (PartitionState partition : topic.partitions) {
+                    if (!partition.stored) partition.position = positions.getLong();
+                }
+            }
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0)
+                throw new IOException("Snapshot ends before its footer");
+        }
+    }
+
+    /**
+     * reads the events of every partition kept in memory, each partition on its own task of executor
+     * @return the log of each of those partitions, by topic id and partition id, holding its events at the
+     * offsets they had
+     */
+    public <T> Map<String, Map<String, CompletableFuture<EventLog<T>>>> loadEvents(Path file, Executor executor) {
+        Map<String, Map<String, CompletableFuture<EventLog<T>>>> logs = new HashMap<>();
+        for (TopicState topic : topics) {
+            Map<String, CompletableFuture<EventLog<T>>> partitions = new HashMap<>();
+            for (PartitionState partition : topic.partitions) {
+                if (partition.stored) continue;
+                partitions.put(partition.partitionId,
+                        CompletableFuture.supplyAsync(() -> partition.readEvents(file), executor));
+            }
+            logs.put(topic.topicId, partitions);
+        }
+        return logs;
+    }
+
+    public static class TopicState {
+        private final String topicId;
+        private final RetentionPolicy retention;
+        private final String compression;
+        private final String serde;
+        private final List<PartitionState> partitions;
+        private final List<ConsumerGroupState> consumerGroups;
+
+        private TopicState(String topicId, RetentionPolicy retention, String compression, String serde,
+                           List<PartitionState> partitions, List<ConsumerGroupState> consumerGroups) {
+            this.topicId = topicId;
+            this.retention = retention;
+            this.compression = compression;
+            this.serde = serde;
+            this.partitions = partitions;
+            this.consumerGroups = consumerGroups;
+        }
+
+        private static <T> TopicState capture(Topic<T> topic) {
+            // held before start offsets are captured, so that every event captured is kept until written
+            if (!topic.isStored()) topic.getPartitions().values().forEach(Partition::holdRetention);
+
+            // offsets are captured before end offsets, so that no offset is past its captured end offset
+            List<ConsumerGroupState> consumerGroups = new ArrayList<>();
+            for (ConsumerGroup<T> consumerGroup : topic.getConsumerGroups().values())
+                consumerGroups.add(ConsumerGroupState.capture(consumerGroup, topic));
+
+            List<PartitionState> partitions = new ArrayList<>();
+            for (Partition<T> partition : topic.getPartitions().values()) {
+                partitions.add(new PartitionState(partition.getPartitionId(), topic.isStored(),
+                        partition.getStartOffset(), partition.getEndOffset(), partition));
+            }
+            return new TopicState(topic.getTopicId(), topic.getRetention(),
+                    CompressionCodecs.nameOf(topic.getCompression()), topic.getSerde().getName(), partitions,
+                    consumerGroups);
+        }
+
+        private void write(DataOutputStream out) throws IOException {
+            out.writeUTF(topicId);
+            out.writeLong(retention.getMaxAgeMs());
+            out.writeLong(retention.getMaxBytes());
+            out.writeLong(retention.getMaxCount());
+            out.writeBoolean(retention.isCompact());
+            out.writeUTF(compression);
+            out.writeUTF(serde);
+            out.writeInt(partitions.size());
+            for (PartitionState partition : partitions) {
+                out.writeUTF(partition.partitionId);
+                out.writeBoolean(partition.stored);
+                out.writeLong(partition.startOffset);
+                out.writeLong(partition.endOffset);
+            }
+            out.writeInt(consumerGroups.size());
+            for (ConsumerGroupState consumerGroup : consumerGroups) consumerGroup.write(out);
+        }
+
+        private static TopicState read(DataInputStream in, int version) throws IOException {
+            String topicId = in.readUTF();
+            RetentionPolicy retention = new RetentionPolicy(in.readLong(), in.readLong(), in.readLong(),
+                    in.readBoolean());
+            String compression = version == 1 ? CompressionCodecs.NONE : in.readUTF();
+            String serde = version < 3 ? Serdes.JSON.getName() : in.readUTF();
+            List<PartitionState> partitions = new ArrayList<>();
+            for (int i = in.readInt(); i > 0; i--) {
+                partitions.add(new PartitionState(in.readUTF(), in.readBoolean(), in.readLong(), in.readLong(),
+                        null));
+            }
+            List<ConsumerGroupState> consumerGroups = new ArrayList<>();
+            for (int i = in.readInt(); i > 0; i--) consumerGroups.add(ConsumerGroupState.read(in));
+            return new TopicState(topicId, retention, compression, serde, partitions, consumerGroups);
+        }
+
+        public String getTopicId() {
+            return topicId;
+        }
+
+        public RetentionPolicy getRetention() {
+            return retention;
+        }
+
+        /**
+         * @return the name of the codec the topic is compressed with, CompressionCodecs.NONE if it is not
+         */
+        public String getCompression() {
+            return compression;
+        }
+
+        /**
+         * @return the name of the serde of the topic, as taken by Serdes.forName
+         */
+        public String getSerde() {
+            return serde;
+        }
+
+        public List<PartitionState> getPartitions() {
+            return partitions;
+        }
+
+        public List<ConsumerGroupState> getConsumerGroups() {
+            return consumerGroups;
+        }
+    }
+
+    public static class PartitionState {
+        private final String partitionId;
+        private final boolean stored;
+        private final long startOffset;
+        private final long endOffset;
+        // the partition events are written from, when captured
+        private final Partition<?> partition;
+        // where the events start in the snapshot, when read
+        private long position;
+
+        private PartitionState(String partitionId, boolean stored, long startOffset, long endOffset,
+                               Partition<?> partition) {
+            this.partitionId = partitionId;
+            this.stored = stored;
+            this.startOffset = startOffset;
+            this.endOffset = endOffset;
+            this.partition = partition;
+        }
+
+        /**
+         * writes every event from the captured start offset to the captured end offset, as its length and
+         * Message.toBytes, or a length of -1 for a gap
+         * @return the number of bytes written
+         */
+        private long writeEvents(DataOutputStream out) throws IOException {
+            long written = 0;
+            for (long offset = startOffset; offset < endOffset; offset++) {
+                Message<?> event = partition.read(offset);
+                written += Integer.BYTES;
+                if (event == null) {
+                    out.writeInt(-1);
+                    continue;
+                }
+                byte[] bytes = event.toBytes();
+                out.writeInt(bytes.length);
+                out.write(bytes);
+                written += bytes.length;
+            }
+            return written;
+        }
+
+        private <T> EventLog<T> readEvents(Path file) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                channel.position(position);
+                DataInputStream in = new DataInputStream(
+                        new BufferedInputStream(Channels.newInputStream(channel), BUFFER_BYTES));
+
+                // the events of a partition share a few sources and one key, so their strings are shared too
+                Map<String, String> strings = new HashMap<>();
+                List<Message<T>> events = new ArrayList<>((int) (endOffset - startOffset));
+                for (long offset = startOffset; offset < endOffset; offset++) {
+                    int length = in.readInt();
+                    if (length < 0) {
+                        events.add(null);
+                        continue;
+                    }
+                    byte[] bytes = new byte[length];
+                    in.readFully(bytes);
+                    events.add(Message.fromBytes(ByteBuffer.wrap(bytes), strings));
+                }
+                return EventLog.restore(startOffset, events);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        public String getPartitionId() {
+            return partitionId;
+        }
+
+        /**
+         * @return whether the partition was stored on disk, so that its events are not in the snapshot
+         */
+        public boolean isStored() {
+            return stored;
+        }
+
+        public long getStartOffset() {
+            return startOffset;
+        }
+
+        public long getEndOffset() {
+            return endOffset;
+        }
+    }
+
+    public static class ConsumerGroupState {
+        private final String consumerGroupId;
+        private final Rebalance rebalance;
+        // the partitions assigned to each consumer
+        private final Map<String, List<String>> assignments;
+        private final Map<String, Long> offsets;
+
+        private ConsumerGroupState(String consumerGroupId, Rebalance rebalance,
+                                   Map<String, List<String>> assignments, Map<String, Long> offsets) {
+            this.consumerGroupId = consumerGroupId;
+            this.rebalance = rebalance;
+            this.assignments = assignments;
+            this.offsets = offsets;
+        }
+
+        private static <T> ConsumerGroupState capture(ConsumerGroup<T> consumerGroup, Topic<T> topic) {
+            Map<String, List<String>> assignments = new LinkedHashMap<>();
+            for (Consumer<T> consumer : consumerGroup.getConsumers().values())
+                assignments.put(consumer.getConsumerId(), new ArrayList<>(consumer.getPartitions().keySet()));
+
+            Map<String, Long> offsets = new LinkedHashMap<>();
+            for (String partitionId : topic.getPartitions().keySet())
+                offsets.put(partitionId, consumerGroup.getOffset(partitionId));
+
+            return new ConsumerGroupState(consumerGroup.getConsumerGroupId(), consumerGroup.getRebalance(),
+                    assignments, offsets);
+        }
+
+        private void write(DataOutputStream out) throws IOException {
+            out.writeUTF(consumerGroupId);
+            out.writeUTF(rebalance.name());
+            out.writeInt(assignments.size());
+            for (Map.Entry<String, List<String>> assignment : assignments.entrySet()) {
+                out.writeUTF(assignment.getKey());
+                out.writeInt(assignment.getValue().size());
+                for (String partitionId : assignment.getValue()) out.writeUTF(partitionId);
+            }
+            out.writeInt(offsets.size());
+            for (Map.Entry<String, Long> offset : offsets.entrySet()) {
+                out.writeUTF(offset.getKey());
+                out.writeLong(offset.getValue());
+            }
+        }
+
+        private static ConsumerGroupState read(DataInputStream in) throws IOException {
+            String consumerGroupId = in.readUTF();
+            Rebalance rebalance = Rebalance.valueOf(in.readUTF());
+            Map<String, List<String>> assignments = new LinkedHashMap<>();
+            for (int i = in.readInt(); i > 0; i--) {
+                String consumerId = in.readUTF();
+                List<String> partitionIds = new ArrayList<>();
+                for (int j = in.readInt(); j > 0; j--) partitionIds.add(in.readUTF());
+                assignments.put(consumerId, partitionIds);
+            }
+            Map<String, Long> offsets = new LinkedHashMap<>();
+            for (int i = in.readInt(); i > 0; i--) offsets.put(in.readUTF(), in.readLong());
+            return new ConsumerGroupState(consumerGroupId, rebalance, assignments, offsets);
+        }
+
+        public String getConsumerGroupId() {
+            return consumerGroupId;
+        }
+
+        public Rebalance getRebalance() {
+            return rebalance;
+        }
+
+        /**
+         * @return the ids of the partitions assigned to each consumer, by consumer id
+         */
+        public Map<String, List<String>> getAssignments() {
+            return assignments;
+        }
+
+        /**
+         * @return the committed offset of each partition, by partition id
+         */
+        public Map<String, Long> getOffsets() {
+            return offsets;
+        }
+    }
+
+    public static class ProducerState {
+        private final String producerId;
+        private final Allocation allocation;
+
+        private ProducerState(String producerId, Allocation allocation) {
+            this.producerId = producerId;
+            this.allocation = allocation;
+        }
+
+        public String getProducerId() {
+            return producerId;
+        }
+
+        public Allocation getAllocation() {
+            return allocation;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,120 @@
+package tributary.storage;
+
+import tributary.topic.PartitionLog;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Lays topics out on disk as directory/topicId/partitionId/, each partition directory holding the
+ * segments of that partition's log, and each topic directory the name of the serde of the topic.
+ */
+public class DiskStorage {
+    public static final int DEFAULT_SEGMENT_BYTES = 16 * 1024 * 1024;
+    public static final int DEFAULT_INDEX_INTERVAL_BYTES = 4096;
+    public static final long DEFAULT_FLUSH_INTERVAL_MS = 1000;
+    private static final String SERDE_FILE = "serde";
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final int indexIntervalBytes;
+    private final long flushIntervalMs;
+
+    public DiskStorage(Path directory) {
+        this(directory, DEFAULT_SEGMENT_BYTES, DEFAULT_INDEX_INTERVAL_BYTES);
+    }
+
+    public DiskStorage(Path directory, int segmentBytes, int indexIntervalBytes) {
+        this(directory, segmentBytes, indexIntervalBytes, DEFAULT_FLUSH_INTERVAL_MS);
+    }
+
+    /**
+     * @param directory the root directory of all topics
+     * @param segmentBytes the size at which a partition rolls over to a new segment file
+     * @param indexIntervalBytes the number of bytes appended between two entries of a segment's offset index
+     * @param flushIntervalMs the longest time appended events wait to be forced to the disk, or 0 to force
+     * every append before it returns. Events are also forced as a segment rolls over and as storage is closed
+     * @throws IllegalArgumentException if segmentBytes or indexIntervalBytes are not positive, or
+     * flushIntervalMs is negative
+     */
+    public DiskStorage(Path directory, int segmentBytes, int indexIntervalBytes, long flushIntervalMs) {
+        if (segmentBytes <= 0 || indexIntervalBytes <= 0)
+            throw new IllegalArgumentException("Segment and index interval sizes must be positive");
+        if (flushIntervalMs < 0)
+            throw new IllegalArgumentException("Flush interval must not be negative, not " + flushIntervalMs);
+
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.indexIntervalBytes = indexIntervalBytes;
+        this.flushIntervalMs = flushIntervalMs;
+    }
+
+    public int getSegmentBytes() {
+        return segmentBytes;
+    }
+
+    public int getIndexIntervalBytes() {
+        return indexIntervalBytes;
+    }
+
+    public long getFlushIntervalMs() {
+        return flushIntervalMs;
+    }
+
+    /**
+     * creates the directory of a topic, keeping the serde it was created with if it already exists
+     */
+    public void createTopic(String topicId, String serdeName) {
+        try {
+            Path serde = directory.resolve(topicId).resolve(SERDE_FILE);
+            Files.createDirectories(serde.getParent());
+            if (!Files.exists(serde)) Files.write(serde, serdeName.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return the name of the serde a topic was created with, or null if it was stored without one
+     */
+    public String getSerdeName(String topicId) {
+        Path serde = directory.resolve(topicId).resolve(SERDE_FILE);
+        try {
+            return Files.exists(serde) ? new String(Files.readAllBytes(serde), StandardCharsets.UTF_8) : null;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public <T> PartitionLog<T> openLog(String topicId, String partitionId) {
+        return SegmentedLog.open(directory.resolve(topicId).resolve(partitionId), this);
+    }
+
+    public List<String> getTopicIds() {
+        return listDirectories(directory);
+    }
+
+    public List<String> getPartitionIds(String topicId) {
+        return listDirectories(directory.resolve(topicId));
+    }
+
+    private static List<String> listDirectories(Path path) {
+        if (!Files.isDirectory(path)) return List.of();
+
+        try (Stream<Path> children = Files.list(path)) {
+            return children
+                    .filter(Files::isDirectory)
+                    .map(x -> x.getFileName().toString())
+                    .sorted()
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
\ No newline at end of file
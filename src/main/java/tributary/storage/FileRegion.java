@@ -0,0 +1,55 @@
+package tributary.storage;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * A run of records in a segment file, framed as RecordFrame describes, sent to a socket with
+ * FileChannel.transferTo so that the kernel copies them from the page cache without them passing through
+ * the heap. Sending fails if the segment is dropped by retention before the region is sent.
+ */
+public class FileRegion {
+    private final FileChannel file;
+    private long position;
+    private long remaining;
+    private final int count;
+    private final long bytes;
+
+    FileRegion(FileChannel file, long position, long bytes, int count) {
+        this.file = file;
+        this.position = position;
+        this.remaining = bytes;
+        this.count = count;
+        this.bytes = bytes;
+    }
+
+    /**
+     * @return the number of records in this region
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * @return the number of bytes the records take
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    public boolean hasRemaining() {
+        return remaining > 0;
+    }
+
+    /**
+     * sends as much of the rest of this region as target takes without blocking
+     * @return the number of bytes sent
+     */
+    public long transferTo(WritableByteChannel target) throws IOException {
+        long sent = file.transferTo(position, remaining, target);
+        position += sent;
+        remaining -= sent;
+        return sent;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,55 @@
+package tributary.storage;
+
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32C;
+
+/**
+ * How a record is framed in a segment file and in a fetch response alike, so that a run of records is sent
+ * from the file as it is: [length][crc][bytes], the crc being the CRC-32C of the bytes so that a record torn
+ * by a crash or corrupted on the way is told apart from a written one, or a length of -1 alone for a gap
+ * left by a dropped message.
+ */
+public final class RecordFrame {
+    public static final int GAP = -1;
+    public static final int HEADER_BYTES = 2 * Integer.BYTES;
+
+    private RecordFrame() {
+    }
+
+    /**
+     * @return the bytes record takes framed, null being a gap
+     */
+    public static int frameBytes(byte[] record) {
+        return record == null ? Integer.BYTES : HEADER_BYTES + record.length;
+    }
+
+    /**
+     * @param length the length a frame starts with
+     * @return the bytes the frame takes
+     */
+    public static int frameBytes(int length) {
+        return length < 0 ? Integer.BYTES : HEADER_BYTES + length;
+    }
+
+    /**
+     * frames record into buffer, null being a gap
+     */
+    public static void put(ByteBuffer buffer, byte[] record) {
+        if (record == null) {
+            buffer.putInt(GAP);
+            return;
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(record);
+        buffer.putInt(record.length).putInt((int) crc.getValue()).put(record);
+    }
+
+    /**
+     * @return whether the remaining bytes of record are the ones crc was computed from
+     */
+    public static boolean matches(ByteBuffer record, int crc) {
+        CRC32C expected = new CRC32C();
+        expected.update(record.duplicate());
+        return (int) expected.getValue() == crc;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,383 @@
+package tributary.storage;
+
+import tributary.producer.message.Message;
+import tributary.topic.TimeIndex;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * One file of a partition log. Records are framed as RecordFrame describes and written through a FileChannel
+ * into a file preallocated to the segment's capacity, and read back through a memory mapping of the whole
+ * file. A zero length marks the end of the written records. Every indexIntervalBytes an entry mapping a
+ * relative offset to its file position is added to the sparse offset index, kept both in memory and in a
+ * .index file, and an entry holding the latest creation time of the records up to that offset to a
+ * .timeindex file, so that recovery reads the index files and only the records after their last entry.
+ */
+class Segment {
+    private static final int INDEX_ENTRY_BYTES = 2 * Integer.BYTES;
+    private static final int TIME_ENTRY_BYTES = Long.BYTES;
+    private static final int ZEROS_BYTES = 64 * 1024;
+
+    private final Path directory;
+    private final long baseOffset;
+    private final int capacity;
+    private final int indexIntervalBytes;
+    private final FileChannel log;
+    private final FileChannel index;
+    private final FileChannel timeIndex;
+    private final MappedByteBuffer mapped;
+
+    // index entries are written before the entry count is published, so readers never see a partial entry
+    private volatile int[] indexOffsets = new int[16];
+    private volatile int[] indexPositions = new int[16];
+    private volatile int indexEntries = 0;
+
+    // written only by the appending thread, read by the cleaner
+    private volatile int size = 0;
+    // only accessed by the appending thread
+    private int records = 0;
+    private int bytesSinceIndex = 0;
+    private long latestTime = Long.MIN_VALUE;
+
+    // the creation times recovered, from the time index entries then from the records after them, kept
+    // until loaded into the time index of the log
+    private long[] recoveredOffsets;
+    private long[] recoveredTimes;
+    private int recoveredCount;
+
+    private Segment(Path directory, long baseOffset, int capacity, int indexIntervalBytes, FileChannel log,
+                    FileChannel index, FileChannel timeIndex) throws IOException {
+        this.directory = directory;
+        this.baseOffset = baseOffset;
+        this.capacity = capacity;
+        this.indexIntervalBytes = indexIntervalBytes;
+        this.log = log;
+        this.index = index;
+        this.timeIndex = timeIndex;
+        // before mapping, as recovering may truncate the file
+        recover();
+        this.mapped = log.map(FileChannel.MapMode.READ_ONLY, 0, capacity);
+    }
+
+    static Segment open(Path directory, long baseOffset, int capacity, int indexIntervalBytes) throws IOException {
+        String name = String.format("%020d", baseOffset);
+        FileChannel log = FileChannel.open(directory.resolve(name + ".log"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        FileChannel index = FileChannel.open(directory.resolve(name + ".index"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        FileChannel timeIndex = FileChannel.open(directory.resolve(name + ".timeindex"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        // an existing segment keeps the capacity it was preallocated with
+        capacity = (int) Math.max(capacity, log.size());
+        if (log.size() < capacity) log.write(ByteBuffer.allocate(1), capacity - 1);
+
+        return new Segment(directory, baseOffset, capacity, indexIntervalBytes, log, index, timeIndex);
+    }
+
+    /**
+     * rebuilds the in-memory index from the index files, then scans only the records written after the
+     * last index entry, up to the first that is torn. A torn record and anything after it are truncated
+     */
+    private void recover() throws IOException {
+        // the entries of both index files are written together, so an entry is only kept if it is in both
+        int entries = (int) Math.min(index.size() / INDEX_ENTRY_BYTES, timeIndex.size() / TIME_ENTRY_BYTES);
+        ByteBuffer buffer = readFully(index, 0, entries * INDEX_ENTRY_BYTES);
+        ByteBuffer times = readFully(timeIndex, 0, entries * TIME_ENTRY_BYTES);
+
+        int[] offsets = new int[Math.max(16, entries)];
+        int[] positions = new int[Math.max(16, entries)];
+        long[] entryTimes = new long[entries];
+        for (int i = 0; i < entries; i++) {
+            offsets[i] = buffer.getInt();
+            positions[i] = buffer.getInt();
+            entryTimes[i] = times.getLong();
+        }
+
+        // the index files may reach the disk before the records they point at
+        int kept = entries;
+        while (kept > 0 && readFrame(positions[kept - 1]) == null) kept--;
+
+        index.truncate((long) kept * INDEX_ENTRY_BYTES);
+        timeIndex.truncate((long) kept * TIME_ENTRY_BYTES);
+        indexOffsets = offsets;
+        indexPositions = positions;
+        indexEntries = kept;
+
+        recoveredOffsets = new long[Math.max(16, kept)];
+        recoveredTimes = new long[Math.max(16, kept)];
+        for (int i = 0; i < kept; i++) addRecoveredTime(offsets[i], entryTimes[i]);
+
+        int position = kept == 0 ? 0 : positions[kept - 1];
+        int offset = kept == 0 ? 0 : offsets[kept - 1];
+        for (ByteBuffer record; (record = readFrame(position)) != null; offset++) {
+            if (record.hasRemaining()) {
+                addRecoveredTime(offset, Message.fromBytes(record).getTimeCreated());
+                position += RecordFrame.HEADER_BYTES + record.capacity();
+            } else {
+                position += RecordFrame.frameBytes(RecordFrame.GAP);
+            }
+        }
+
+        size = position;
+        records = offset;
+        bytesSinceIndex = kept == 0 ? 0 : position - positions[kept - 1];
+
+        // a record torn by a crash, or dropped index entries, leave bytes after the records. The file is cut
+        // to the records and grown back, so that it reads as zeros past them again
+        if (kept < entries || (position + Integer.BYTES <= capacity && readInt(position) != 0)) {
+            log.truncate(position);
+            log.write(ByteBuffer.allocate(1), capacity - 1);
+        }
+
+        // records written before their first index entry reached the index file
+        if (kept == 0 && records > 0) {
+            boolean gap = recoveredCount == 0 || recoveredOffsets[0] != baseOffset;
+            addIndexEntry(0, 0, gap ? Long.MIN_VALUE : recoveredTimes[0]);
+        }
+    }
+
+    private void addRecoveredTime(long offset, long timeCreated) {
+        int n = recoveredCount;
+        if (n == recoveredOffsets.length) {
+            recoveredOffsets = Arrays.copyOf(recoveredOffsets, n * 2);
+            recoveredTimes = Arrays.copyOf(recoveredTimes, n * 2);
+        }
+        recoveredOffsets[n] = baseOffset + offset;
+        recoveredTimes[n] = timeCreated;
+        recoveredCount = n + 1;
+        latestTime = Math.max(latestTime, timeCreated);
+    }
+
+    /**
+     * adds the creation times recovered to timeIndex in offset order, each entry being the latest time of
+     * the records up to its offset, after which they are no longer kept
+     */
+    void loadTimes(TimeIndex timeIndex) {
+        for (int i = 0; i < recoveredCount; i++) timeIndex.add(recoveredOffsets[i], recoveredTimes[i]);
+        recoveredOffsets = null;
+        recoveredTimes = null;
+        recoveredCount = 0;
+    }
+
+    /**
+     * @return the bytes of the record framed at position, no bytes for a gap, or null if there is no
+     * record there or it is torn
+     */
+    private ByteBuffer readFrame(int position) throws IOException {
+        if (position + Integer.BYTES > capacity) return null;
+        int length = readInt(position);
+        if (length == RecordFrame.GAP) return ByteBuffer.allocate(0);
+        if (length <= 0 || (long) position + RecordFrame.HEADER_BYTES + length > capacity) return null;
+
+        int crc = readInt(position + Integer.BYTES);
+        ByteBuffer record = readFully(log, position + RecordFrame.HEADER_BYTES, length);
+        return RecordFrame.matches(record, crc) ? record : null;
+    }
+
+    private int readInt(int position) throws IOException {
+        return readFully(log, position, Integer.BYTES).getInt();
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int bytes) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(bytes);
+        while (buffer.hasRemaining() && channel.read(buffer, position + buffer.position()) >= 0) ;
+        buffer.flip();
+        return buffer;
+    }
+
+    long getBaseOffset() {
+        return baseOffset;
+    }
+
+    long getEndOffset() {
+        return baseOffset + records;
+    }
+
+    /**
+     * @return the number of bytes the records written take
+     */
+    int getSize() {
+        return size;
+    }
+
+    /**
+     * forces the records and index entries written to the disk
+     */
+    void flush() throws IOException {
+        log.force(false);
+        index.force(false);
+        timeIndex.force(false);
+    }
+
+    /**
+     * forces and closes the files of this segment. Readers already holding the segment can still read it
+     */
+    void close() throws IOException {
+        flush();
+        log.close();
+        index.close();
+        timeIndex.close();
+    }
+
+    /**
+     * closes and deletes the files of this segment. Readers already holding the segment can still read
+     * it, as its mapping stays valid until it is collected
+     */
+    void delete() throws IOException {
+        String name = String.format("%020d", baseOffset);
+        log.close();
+        index.close();
+        timeIndex.close();
+        Files.deleteIfExists(directory.resolve(name + ".log"));
+        Files.deleteIfExists(directory.resolve(name + ".index"));
+        Files.deleteIfExists(directory.resolve(name + ".timeindex"));
+    }
+
+    /**
+     * writes as many records as fit in this segment, starting at records[from], null leaving a gap, with
+     * a single write
+     * @param times the creation time of each record, Long.MIN_VALUE for a gap
+     * @return the number of records written
+     */
+    int append(List<byte[]> records, long[] times, int from) throws IOException {
+        int count = 0;
+        long bytes = 0;
+        for (int i = from; i < records.size(); i++, count++) {
+            long recordBytes = RecordFrame.frameBytes(records.get(i));
+            if (size + bytes + recordBytes > capacity) break;
+            bytes += recordBytes;
+        }
+        if (count == 0) return 0;
+
+        ByteBuffer buffer = ByteBuffer.allocate((int) bytes);
+        for (int i = from; i < from + count; i++) RecordFrame.put(buffer, records.get(i));
+        buffer.flip();
+        for (int position = size; buffer.hasRemaining(); ) position += log.write(buffer, position);
+
+        for (int i = from; i < from + count; i++) {
+            latestTime = Math.max(latestTime, times[i]);
+            if (this.records == 0 || bytesSinceIndex >= indexIntervalBytes) {
+                addIndexEntry(this.records, size, latestTime);
+                bytesSinceIndex = 0;
+            }
+            int recordBytes = RecordFrame.frameBytes(records.get(i));
+            bytesSinceIndex += recordBytes;
+            size += recordBytes;
+            this.records++;
+        }
+        return count;
+    }
+
+    /**
+     * drops the records from endOffset on, along with their index entries. The bytes they took are zeroed
+     * rather than cut from the file, as readers may still hold its mapping
+     */
+    void truncateTo(long endOffset) throws IOException {
+        int target = (int) Math.max(0, endOffset - baseOffset);
+        if (target >= records) return;
+
+        int position = target == 0 ? 0 : position(mapped.duplicate(), baseOffset + target);
+        ByteBuffer zeros = ByteBuffer.allocate(Math.min(size - position, ZEROS_BYTES));
+        for (int zeroed = position; zeroed < size; ) {
+            zeros.clear().limit(Math.min(zeros.capacity(), size - zeroed));
+            zeroed += log.write(zeros, zeroed);
+        }
+
+        int kept = indexEntries;
+        while (kept > 0 && indexOffsets[kept - 1] >= target) kept--;
+        index.truncate((long) kept * INDEX_ENTRY_BYTES);
+        timeIndex.truncate((long) kept * TIME_ENTRY_BYTES);
+        indexEntries = kept;
+
+        latestTime = kept == 0 ? Long.MIN_VALUE : readFully(timeIndex, (long) (kept - 1) * TIME_ENTRY_BYTES,
+                TIME_ENTRY_BYTES).getLong();
+        for (int offset = kept == 0 ? 0 : indexOffsets[kept - 1] + 1; offset < target; offset++) {
+            ByteBuffer record = read(baseOffset + offset);
+            if (record != null) latestTime = Math.max(latestTime, Message.fromBytes(record).getTimeCreated());
+        }
+        size = position;
+        records = target;
+        bytesSinceIndex = kept == 0 ? 0 : position - indexPositions[kept - 1];
+    }
+
+    /**
+     * @param latestTime the latest creation time of the records up to and including offset
+     */
+    private void addIndexEntry(int offset, int position, long latestTime) throws IOException {
+        ByteBuffer entry = ByteBuffer.allocate(INDEX_ENTRY_BYTES).putInt(offset).putInt(position);
+        entry.flip();
+        int n = indexEntries;
+        while (entry.hasRemaining()) index.write(entry, (long) n * INDEX_ENTRY_BYTES + entry.position());
+        ByteBuffer time = ByteBuffer.allocate(TIME_ENTRY_BYTES).putLong(latestTime);
+        time.flip();
+        while (time.hasRemaining()) timeIndex.write(time, (long) n * TIME_ENTRY_BYTES + time.position());
+
+        if (n == indexOffsets.length) {
+            indexOffsets = Arrays.copyOf(indexOffsets, n * 2);
+            indexPositions = Arrays.copyOf(indexPositions, n * 2);
+        }
+        indexOffsets[n] = offset;
+        indexPositions[n] = position;
+        indexEntries = n + 1;
+    }
+
+    /**
+     * @return a view of the record at offset, which must be below getEndOffset() as last published, or
+     * null if it is a gap
+     */
+    ByteBuffer read(long offset) {
+        ByteBuffer view = mapped.duplicate();
+        int position = position(view, offset);
+        int length = view.getInt(position);
+        if (length < 0) return null;
+        view.limit(position + RecordFrame.HEADER_BYTES + length).position(position + RecordFrame.HEADER_BYTES);
+        return view.slice();
+    }
+
+    /**
+     * @return the file position of the record at offset, found from the closest index entry below it
+     */
+    private int position(ByteBuffer view, long offset) {
+        int target = (int) (offset - baseOffset);
+        int entries = indexEntries;
+        int[] offsets = indexOffsets;
+        int[] positions = indexPositions;
+
+        int i = Arrays.binarySearch(offsets, 0, entries, target);
+        if (i < 0) i = -i - 2;
+
+        int position = positions[i];
+        for (int current = offsets[i]; current < target; current++) {
+            position += RecordFrame.frameBytes(view.getInt(position));
+        }
+        return position;
+    }
+
+    /**
+     * @return the records from offset up to endOffset or the end of this segment, as they are in the file,
+     * stopping before exceeding maxBytes unless no record would be included. Only the lengths of the
+     * records are read
+     */
+    FileRegion region(long offset, long endOffset, long maxBytes) {
+        ByteBuffer view = mapped.duplicate();
+        int start = position(view, offset);
+        int position = start;
+        long end = Math.min(endOffset, getEndOffset());
+        int count = 0;
+        for (long current = offset; current < end; current++, count++) {
+            int recordBytes = RecordFrame.frameBytes(view.getInt(position));
+            if (count > 0 && position - start + recordBytes > maxBytes) break;
+            position += recordBytes;
+        }
+        return new FileRegion(log, start, position - start, count);
+    }
+}
\ No newline at end of file
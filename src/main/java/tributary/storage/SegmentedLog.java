@@ -0,0 +1,245 @@
+package tributary.storage;
+
+import tributary.producer.message.Message;
+import tributary.topic.PartitionLog;
+import tributary.topic.TimeIndex;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Disk-backed partition log made of segments that roll over at the configured segment size. Messages are
+ * dropped a whole segment at a time, never from the active segment, except when the log is truncated to an
+ * end offset, which drops the segments after it and the records after it in its segment. A segment is
+ * forced to the disk as it rolls over and as the log is closed, and the active segment every flush interval
+ * of the storage.
+ */
+public class SegmentedLog<T> implements PartitionLog<T> {
+    private final Path directory;
+    private final DiskStorage storage;
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final ConcurrentNavigableMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+    private volatile Segment active;
+    private volatile long endOffset;
+    private final TimeIndex timeIndex = new TimeIndex();
+
+    private SegmentedLog(Path directory, DiskStorage storage) {
+        this.directory = directory;
+        this.storage = storage;
+    }
+
+    static <T> SegmentedLog<T> open(Path directory, DiskStorage storage) {
+        SegmentedLog<T> log = new SegmentedLog<>(directory, storage);
+        try {
+            Files.createDirectories(directory);
+            for (long baseOffset : listBaseOffsets(directory)) {
+                log.segments.put(baseOffset, Segment.open(directory, baseOffset, storage.getSegmentBytes(),
+                        storage.getIndexIntervalBytes()));
+            }
+            if (log.segments.isEmpty()) log.roll(0, storage.getSegmentBytes());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        log.active = log.segments.lastEntry().getValue();
+        log.endOffset = log.active.getEndOffset();
+
+        // from the time index entries of each segment and the records after its last entry
+        for (Segment segment : log.segments.values()) segment.loadTimes(log.timeIndex);
+        return log;
+    }
+
+    private static List<Long> listBaseOffsets(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                    .map(x -> x.getFileName().toString())
+                    .filter(x -> x.endsWith(".log"))
+                    .map(x -> Long.parseLong(x.substring(0, x.length() - ".log".length())))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private void roll(long baseOffset, int capacity) throws IOException {
+        Segment previous = active;
+        if (previous != null) previous.flush();
+        active = Segment.open(directory, baseOffset, capacity, storage.getIndexIntervalBytes());
+        segments.put(baseOffset, active);
+        // an empty segment too small for a record is replaced by its file grown to fit the record
+        if (previous != null && previous.getBaseOffset() == baseOffset) previous.close();
+    }
+
+    @Override
+    public long append(Message<T> message) {
+        return appendAll(Collections.singletonList(message));
+    }
+
+    @Override
+    public long appendAll(List<Message<T>> messages) {
+        List<byte[]> records = messages.stream()
+                .map(x -> x == null ? null : x.toBytes())
+                .collect(Collectors.toList());
+        long[] times = messages.stream()
+                .mapToLong(x -> x == null ? Long.MIN_VALUE : x.getTimeCreated())
+                .toArray();
+        appendLock.lock();
+        try {
+            long offset = endOffset;
+            int written = 0;
+            while (written < records.size()) {
+                int count = active.append(records, times, written);
+                if (count == 0) {
+                    roll(offset + written,
+                            Math.max(storage.getSegmentBytes(), RecordFrame.frameBytes(records.get(written))));
+                }
+                written += count;
+            }
+            if (storage.getFlushIntervalMs() == 0) active.flush();
+            endOffset = offset + records.size();
+            for (int i = 0; i < times.length; i++) {
+                if (messages.get(i) != null) timeIndex.add(offset + i, times[i]);
+            }
+            return offset;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    @Override
+    public Message<T> read(long offset) {
+        if (offset < 0 || offset >= endOffset) return null;
+        Map.Entry<Long, Segment> segment = segments.floorEntry(offset);
+        if (segment == null) return null;
+        ByteBuffer record = segment.getValue().read(offset);
+        return record == null ? null : Message.fromBytes(record);
+    }
+
+    @Override
+    public FileRegion fileRegion(long offset, long endOffset, long maxBytes) {
+        if (offset < 0 || offset >= Math.min(endOffset, this.endOffset)) return null;
+        Map.Entry<Long, Segment> segment = segments.floorEntry(offset);
+        if (segment == null) return null;
+        return segment.getValue().region(offset, endOffset, maxBytes);
+    }
+
+    @Override
+    public long getEndOffset() {
+        return endOffset;
+    }
+
+    @Override
+    public long offsetForTime(long timeCreated) {
+        return timeIndex.offsetForTime(this, timeCreated);
+    }
+
+    @Override
+    public long getStartOffset() {
+        return segments.firstKey();
+    }
+
+    @Override
+    public long getBytes() {
+        long bytes = 0;
+        for (Segment segment : segments.values()) bytes += segment.getSize();
+        return bytes;
+    }
+
+    @Override
+    public void flush() {
+        Segment segment = active;
+        try {
+            segment.flush();
+        } catch (ClosedChannelException e) {
+            // replaced by a larger segment as it was flushed, and flushed as it was replaced
+            if (segment == active) throw new UncheckedIOException(e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        appendLock.lock();
+        try {
+            for (Segment segment : segments.values()) segment.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    @Override
+    public synchronized void truncateBefore(long offset) {
+        while (true) {
+            Segment segment = segments.firstEntry().getValue();
+            if (segment == active || segment.getEndOffset() > offset) return;
+            delete(segment);
+        }
+    }
+
+    @Override
+    public synchronized void truncateToBytes(long maxBytes) {
+        long bytes = getBytes();
+        while (bytes > maxBytes) {
+            Segment segment = segments.firstEntry().getValue();
+            if (segment == active) return;
+            bytes -= segment.getSize();
+            delete(segment);
+        }
+    }
+
+    @Override
+    public synchronized void truncateTo(long endOffset) {
+        appendLock.lock();
+        try {
+            if (endOffset >= this.endOffset) return;
+            // readers stop at the new end offset before any record is dropped
+            this.endOffset = endOffset;
+
+            Map.Entry<Long, Segment> holding = segments.floorEntry(endOffset);
+            for (Segment segment : new ArrayList<>(segments.tailMap(endOffset, false).values())) delete(segment);
+            if (holding == null) {
+                active = null;
+                roll(endOffset, storage.getSegmentBytes());
+            } else {
+                active = holding.getValue();
+                active.truncateTo(endOffset);
+                active.flush();
+            }
+            timeIndex.truncateTo(this, endOffset);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    private void delete(Segment segment) {
+        segments.remove(segment.getBaseOffset());
+        try {
+            segment.delete();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void remove(long offset) {
+        throw new UnsupportedOperationException("Messages stored on disk can only be dropped a segment at a time");
+    }
+}
\ No newline at end of file
@@ -0,0 +1,72 @@
+package tributary.topic;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Lets readers wait for events to be appended to the partitions of a topic instead of polling for them.
+ * Appends only bump a version unless a reader is waiting, so producing pays for the lock only then.
+ * Listeners are run by the appending thread after every append, so they must only hand work off.
+ */
+public class AppendNotifier {
+    private final AtomicLong version = new AtomicLong();
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition appended = lock.newCondition();
+    // replaced whenever a listener is added or removed, so signalling never copies
+    private volatile Runnable[] listeners = new Runnable[0];
+
+    /**
+     * @return the current version, to be passed to await after finding nothing to read
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    public void signal() {
+        version.incrementAndGet();
+        for (Runnable listener : listeners) listener.run();
+        if (waiting.get() == 0) return;
+
+        lock.lock();
+        try {
+            appended.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public synchronized void addListener(Runnable listener) {
+        Runnable[] current = Arrays.copyOf(listeners, listeners.length + 1);
+        current[current.length - 1] = listener;
+        listeners = current;
+    }
+
+    public synchronized void removeListener(Runnable listener) {
+        listeners = Arrays.stream(listeners).filter(x -> x != listener).toArray(Runnable[]::new);
+    }
+
+    /**
+     * waits until an event is appended after version was read, or until timeout passes
+     * @return whether an event was appended
+     */
+    public boolean await(long version, long timeout, TimeUnit unit) throws InterruptedException {
+        long remaining = unit.toNanos(timeout);
+        waiting.incrementAndGet();
+        lock.lock();
+        try {
+            while (this.version.get() == version) {
+                if (remaining <= 0) return false;
+                remaining = appended.awaitNanos(remaining);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+            waiting.decrementAndGet();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,315 @@
+package tributary.topic;
+
+import tributary.compression.CompressionCodec;
+import tributary.producer.message.Message;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-memory partition log holding its events compressed in batches. Appended events are kept as they are
+ * in an open batch until it holds BATCH_RECORDS events or BATCH_BYTES bytes, and is then compressed as a
+ * whole, so compressing costs the same however the events were produced. Reading an event decompresses its
+ * batch, and the last few batches read are kept decompressed, so consumers reading in order decompress
+ * each batch once. Messages are dropped a whole batch at a time, never from the open batch, except when the
+ * log is truncated to an end offset, which decompresses the batch holding it back into the open batch.
+ */
+public class CompressedLog<T> implements PartitionLog<T> {
+    static final int BATCH_RECORDS = 1024;
+    static final int BATCH_BYTES = 256 * 1024;
+    private static final int DECODED_SLOTS = 8;
+
+    private final CompressionCodec codec;
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final ConcurrentNavigableMap<Long, Batch> batches = new ConcurrentSkipListMap<>();
+    // recently decompressed batches, a batch always going to the slot of its sequence number
+    private final AtomicReferenceArray<Decoded<T>> decoded = new AtomicReferenceArray<>(DECODED_SLOTS);
+    // replaced only after its batch is in batches, so every offset below its base offset is found there
+    private volatile OpenBatch<T> open;
+    private volatile long endOffset;
+    private final AtomicLong bytes = new AtomicLong();
+    private final TimeIndex timeIndex = new TimeIndex();
+    // only accessed by the appending thread
+    private long sequence = 0;
+
+    public CompressedLog(CompressionCodec codec) {
+        this(codec, 0);
+    }
+
+    private CompressedLog(CompressionCodec codec, long startOffset) {
+        this.codec = codec;
+        this.open = new OpenBatch<>(startOffset);
+        this.endOffset = startOffset;
+    }
+
+    /**
+     * @return a log compressed with codec holding the messages of log at the same offsets
+     */
+    public static <T> CompressedLog<T> copyOf(CompressionCodec codec, PartitionLog<T> log) {
+        CompressedLog<T> copy = new CompressedLog<>(codec, log.getStartOffset());
+        long end = log.getEndOffset();
+        for (long offset = log.getStartOffset(); offset < end; offset++) copy.store(log.read(offset));
+        return copy;
+    }
+
+    public CompressionCodec getCodec() {
+        return codec;
+    }
+
+    @Override
+    public long append(Message<T> message) {
+        appendLock.lock();
+        try {
+            long offset = endOffset;
+            store(message);
+            return offset;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    @Override
+    public long appendAll(List<Message<T>> messages) {
+        appendLock.lock();
+        try {
+            long offset = endOffset;
+            for (Message<T> message : messages) store(message);
+            return offset;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * appends message, null leaving a gap, and compresses the open batch once it is full. Called with the
+     * append lock held
+     */
+    private void store(Message<T> message) {
+        OpenBatch<T> current = open;
+        long offset = endOffset;
+        current.messages[current.count++] = message;
+        if (message != null) {
+            current.bytes += message.getSize();
+            bytes.addAndGet(message.getSize());
+            timeIndex.add(offset, message.getTimeCreated());
+        }
+        endOffset = offset + 1;
+
+        if (current.count == BATCH_RECORDS || current.bytes >= BATCH_BYTES) {
+            Batch batch = current.compress(codec, sequence++);
+            batches.put(batch.baseOffset, batch);
+            bytes.addAndGet(batch.data.length - current.bytes);
+            open = new OpenBatch<>(offset + 1);
+        }
+    }
+
+    @Override
+    public Message<T> read(long offset) {
+        if (offset < 0 || offset >= endOffset) return null;
+        OpenBatch<T> current = open;
+        if (offset >= current.baseOffset) return current.get((int) (offset - current.baseOffset));
+
+        Map.Entry<Long, Batch> entry = batches.floorEntry(offset);
+        if (entry == null) return null;
+        // the batch holding offset was moved back into the open batch by a truncation as this was read
+        if (offset - entry.getKey() >= entry.getValue().count) return read(offset);
+        return decode(entry.getValue()).get((int) (offset - entry.getKey()));
+    }
+
+    private List<Message<T>> decode(Batch batch) {
+        int slot = (int) (batch.sequence % DECODED_SLOTS);
+        Decoded<T> cached = decoded.get(slot);
+        if (cached != null && cached.batch == batch) return cached.messages;
+
+        List<Message<T>> messages = batch.decompress(codec);
+        decoded.set(slot, new Decoded<>(batch, messages));
+        return messages;
+    }
+
+    @Override
+    public long getEndOffset() {
+        return endOffset;
+    }
+
+    @Override
+    public long offsetForTime(long timeCreated) {
+        return timeIndex.offsetForTime(this, timeCreated);
+    }
+
+    @Override
+    public long getStartOffset() {
+        Map.Entry<Long, Batch> first = batches.firstEntry();
+        return first == null ? open.baseOffset : first.getKey();
+    }
+
+    /**
+     * @return the number of bytes the messages kept take, compressed for the batches already compressed
+     */
+    @Override
+    public long getBytes() {
+        return bytes.get();
+    }
+
+    @Override
+    public synchronized void truncateBefore(long offset) {
+        for (Map.Entry<Long, Batch> first; (first = batches.firstEntry()) != null; ) {
+            if (first.getKey() + first.getValue().count > offset) return;
+            delete(first.getValue());
+        }
+    }
+
+    @Override
+    public synchronized void truncateToBytes(long maxBytes) {
+        for (Map.Entry<Long, Batch> first; bytes.get() > maxBytes && (first = batches.firstEntry()) != null; ) {
+            delete(first.getValue());
+        }
+    }
+
+    @Override
+    public synchronized void truncateTo(long endOffset) {
+        appendLock.lock();
+        try {
+            if (endOffset >= this.endOffset) return;
+            // readers stop at the new end offset before any message is dropped
+            this.endOffset = endOffset;
+
+            OpenBatch<T> current = open;
+            if (endOffset >= current.baseOffset) {
+                for (int i = (int) (endOffset - current.baseOffset); i < current.count; i++) {
+                    Message<T> message = current.get(i);
+                    if (message != null) {
+                        current.bytes -= message.getSize();
+                        bytes.addAndGet(-message.getSize());
+                    }
+                    current.messages[i] = null;
+                }
+                current.count = (int) (endOffset - current.baseOffset);
+            } else {
+                // the batch holding endOffset becomes the open batch, published before the batches from it are
+                // dropped so that every offset below endOffset is found in one or the other
+                Map.Entry<Long, Batch> holding = batches.floorEntry(endOffset);
+                OpenBatch<T> reopened = new OpenBatch<>(holding == null ? endOffset : holding.getKey());
+                if (holding != null) {
+                    List<Message<T>> messages = decode(holding.getValue());
+                    for (int i = 0; i < endOffset - holding.getKey(); i++) {
+                        Message<T> message = messages.get(i);
+                        reopened.messages[reopened.count++] = message;
+                        if (message != null) reopened.bytes += message.getSize();
+                    }
+                }
+                open = reopened;
+                bytes.addAndGet(reopened.bytes - current.bytes);
+                for (Batch batch : new ArrayList<>(batches.tailMap(reopened.baseOffset).values())) delete(batch);
+            }
+            timeIndex.truncateTo(this, endOffset);
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    private void delete(Batch batch) {
+        batches.remove(batch.baseOffset);
+        bytes.addAndGet(-batch.data.length);
+    }
+
+    @Override
+    public void remove(long offset) {
+        throw new UnsupportedOperationException("Compressed messages can only be dropped a batch at a time");
+    }
+
+    /**
+     * A batch of messages compressed as [length][message]..., a length of -1 marking a dropped message.
+     */
+    private static final class Batch {
+        private final long baseOffset;
+        private final int count;
+        private final int length;
+        private final byte[] data;
+        private final long sequence;
+
+        private Batch(long baseOffset, int count, int length, byte[] data, long sequence) {
+            this.baseOffset = baseOffset;
+            this.count = count;
+            this.length = length;
+            this.data = data;
+            this.sequence = sequence;
+        }
+
+        private <T> List<Message<T>> decompress(CompressionCodec codec) {
+            ByteBuffer buffer = ByteBuffer.wrap(codec.decompress(data, length));
+            // the messages of a batch mostly share their source and key
+            Map<String, String> strings = new HashMap<>();
+            List<Message<T>> messages = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                int size = buffer.getInt();
+                if (size < 0) {
+                    messages.add(null);
+                    continue;
+                }
+                ByteBuffer record = buffer.slice();
+                record.limit(size);
+                messages.add(Message.fromBytes(record, strings));
+                buffer.position(buffer.position() + size);
+            }
+            return messages;
+        }
+    }
+
+    /**
+     * The batch messages are appended to until it is full. A message is written into its slot before the
+     * end offset is published, so any slot below the end offset a reader observes is safe to read.
+     */
+    private static final class OpenBatch<T> {
+        private final long baseOffset;
+        private final Object[] messages = new Object[BATCH_RECORDS];
+        // only accessed by the appending thread
+        private int count = 0;
+        private long bytes = 0;
+
+        private OpenBatch(long baseOffset) {
+            this.baseOffset = baseOffset;
+        }
+
+        @SuppressWarnings("unchecked")
+        private Message<T> get(int i) {
+            return (Message<T>) messages[i];
+        }
+
+        private Batch compress(CompressionCodec codec, long sequence) {
+            List<byte[]> records = new ArrayList<>(count);
+            int length = 0;
+            for (int i = 0; i < count; i++) {
+                Message<T> message = get(i);
+                byte[] record = message == null ? null : message.toBytes();
+                records.add(record);
+                length += Integer.BYTES + (record == null ? 0 : record.length);
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocate(length);
+            for (byte[] record : records) {
+                if (record == null) buffer.putInt(-1);
+                else buffer.putInt(record.length).put(record);
+            }
+            return new Batch(baseOffset, count, length, codec.compress(buffer.array(), length),
+                    sequence);
+        }
+    }
+
+    private static final class Decoded<T> {
+        private final Batch batch;
+        private final List<Message<T>> messages;
+
+        private Decoded(Batch batch, List<Message<T>> messages) {
+            this.batch = batch;
+            this.messages = messages;
+        }
+    }
+}
\ No newline at end of file
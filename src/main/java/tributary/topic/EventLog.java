@@ -0,0 +1,215 @@
+package tributary.topic;
+
+import tributary.producer.message.Message;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Append-only, offset-addressed log of events. Appends are ordered by a per-log lock, reads never block:
+ * an event is written into its slot before the end offset is published, so any offset below the end
+ * offset a reader observes is safe to read. Dropped events leave their slot empty, and chunks below the
+ * start offset are released.
+ */
+public class EventLog<T> implements PartitionLog<T> {
+    private static final int CHUNK_BITS = 10;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private volatile Object[][] chunks = new Object[16][];
+    private volatile long endOffset = 0;
+    private volatile long startOffset = 0;
+    private final AtomicLong bytes = new AtomicLong();
+    private final TimeIndex timeIndex = new TimeIndex();
+
+    /**
+     * @param startOffset the offset of the first message of messages
+     * @param messages the messages of a log at the offsets following startOffset, with null for a message
+     * dropped from it
+     * @return a log holding messages at those offsets
+     */
+    public static <T> EventLog<T> restore(long startOffset, List<Message<T>> messages) {
+        EventLog<T> log = new EventLog<>();
+        long endOffset = startOffset + messages.size();
+        log.chunks = new Object[Math.max(16, (int) (endOffset >>> CHUNK_BITS) + 1)][];
+        long size = 0;
+        for (int i = 0; i < messages.size(); i++) {
+            Message<T> message = messages.get(i);
+            if (message == null) continue;
+            log.store(startOffset + i, message);
+            log.timeIndex.add(startOffset + i, message.getTimeCreated());
+            size += message.getSize();
+        }
+        log.startOffset = startOffset;
+        log.endOffset = endOffset;
+        log.bytes.set(size);
+        return log;
+    }
+
+    @Override
+    public long append(Message<T> message) {
+        appendLock.lock();
+        try {
+            long offset = endOffset;
+            store(offset, message);
+            endOffset = offset + 1;
+            if (message != null) {
+                bytes.addAndGet(message.getSize());
+                timeIndex.add(offset, message.getTimeCreated());
+            }
+            return offset;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    @Override
+    public long appendAll(List<Message<T>> messages) {
+        appendLock.lock();
+        try {
+            long offset = endOffset;
+            long size = 0;
+            for (int i = 0; i < messages.size(); i++) {
+                store(offset + i, messages.get(i));
+                if (messages.get(i) != null) size += messages.get(i).getSize();
+            }
+            endOffset = offset + messages.size();
+            bytes.addAndGet(size);
+            for (int i = 0; i < messages.size(); i++) {
+                if (messages.get(i) != null) timeIndex.add(offset + i, messages.get(i).getTimeCreated());
+            }
+            return offset;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    private void store(long offset, Message<T> message) {
+        int chunk = (int) (offset >>> CHUNK_BITS);
+        Object[][] current = chunks;
+        if (chunk == current.length) {
+            current = Arrays.copyOf(current, current.length * 2);
+        }
+        if (current[chunk] == null) {
+            current[chunk] = new Object[CHUNK_SIZE];
+        }
+        current[chunk][(int) (offset & CHUNK_MASK)] = message;
+        chunks = current;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Message<T> read(long offset) {
+        if (offset < startOffset || offset >= endOffset) return null;
+        Object[] chunk = chunks[(int) (offset >>> CHUNK_BITS)];
+        return chunk == null ? null : (Message<T>) chunk[(int) (offset & CHUNK_MASK)];
+    }
+
+    @Override
+    public long getEndOffset() {
+        return endOffset;
+    }
+
+    @Override
+    public long offsetForTime(long timeCreated) {
+        return timeIndex.offsetForTime(this, timeCreated);
+    }
+
+    @Override
+    public long getStartOffset() {
+        return startOffset;
+    }
+
+    @Override
+    public long getBytes() {
+        return bytes.get();
+    }
+
+    @Override
+    public synchronized void truncateBefore(long offset) {
+        long start = startOffset;
+        long end = Math.min(offset, endOffset);
+        if (end <= start) return;
+
+        // readers stop at the new start offset before any slot is emptied
+        startOffset = end;
+        long size = 0;
+        for (long current = start; current < end; current++) {
+            Object[] chunk = chunks[(int) (current >>> CHUNK_BITS)];
+            Object message = chunk == null ? null : chunk[(int) (current & CHUNK_MASK)];
+            if (message != null) size += ((Message<?>) message).getSize();
+        }
+
+        // under the append lock so that an append growing the chunks does not copy a released chunk back
+        appendLock.lock();
+        try {
+            Object[][] current = chunks;
+            long next = start;
+            while (next < end) {
+                int chunk = (int) (next >>> CHUNK_BITS);
+                long chunkEnd = (long) (chunk + 1) << CHUNK_BITS;
+                if (chunkEnd <= end) {
+                    current[chunk] = null;
+                    next = chunkEnd;
+                } else {
+                    if (current[chunk] != null) current[chunk][(int) (next & CHUNK_MASK)] = null;
+                    next++;
+                }
+            }
+        } finally {
+            appendLock.unlock();
+        }
+        bytes.addAndGet(-size);
+    }
+
+    @Override
+    public synchronized void truncateToBytes(long maxBytes) {
+        long excess = bytes.get() - maxBytes;
+        long offset = startOffset;
+        long end = endOffset;
+        for (; offset < end && excess > 0; offset++) {
+            Message<T> message = read(offset);
+            if (message != null) excess -= message.getSize();
+        }
+        truncateBefore(offset);
+    }
+
+    @Override
+    public synchronized void truncateTo(long endOffset) {
+        appendLock.lock();
+        try {
+            long end = this.endOffset;
+            if (endOffset >= end) return;
+
+            // readers stop at the new end offset before any slot is emptied
+            this.endOffset = endOffset;
+            if (endOffset < startOffset) startOffset = endOffset;
+            long size = 0;
+            for (long offset = endOffset; offset < end; offset++) {
+                Object[] chunk = chunks[(int) (offset >>> CHUNK_BITS)];
+                int slot = (int) (offset & CHUNK_MASK);
+                if (chunk == null || chunk[slot] == null) continue;
+                size += ((Message<?>) chunk[slot]).getSize();
+                chunk[slot] = null;
+            }
+            bytes.addAndGet(-size);
+            timeIndex.truncateTo(this, endOffset);
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    @Override
+    public synchronized void remove(long offset) {
+        if (offset < startOffset || offset >= endOffset) return;
+        Object[] chunk = chunks[(int) (offset >>> CHUNK_BITS)];
+        int slot = (int) (offset & CHUNK_MASK);
+        if (chunk == null || chunk[slot] == null) return;
+
+        bytes.addAndGet(-((Message<?>) chunk[slot]).getSize());
+        chunk[slot] = null;
+    }
+}
\ No newline at end of file
@@ -1,29 +1,297 @@
 package tributary.topic;
 
 import tributary.consumer.Consumer;
+import tributary.consumer.ConsumerGroup;
+import tributary.metrics.Counter;
+import tributary.metrics.Histogram;
+import tributary.metrics.MetricsRegistry;
 import tributary.producer.message.Message;
+import tributary.replication.ReplicaSet;
+import tributary.storage.FileRegion;
 
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Predicate;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 public class Partition<T> {
-    private List<Message<T>> events = new ArrayList<>();
-    private Map<String, Consumer<T>> consumers = new HashMap<>();
+    private static final long NOT_FOLLOWING = -1;
+
+    private final PartitionLog<T> events;
+    private volatile Map<String, Consumer<T>> consumers = new ConcurrentHashMap<>();
     private final String partitionId;
+    private final AppendNotifier appendNotifier;
+    // compaction state, only accessed by clean
+    private final Map<String, Long> latestOffsets = new HashMap<>();
+    private long compactedOffset = 0;
+    // the snapshots being written from this partition, which clean waits for; guarded by this
+    private int retentionHolds = 0;
+    // the followers fetching from this partition while it leads, null if none ever fetched
+    private volatile ReplicaSet replicas;
+    // the high watermark the leader last reported while this partition follows it, NOT_FOLLOWING otherwise
+    private volatile long leaderHighWatermark = NOT_FOLLOWING;
+
+    private final Counter produced;
+    private final Counter producedBytes;
+    private final Counter consumed;
+    private final Counter consumedBytes;
+    private final Histogram latency;
 
     public Partition(String partitionId) {
+        this(partitionId, new EventLog<>());
+    }
+
+    public Partition(String partitionId, PartitionLog<T> events) {
+        this(partitionId, events, new MetricsRegistry(), null);
+    }
+
+    /**
+     * @param metrics where the partition records its counters, under topic.topicId.partition.partitionId,
+     * and the end-to-end latency of consumed events, under topic.topicId.latency.nanos
+     */
+    public Partition(String partitionId, PartitionLog<T> events, MetricsRegistry metrics, String topicId) {
+        this(partitionId, events, metrics, topicId, new AppendNotifier());
+    }
+
+    /**
+     * @param appendNotifier signalled after every append, shared by the partitions of a topic
+     */
+    public Partition(String partitionId, PartitionLog<T> events, MetricsRegistry metrics, String topicId,
+                     AppendNotifier appendNotifier) {
         this.partitionId = partitionId;
+        this.events = events;
+        this.appendNotifier = appendNotifier;
+
+        String topic = topicId == null ? "" : "topic." + topicId + ".";
+        String name = topic + "partition." + partitionId;
+        this.produced = metrics.counter(name + ".produced");
+        this.producedBytes = metrics.counter(name + ".produced.bytes");
+        this.consumed = metrics.counter(name + ".consumed");
+        this.consumedBytes = metrics.counter(name + ".consumed.bytes");
+        this.latency = metrics.histogram(topic + "latency.nanos");
+        metrics.gauge(name + ".endOffset", events::getEndOffset);
+        metrics.gauge(name + ".startOffset", events::getStartOffset);
+    }
+
+    /**
+     * @return the offset the event was appended at
+     * @throws IllegalArgumentException if this partition follows a leader
+     */
+    public long addEvent(Message<T> message) {
+        checkNotFollowing();
+        long offset = events.append(message);
+        produced.increment();
+        producedBytes.add(message.getSize());
+        appendNotifier.signal();
+        return offset;
+    }
+
+    /**
+     * @return the offset the first event was appended at
+     * @throws IllegalArgumentException if this partition follows a leader
+     */
+    public long addEvents(List<Message<T>> messages) {
+        checkNotFollowing();
+        long offset = events.appendAll(messages);
+        long bytes = 0;
+        for (Message<T> message : messages) bytes += message.getSize();
+        produced.add(messages.size());
+        producedBytes.add(bytes);
+        appendNotifier.signal();
+        return offset;
+    }
+
+    private void checkNotFollowing() {
+        if (leaderHighWatermark != NOT_FOLLOWING)
+            throw new IllegalArgumentException("Partition " + partitionId + " follows a leader and cannot be "
+                    + "produced to");
+    }
+
+    /**
+     * appends events fetched from the leader this partition follows, at the offsets they have there
+     * @param messages the events following the end offset, null for an event the leader dropped
+     * @param leaderHighWatermark the high watermark the leader reported with them
+     */
+    public void addReplicatedEvents(List<Message<T>> messages, long leaderHighWatermark) {
+        if (!messages.isEmpty()) {
+            events.appendAll(messages);
+            long bytes = 0;
+            for (Message<T> message : messages) bytes += message == null ? 0 : message.getSize();
+            produced.add(messages.size());
+            producedBytes.add(bytes);
+        }
+        long previous = this.leaderHighWatermark;
+        if (previous != NOT_FOLLOWING) this.leaderHighWatermark = Math.max(previous, leaderHighWatermark);
+        if (!messages.isEmpty() || leaderHighWatermark > previous) appendNotifier.signal();
+    }
+
+    /**
+     * drops the events this follower holds from the end offset of its leader on, as it does once it finds
+     * it is ahead of its leader, e.g. of one that lost events it had not replicated
+     * @param leaderHighWatermark the high watermark the leader reported with its end offset
+     */
+    public void truncateReplica(long leaderEndOffset, long leaderHighWatermark) {
+        if (this.leaderHighWatermark != NOT_FOLLOWING) this.leaderHighWatermark = leaderHighWatermark;
+        events.truncateTo(leaderEndOffset);
+    }
+
+    /**
+     * makes this partition a follower, only appended to by addReplicatedEvents and read up to the high
+     * watermark its leader reports
+     */
+    public void follow() {
+        if (leaderHighWatermark == NOT_FOLLOWING) leaderHighWatermark = 0;
+    }
+
+    /**
+     * makes this partition lead again, e.g. once its leader failed, with every event it holds readable
+     */
+    public void unfollow() {
+        leaderHighWatermark = NOT_FOLLOWING;
+        appendNotifier.signal();
+    }
+
+    public boolean isFollowing() {
+        return leaderHighWatermark != NOT_FOLLOWING;
+    }
+
+    /**
+     * @return the followers fetching from this partition, created with the high watermark at the end offset
+     * when the first follower fetches
+     */
+    public synchronized ReplicaSet getReplicaSet(long maxLagMs) {
+        if (replicas == null) replicas = new ReplicaSet(maxLagMs, events.getEndOffset());
+        return replicas;
     }
 
-    public void addEvent(Message<T> message) {
-        events.add(message);
+    /**
+     * @return the offset below which events are readable: below which every replica in sync has them on a
+     * leader, as the leader reported on a follower, and the end offset if this partition is not replicated
+     */
+    public long getHighWatermark() {
+        long end = events.getEndOffset();
+        long following = leaderHighWatermark;
+        if (following != NOT_FOLLOWING) return Math.min(following, end);
+        ReplicaSet current = replicas;
+        return current == null ? end : current.getHighWatermark(end);
+    }
+
+    /**
+     * waits until the high watermark reaches offset, woken by appends and by the high watermark moving
+     * @return whether it did before timeoutMs passed
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean awaitHighWatermark(long offset, long timeoutMs) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        while (true) {
+            // read the version first so that the high watermark moving after the check is not waited for
+            long version = appendNotifier.getVersion();
+            if (getHighWatermark() >= offset) return true;
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) return false;
+
+            appendNotifier.await(version, remaining, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * waits until the high watermark reaches offset, as producing with Acks.ALL does
+     * @throws IllegalStateException if it did not before timeoutMs passed, or the wait was interrupted
+     */
+    public void awaitReplicated(long offset, long timeoutMs) {
+        try {
+            if (!awaitHighWatermark(offset, timeoutMs))
+                throw new IllegalStateException("Events of partition " + partitionId + " were not replicated within "
+                        + timeoutMs + " ms");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while events of partition " + partitionId
+                    + " were replicated");
+        }
+    }
+
+    private void recordConsumed(Message<T> event, long now) {
+        consumed.increment();
+        consumedBytes.add(event.getSize());
+        latency.record(now - event.getTimeCreated());
     }
 
     public void display() {
         System.out.println("\tPartition: " + partitionId);
-        events.forEach(Message::display);
+        long endOffset = events.getEndOffset();
+        for (long offset = events.getStartOffset(); offset < endOffset; offset++) {
+            Message<T> event = events.read(offset);
+            if (event != null) event.display();
+        }
+    }
+
+    /**
+     * keeps clean from dropping any event until releaseRetention, e.g. while a snapshot is written from the
+     * events. Waits for a clean already running to finish
+     */
+    public synchronized void holdRetention() {
+        retentionHolds++;
+    }
+
+    public synchronized void releaseRetention() {
+        retentionHolds--;
+    }
+
+    /**
+     * drops the events policy does not keep, without moving the offsets of the events kept. Consumers
+     * whose next offset was dropped continue from the next event kept
+     */
+    public synchronized void clean(RetentionPolicy policy) {
+        if (retentionHolds > 0) return;
+        if (policy.isCompact()) compact();
+
+        long end = events.getEndOffset();
+        long keepFrom = policy.getMaxCount() == 0 ? 0 : end - policy.getMaxCount();
+        long cutoff = policy.getMaxAgeMs() == 0 ?
+                Long.MIN_VALUE :
+                Message.now() - TimeUnit.MILLISECONDS.toNanos(policy.getMaxAgeMs());
+
+        long start = events.getStartOffset();
+        long offset = start;
+        for (; offset < end; offset++) {
+            Message<T> event = events.read(offset);
+            if (event != null && offset >= keepFrom && event.getTimeCreated() >= cutoff) break;
+        }
+        if (offset > start) events.truncateBefore(offset);
+        if (policy.getMaxBytes() > 0) events.truncateToBytes(policy.getMaxBytes());
+
+        long newStart = events.getStartOffset();
+        if (newStart > start) latestOffsets.values().removeIf(x -> x < newStart);
+    }
+
+    /**
+     * drops every event appended since the last compaction superseded by a later event with the same id
+     */
+    private void compact() {
+        long end = events.getEndOffset();
+        for (long offset = Math.max(compactedOffset, events.getStartOffset()); offset < end; offset++) {
+            Message<T> event = events.read(offset);
+            if (event == null) continue;
+            Long previous = latestOffsets.put(event.getId(), offset);
+            if (previous != null) events.remove(previous);
+        }
+        compactedOffset = end;
+    }
+
+    /**
+     * forces the events appended to the disk, if this partition is stored on disk
+     */
+    public void flush() {
+        events.flush();
+    }
+
+    /**
+     * flushes this partition and releases its files. Events are not appended after
+     */
+    public void close() {
+        events.close();
     }
 
     public void addConsumer(Consumer<T> consumer) {
@@ -31,26 +299,120 @@ public class Partition<T> {
     }
 
     public boolean hasConsumer(String consumerId) {
-        return consumers.values().stream().anyMatch(x -> x.getConsumerId().equals(consumerId));
+        return consumers.containsKey(consumerId);
+    }
+
+    public boolean hasConsumer(ConsumerGroup<T> consumerGroup) {
+        return consumers.values().stream().anyMatch(x -> x.getConsumerGroup() == consumerGroup);
+    }
+
+    public void removeConsumer(String consumerId) {
+        consumers.remove(consumerId);
+    }
+
+    public void removeConsumers(ConsumerGroup<T> consumerGroup) {
+        removeConsumersIf(consumerGroup, x -> true);
+    }
+
+    public void removeConsumersIf(ConsumerGroup<T> consumerGroup, Predicate<Consumer<T>> filter) {
+        consumers.values().removeIf(x -> x.getConsumerGroup() == consumerGroup && filter.test(x));
     }
 
     public String getPartitionId() {
         return partitionId;
     }
 
-    public void consumeNext(String consumerId) {
-        consumers.get(consumerId).consume(getNextEvent(consumerId));
+    public long getEndOffset() {
+        return events.getEndOffset();
+    }
+
+    public long getStartOffset() {
+        return events.getStartOffset();
+    }
+
+    /**
+     * @return the event at offset, or null if offset is not between the start and end offsets or its event
+     * was dropped
+     */
+    public Message<T> read(long offset) {
+        return events.read(offset);
+    }
+
+    /**
+     * @return the events from offset below endOffset as stored on disk, to be sent without copying them,
+     * or null if this partition is not stored or offset is not stored
+     * @see PartitionLog#fileRegion
+     */
+    public FileRegion fileRegion(long offset, long endOffset, long maxBytes) {
+        return events.fileRegion(offset, endOffset, maxBytes);
     }
 
-    private Message<T> getNextEvent(String consumerId) {
-        List<String> consumedEvents = consumers.get(consumerId).getConsumedEventIds();
-        return events
-                .stream()
-                .filter(x -> !consumedEvents.contains(x.getId()))
-                .findFirst().orElse(null);
+    /**
+     * @param timeCreated in nanoseconds since the epoch
+     * @return the first offset kept whose event was created at or after timeCreated, or the end offset
+     * if there is none
+     */
+    public long offsetForTime(long timeCreated) {
+        return events.offsetForTime(timeCreated);
+    }
+
+    public AppendNotifier getAppendNotifier() {
+        return appendNotifier;
+    }
+
+    /**
+     * @return the next event for the consumer's group, or null if it has consumed every event
+     */
+    public Message<T> consumeNext(String consumerId) {
+        ConsumerGroup<T> consumerGroup = consumers.get(consumerId).getConsumerGroup();
+        while (true) {
+            long offset = consumerGroup.claimOffset(partitionId, events.getStartOffset(), getHighWatermark());
+            if (offset < 0) return null;
+
+            // an event dropped by compaction or retention is skipped
+            Message<T> event = events.read(offset);
+            if (event != null) {
+                recordConsumed(event, Message.now());
+                return event;
+            }
+        }
+    }
+
+    /**
+     * reads the events after the committed offset of a consumer group into records and commits past them.
+     * Stops after maxRecords events or before exceeding maxBytes, unless records is still empty
+     * @return the number of bytes read
+     */
+    public long poll(ConsumerGroup<T> consumerGroup, int maxRecords, long maxBytes, List<Message<T>> records) {
+        int from = records.size();
+        while (true) {
+            long start = consumerGroup.getOffset(partitionId);
+            // events are only read once every replica in sync has them
+            long end = getHighWatermark();
+            long bytes = 0;
+            long offset = Math.max(start, events.getStartOffset());
+            for (int read = 0; offset < end && read < maxRecords; offset++) {
+                Message<T> event = events.read(offset);
+                // an event dropped by compaction or retention is skipped
+                if (event == null) continue;
+                if (!records.isEmpty() && bytes + event.getSize() > maxBytes) break;
+                read++;
+                records.add(event);
+                bytes += event.getSize();
+            }
+
+            if (offset == start || consumerGroup.commitOffset(partitionId, start, offset)) {
+                long now = Message.now();
+                for (int i = from; i < records.size(); i++) recordConsumed(records.get(i), now);
+                return bytes;
+            }
+
+            // another consumer of the group moved the offset, read again from where it left it
+            records.subList(from, records.size()).clear();
+        }
     }
 
     public void resetConsumers() {
-        consumers = new HashMap<>();
+        consumers = new ConcurrentHashMap<>();
     }
 }
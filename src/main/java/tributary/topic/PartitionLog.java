@@ -0,0 +1,94 @@
+package tributary.topic;
+
+import tributary.producer.message.Message;
+import tributary.storage.FileRegion;
+
+import java.util.List;
+
+public interface PartitionLog<T> {
+    /**
+     * @param message the message, or null to leave a gap, as a follower does for a message its leader
+     * dropped
+     * @return the offset the message was appended at
+     */
+    long append(Message<T> message);
+
+    /**
+     * appends all messages as a single operation, in order, null leaving a gap
+     * @return the offset the first message was appended at
+     */
+    long appendAll(List<Message<T>> messages);
+
+    /**
+     * @return the message at offset, or null if offset is not between the start and end offsets or its
+     * message was removed
+     */
+    Message<T> read(long offset);
+
+    /**
+     * @return the messages from offset below endOffset as they are stored in a file, at most maxBytes of
+     * them unless that is less than one, or null if this log does not keep its messages in files. A region
+     * may end before endOffset, e.g. at the end of a file
+     */
+    default FileRegion fileRegion(long offset, long endOffset, long maxBytes) {
+        return null;
+    }
+
+    /**
+     * @return the offset the next appended message will get
+     */
+    long getEndOffset();
+
+    /**
+     * @return the first offset kept whose message was created at or after timeCreated, in nanoseconds
+     * since the epoch, or the end offset if there is none
+     */
+    long offsetForTime(long timeCreated);
+
+    /**
+     * @return the offset of the first message kept
+     */
+    long getStartOffset();
+
+    /**
+     * @return the number of bytes the messages kept take
+     */
+    long getBytes();
+
+    /**
+     * drops the messages below offset. Offsets of the messages kept do not change. A log may keep some
+     * messages below offset, e.g. the rest of a file, so the start offset may be lower than offset
+     */
+    void truncateBefore(long offset);
+
+    /**
+     * drops the oldest messages until the messages kept take at most maxBytes. A log may keep more, e.g. a
+     * file it cannot drop partly
+     */
+    void truncateToBytes(long maxBytes);
+
+    /**
+     * drops the messages from endOffset on, so that endOffset is the offset the next appended message will
+     * get, as a follower does with the messages its leader does not have. Offsets of the messages kept do not
+     * change, and a log holding no message below endOffset is left empty, starting at endOffset
+     */
+    void truncateTo(long endOffset);
+
+    /**
+     * drops the message at offset, leaving a gap. Offsets of the messages kept do not change
+     * @throws UnsupportedOperationException if the log cannot drop single messages
+     */
+    void remove(long offset);
+
+    /**
+     * forces the messages appended to the disk, for a log that keeps them in files
+     */
+    default void flush() {
+    }
+
+    /**
+     * flushes the log and releases the files it keeps its messages in. The log is not appended to after
+     */
+    default void close() {
+    }
+}
\ No newline at end of file
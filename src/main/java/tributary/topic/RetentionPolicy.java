@@ -0,0 +1,49 @@
+package tributary.topic;
+
+/**
+ * How long the events of a topic are kept. An event is dropped once it is older than maxAgeMs, or once
+ * keeping it would keep more than maxBytes or maxCount events in its partition, oldest events first.
+ * A limit of 0 is no limit. A compacting policy also drops every event superseded by a later event
+ * with the same id.
+ */
+public class RetentionPolicy {
+    public static final RetentionPolicy NONE = new RetentionPolicy(0, 0, 0, false);
+
+    private final long maxAgeMs;
+    private final long maxBytes;
+    private final long maxCount;
+    private final boolean compact;
+
+    /**
+     * @throws IllegalArgumentException if a limit is negative
+     */
+    public RetentionPolicy(long maxAgeMs, long maxBytes, long maxCount, boolean compact) {
+        if (maxAgeMs < 0 || maxBytes < 0 || maxCount < 0)
+            throw new IllegalArgumentException("Retention limits must not be negative");
+
+        this.maxAgeMs = maxAgeMs;
+        this.maxBytes = maxBytes;
+        this.maxCount = maxCount;
+        this.compact = compact;
+    }
+
+    public long getMaxAgeMs() {
+        return maxAgeMs;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public long getMaxCount() {
+        return maxCount;
+    }
+
+    public boolean isCompact() {
+        return compact;
+    }
+
+    boolean retainsAll() {
+        return maxAgeMs == 0 && maxBytes == 0 && maxCount == 0 && !compact;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,97 @@
+package tributary.topic;
+
+import tributary.producer.message.Message;
+
+import java.util.Arrays;
+
+/**
+ * Sparse index from creation time to offset of a partition log. Every interval offsets an entry maps an
+ * offset to the latest creation time of the messages up to it. Messages are appended in about the order
+ * they are created, so the times only grow and a lookup is a binary search followed by a scan of at most
+ * about interval messages.
+ */
+public class TimeIndex {
+    public static final int DEFAULT_INTERVAL = 1024;
+
+    private final int interval;
+    // entries are written before the entry count is published, so readers never see a partial entry
+    private volatile long[] offsets = new long[16];
+    private volatile long[] times = new long[16];
+    private volatile int entries = 0;
+
+    // only accessed by the appending thread
+    private long latestTime = Long.MIN_VALUE;
+    private long nextOffset = 0;
+
+    public TimeIndex() {
+        this(DEFAULT_INTERVAL);
+    }
+
+    public TimeIndex(int interval) {
+        this.interval = interval;
+    }
+
+    /**
+     * records the message appended at offset. Called by the appending thread in offset order, for every
+     * message or, when recovering a log stored on disk, with the entries it stored, each holding the latest
+     * time of the messages up to its offset
+     */
+    public void add(long offset, long timeCreated) {
+        latestTime = Math.max(latestTime, timeCreated);
+        if (offset < nextOffset) return;
+
+        int n = entries;
+        if (n == offsets.length) {
+            offsets = Arrays.copyOf(offsets, n * 2);
+            times = Arrays.copyOf(times, n * 2);
+        }
+        offsets[n] = offset;
+        times[n] = latestTime;
+        entries = n + 1;
+        nextOffset = offset + interval;
+    }
+
+    /**
+     * drops the entries from endOffset on, once log was truncated to it, and takes the latest time from the
+     * entry left and the messages of log after it. Called by the appending thread
+     */
+    public <T> void truncateTo(PartitionLog<T> log, long endOffset) {
+        int n = entries;
+        while (n > 0 && offsets[n - 1] >= endOffset) n--;
+        entries = n;
+
+        latestTime = n == 0 ? Long.MIN_VALUE : times[n - 1];
+        nextOffset = n == 0 ? 0 : offsets[n - 1] + interval;
+        for (long offset = n == 0 ? log.getStartOffset() : offsets[n - 1] + 1; offset < endOffset; offset++) {
+            Message<T> message = log.read(offset);
+            if (message != null) latestTime = Math.max(latestTime, message.getTimeCreated());
+        }
+    }
+
+    /**
+     * @return the first offset of log kept whose message was created at or after timeCreated, or the end
+     * offset if there is none
+     */
+    public <T> long offsetForTime(PartitionLog<T> log, long timeCreated) {
+        int n = entries;
+        long[] offsets = this.offsets;
+        long[] times = this.times;
+
+        // the last entry created before timeCreated, every message up to it was created before too
+        int low = 0;
+        int high = n - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (times[mid] < timeCreated) low = mid + 1;
+            else high = mid - 1;
+        }
+
+        long end = log.getEndOffset();
+        long offset = Math.max(high < 0 ? 0 : offsets[high] + 1, log.getStartOffset());
+        for (; offset < end; offset++) {
+            Message<T> message = log.read(offset);
+            if (message != null && message.getTimeCreated() >= timeCreated) break;
+        }
+        return Math.min(offset, end);
+    }
+}
\ No newline at end of file
@@ -1,58 +1,253 @@
 package tributary.topic;
 
+import org.json.JSONObject;
 import tributary.Rebalance;
+import tributary.compression.CompressionCodec;
 import tributary.consumer.Consumer;
 import tributary.consumer.ConsumerGroup;
+import tributary.metrics.Counter;
+import tributary.metrics.Histogram;
+import tributary.metrics.MetricsRegistry;
 import tributary.producer.message.Message;
+import tributary.producer.partitioner.Partitioner;
+import tributary.producer.partitioner.RandomPartitioner;
+import tributary.serde.Serde;
+import tributary.serde.Serdes;
+import tributary.storage.DiskStorage;
 
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
-import java.util.Random;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class Topic<T> {
-    private final HashMap<String, Partition<T>> partitions = new HashMap<>();
-    private final HashMap<String, ConsumerGroup<T>> consumerGroups = new HashMap<>();
+    private final Map<String, Partition<T>> partitions = new ConcurrentHashMap<>();
+    private final Map<String, ConsumerGroup<T>> consumerGroups = new ConcurrentHashMap<>();
+    // the partitions in creation order, replaced only when a partition is created so routing never copies
+    private volatile Partition<T>[] partitionArray = newPartitionArray(0);
+    private final Partitioner defaultPartitioner = new RandomPartitioner();
+    private final AppendNotifier appendNotifier = new AppendNotifier();
+    private volatile RetentionPolicy retention = RetentionPolicy.NONE;
+    private volatile CompressionCodec compression;
     private final String topicId;
+    private final Serde<T> serde;
+    private final DiskStorage storage;
+    private final MetricsRegistry metrics;
+    private final Counter rebalances;
+    private final Histogram rebalanceDuration;
 
     public Topic(String topicId) {
+        this(topicId, null);
+    }
+
+    public Topic(String topicId, DiskStorage storage) {
+        this(topicId, storage, new MetricsRegistry());
+    }
+
+    /**
+     * a topic of JSONObject events
+     * @param storage where the partitions of this topic are stored, or null to keep them in memory
+     * @param metrics where this topic and its partitions record their metrics, under topic.topicId
+     */
+    @SuppressWarnings("unchecked")
+    public Topic(String topicId, DiskStorage storage, MetricsRegistry metrics) {
+        this(topicId, storage, metrics, (Serde<T>) Serdes.JSON);
+    }
+
+    /**
+     * @param serde serialises the values of the events of this topic into their payload
+     */
+    public Topic(String topicId, DiskStorage storage, MetricsRegistry metrics, Serde<T> serde) {
         this.topicId = topicId;
+        this.serde = serde;
+        this.storage = storage;
+        this.metrics = metrics;
+        this.rebalances = metrics.counter("topic." + topicId + ".rebalances");
+        this.rebalanceDuration = metrics.histogram("topic." + topicId + ".rebalance.nanos");
+        if (storage != null) storage.createTopic(topicId, serde.getName());
     }
 
     public void createPartition(String partitionId) {
+        createPartition(partitionId, null);
+    }
+
+    /**
+     * @param events the events of the partition, e.g. restored from a snapshot, or null for a new log,
+     * stored if this topic is stored
+     */
+    public synchronized void createPartition(String partitionId, PartitionLog<T> events) {
         if (partitionExists(partitionId)) {
             throw new IllegalArgumentException("Partition with" + partitionId + " already exists");
         }
 
-        partitions.put(partitionId, new Partition<>(partitionId));
+        if (events == null) {
+            if (storage != null) events = storage.openLog(topicId, partitionId);
+            else events = compression == null ? new EventLog<>() : new CompressedLog<>(compression);
+        }
+        Partition<T> partition = new Partition<>(partitionId, events, metrics, topicId, appendNotifier);
+        partitions.put(partitionId, partition);
+        consumerGroups.values().forEach(x -> registerLag(x, partition));
+
+        Partition<T>[] current = Arrays.copyOf(partitionArray, partitionArray.length + 1);
+        current[current.length - 1] = partition;
+        partitionArray = current;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <T> Partition<T>[] newPartitionArray(int length) {
+        return (Partition<T>[]) new Partition[length];
+    }
+
+    public ConsumerGroup<T> addConsumerGroup(String consumerGroupId, Rebalance rebalance) {
+        ConsumerGroup<T> consumerGroup = new ConsumerGroup<>(rebalance, consumerGroupId);
+        consumerGroups.put(consumerGroupId, consumerGroup);
+        partitions.values().forEach(x -> registerLag(consumerGroup, x));
+        return consumerGroup;
+    }
+
+    private void registerLag(ConsumerGroup<T> consumerGroup, Partition<T> partition) {
+        String partitionId = partition.getPartitionId();
+        metrics.gauge("topic." + topicId + ".group." + consumerGroup.getConsumerGroupId() + ".partition."
+                + partitionId + ".lag", () -> partition.getEndOffset()
+                - Math.max(consumerGroup.getOffset(partitionId), partition.getStartOffset()));
+    }
+
+    public long addEvent(Message<T> message) {
+        return addEvent(message, defaultPartitioner);
     }
 
-    public void addConsumerGroup(String consumerGroupId, Rebalance rebalance) {
-        consumerGroups.put(consumerGroupId, new ConsumerGroup<>(rebalance, consumerGroupId));
+    /**
+     * @return the offset the message was appended at, in the partition its key names once routed
+     */
+    public long addEvent(Message<T> message, Partitioner partitioner) {
+        return route(message, partitioner).addEvent(message);
     }
 
-    public void addEvent(Message message) {
+    /**
+     * picks the partition a message is to be added to, using partitioner and setting the key of the
+     * message if it has none
+     * @throws IllegalArgumentException if the key of the message is not a partition of this topic
+     */
+    public Partition<T> route(Message<T> message, Partitioner partitioner) {
         Partition<T> partition;
 
         if (message.getKey() != null)
             partition = partitions.get(message.getKey());
         else {
-            Random rndm = new Random();
-            String key = partitions
-                    .keySet()
-                    .toArray(new String[0])
-                    [rndm.nextInt(partitions.keySet().size())];
-            partition = partitions.get(key);
-            message.setKey(key);
+            Partition<T>[] current = partitionArray;
+            partition = current.length == 0 ? null : current[partitioner.partition(message, current.length)];
+            if (partition != null) message.setKey(partition.getPartitionId());
         }
 
         if (partition == null)
             throw new IllegalArgumentException("Partitions does not exist");
 
-        partition.addEvent(message);
+        return partition;
+    }
+
+    public String getTopicId() {
+        return topicId;
+    }
+
+    public Serde<T> getSerde() {
+        return serde;
+    }
+
+    /**
+     * @return the payload of value, its JSON serialised as it is for a JSONObject topic and read by the
+     * serde of any other topic
+     * @throws IllegalArgumentException if the serde of this topic cannot read the JSON of value
+     */
+    public byte[] serialize(JSONObject value) {
+        String json = value.toString();
+        return serde == Serdes.JSON ? json.getBytes(StandardCharsets.UTF_8) : serde.serialize(serde.parse(json));
+    }
+
+    /**
+     * @return whether the partitions of this topic are stored on disk
+     */
+    public boolean isStored() {
+        return storage != null;
+    }
+
+    public Map<String, Partition<T>> getPartitions() {
+        return partitions;
+    }
+
+    /**
+     * @return signalled after an event is appended to any partition of this topic
+     */
+    public AppendNotifier getAppendNotifier() {
+        return appendNotifier;
+    }
+
+    /**
+     * @throws IllegalArgumentException if retention compacts and this topic is stored on disk or compressed,
+     * where events can only be dropped a segment or batch at a time
+     */
+    public synchronized void setRetention(RetentionPolicy retention) {
+        if (retention.isCompact() && storage != null)
+            throw new IllegalArgumentException("Topic " + topicId + " is stored on disk and cannot be compacted");
+        if (retention.isCompact() && compression != null)
+            throw new IllegalArgumentException("Topic " + topicId + " is compressed and cannot be compacted");
+
+        this.retention = retention;
+    }
+
+    public RetentionPolicy getRetention() {
+        return retention;
+    }
+
+    /**
+     * sets the codec the events of the partitions of this topic are compressed with, null for none
+     * @throws IllegalArgumentException if this topic already has partitions, is stored on disk or compacts
+     */
+    public synchronized void setCompression(CompressionCodec compression) {
+        if (!partitions.isEmpty())
+            throw new IllegalArgumentException("Topic " + topicId + " already has partitions");
+        if (compression != null && storage != null)
+            throw new IllegalArgumentException("Topic " + topicId + " is stored on disk and cannot be compressed");
+        if (compression != null && retention.isCompact())
+            throw new IllegalArgumentException("Topic " + topicId + " is compacted and cannot be compressed");
+
+        this.compression = compression;
+    }
+
+    /**
+     * @return the codec the events of this topic are compressed with, or null if they are not
+     */
+    public CompressionCodec getCompression() {
+        return compression;
+    }
+
+    /**
+     * drops the events of every partition the retention policy of this topic does not keep
+     */
+    public void clean() {
+        RetentionPolicy current = retention;
+        if (current.retainsAll()) return;
+        partitions.values().forEach(x -> x.clean(current));
+    }
+
+    /**
+     * forces the events appended to the partitions of this topic to the disk, if it is stored on disk
+     */
+    public void flush() {
+        partitions.values().forEach(Partition::flush);
+    }
+
+    /**
+     * flushes the partitions of this topic and releases their files
+     */
+    public void close() {
+        partitions.values().forEach(Partition::close);
     }
 
-    public HashMap<String, ConsumerGroup<T>> getConsumerGroups() {
+    public Map<String, ConsumerGroup<T>> getConsumerGroups() {
         return consumerGroups;
     }
 
@@ -75,48 +270,119 @@ public class Topic<T> {
         System.out.println("");
     }
 
-    public void rebalance() {
-        // Reset all partition assigns
-        partitions.values().forEach(Partition::resetConsumers);
-
-        consumerGroups.values().forEach(x -> {
-            x.resetPartitionAssigns();
-
-            List<Consumer<T>> consumerList = new ArrayList<>(x.getConsumers().values());
-            List<Partition<T>> partitionList = new ArrayList<>(partitions.values());
-
-            int numPartitions = partitions.size();
-            int numConsumers = x.getConsumers().size();
-
-            if (x.getRebalance() == Rebalance.RANGE) {
-                double numAlloc = Math.floor((double) numPartitions / numConsumers);
-
-                int cIndex = 0;
-                int pIndex = 0;
-                int numAlloced = 0;
-                while (pIndex < numPartitions) {
-                    Partition<T> partition = partitionList.get(pIndex);
-                    Consumer<T> consumer = consumerList.get(cIndex);
-                    partition.addConsumer(consumer);
-                    consumer.assignPartition(partition);
-                    numAlloced++;
-                    pIndex++;
-                    cIndex += numAlloced == numAlloc ? 1 : 0;
-                    if (cIndex > numConsumers - 1) cIndex = 0;
-                }
-            } else if (x.getRebalance() == Rebalance.ROUNDROBIN) {
-                for (int pIndex = 0, cIndex = 0; pIndex < numPartitions; pIndex++, cIndex++) {
-                    if (cIndex == numConsumers) cIndex = 0;
-                    Partition<T> partition = partitionList.get(pIndex);
-                    Consumer<T> consumer = consumerList.get(cIndex);
-                    partition.addConsumer(consumer);
-                    consumer.assignPartition(partition);
-                }
+    public synchronized void rebalance() {
+        consumerGroups.values().forEach(this::rebalance);
+    }
+
+    /**
+     * rebalances only the partitions of one consumer group, e.g. after one of its consumers was added
+     * or deleted
+     */
+    public synchronized void rebalance(ConsumerGroup<T> x) {
+        long start = System.nanoTime();
+        assign(x);
+        rebalanceDuration.record(System.nanoTime() - start);
+        rebalances.increment();
+    }
+
+    private void assign(ConsumerGroup<T> x) {
+        if (x.getRebalance() == Rebalance.STICKY) {
+            rebalanceSticky(x);
+            return;
+        }
+
+        // Reset all partition assigns of this group
+        partitions.values().forEach(partition -> partition.removeConsumers(x));
+        x.resetPartitionAssigns();
+
+        List<Consumer<T>> consumerList = new ArrayList<>(x.getConsumers().values());
+        List<Partition<T>> partitionList = new ArrayList<>(partitions.values());
+
+        int numPartitions = partitions.size();
+        int numConsumers = x.getConsumers().size();
+        if (numConsumers == 0) return;
+
+        if (x.getRebalance() == Rebalance.RANGE) {
+            double numAlloc = Math.floor((double) numPartitions / numConsumers);
+
+            int cIndex = 0;
+            int pIndex = 0;
+            int numAlloced = 0;
+            while (pIndex < numPartitions) {
+                Partition<T> partition = partitionList.get(pIndex);
+                Consumer<T> consumer = consumerList.get(cIndex);
+                partition.addConsumer(consumer);
+                consumer.assignPartition(partition);
+                numAlloced++;
+                pIndex++;
+                cIndex += numAlloced == numAlloc ? 1 : 0;
+                if (cIndex > numConsumers - 1) cIndex = 0;
+            }
+        } else if (x.getRebalance() == Rebalance.ROUNDROBIN) {
+            for (int pIndex = 0, cIndex = 0; pIndex < numPartitions; pIndex++, cIndex++) {
+                if (cIndex == numConsumers) cIndex = 0;
+                Partition<T> partition = partitionList.get(pIndex);
+                Consumer<T> consumer = consumerList.get(cIndex);
+                partition.addConsumer(consumer);
+                consumer.assignPartition(partition);
+            }
+        }
+    }
+
+    /**
+     * keeps every partition with the consumer it is assigned to, unless that consumer was deleted or holds
+     * more than its share. Only the partitions freed that way, and new partitions, are moved, to the
+     * consumers holding less than their share. Consumers that keep their partitions are not interrupted.
+     */
+    private void rebalanceSticky(ConsumerGroup<T> x) {
+        List<Consumer<T>> consumerList = new ArrayList<>(x.getConsumers().values());
+        List<Partition<T>> unassigned = new ArrayList<>();
+
+        // release partitions of deleted consumers
+        for (Partition<T> partition : partitions.values()) {
+            partition.removeConsumersIf(x, consumer -> !x.containsId(consumer.getConsumerId()));
+            if (!partition.hasConsumer(x)) unassigned.add(partition);
+        }
+        if (consumerList.isEmpty()) return;
+
+        // the consumers holding the most partitions get the larger shares, so the fewest partitions move
+        consumerList.sort(Comparator.comparingInt((Consumer<T> c) -> c.getPartitions().size()).reversed()
+                .thenComparing(Consumer::getConsumerId));
+        int share = partitions.size() / consumerList.size();
+        int larger = partitions.size() % consumerList.size();
+
+        for (int i = 0; i < consumerList.size(); i++) {
+            Consumer<T> consumer = consumerList.get(i);
+            int quota = share + (i < larger ? 1 : 0);
+            List<Partition<T>> assigned = new ArrayList<>(consumer.getPartitions().values());
+            for (int j = quota; j < assigned.size(); j++) {
+                Partition<T> partition = assigned.get(j);
+                consumer.unassignPartition(partition.getPartitionId());
+                partition.removeConsumer(consumer.getConsumerId());
+                unassigned.add(partition);
+            }
+        }
+
+        int next = 0;
+        for (int i = 0; i < consumerList.size() && next < unassigned.size(); i++) {
+            Consumer<T> consumer = consumerList.get(i);
+            int quota = share + (i < larger ? 1 : 0);
+            while (consumer.getPartitions().size() < quota && next < unassigned.size()) {
+                Partition<T> partition = unassigned.get(next++);
+                partition.addConsumer(consumer);
+                consumer.assignPartition(partition);
             }
-        });
+        }
+    }
+
+    public List<Message<T>> consume(String consumerId, String partitionId) {
+        return consume(consumerId, partitionId, 1);
     }
 
-    public void consume(String consumerId, String partitionId) {
+    /**
+     * @return up to amount events, fewer if the partition has no more events for the consumer
+     */
+    public List<Message<T>> consume(String consumerId, String partitionId, int amount) {
         if (!partitionExists(partitionId))
             throw new IllegalArgumentException("Partition " + partitionId + " does not exist");
 
@@ -126,6 +392,12 @@ public class Topic<T> {
             throw new IllegalArgumentException("Partition " + partitionId + " is not assigned to consumer "
                     + consumerId);
 
-        partitions.get(partitionId).consumeNext(consumerId);
+        List<Message<T>> events = new ArrayList<>();
+        for (int i = 0; i < amount; i++) {
+            Message<T> event = partition.consumeNext(consumerId);
+            if (event == null) break;
+            events.add(event);
+        }
+        return events;
     }
 }
@@ -1,5 +1,231 @@
 package tributary;
 
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import tributary.consumer.ConsumerGroup;
+import tributary.inputs.EventInput;
+import tributary.producer.BatchProducer;
+import tributary.producer.message.Message;
+import tributary.sink.EventSink;
+import tributary.sink.NoOpSink;
+import tributary.topic.Partition;
+import tributary.topic.Topic;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
 public class TributaryTest {
-    // Feel free to delete/change this file, this is just here to give directory structure.
+    private static final int WRITERS = 8;
+    private static final int EVENTS_PER_WRITER = 20_000;
+    private static final int PARTITIONS = 4;
+    private static final int CONSUMERS = 3;
+    // threads polling each consumer at once, so that they race to claim the same offsets
+    private static final int THREADS_PER_CONSUMER = 3;
+
+    private Tributary tributary;
+
+    @BeforeEach
+    public void setUp() {
+        tributary = new Tributary();
+        tributary.setEventSink(new NoOpSink());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        tributary.close();
+    }
+
+    @Test
+    public void concurrentProduceAndConsumeAppendsAndConsumesEveryEventOnce() throws Exception {
+        tributary.createTopic("topic", Integer.class);
+        for (int i = 0; i < PARTITIONS; i++) tributary.createPartition("topic", "partition" + i);
+        tributary.createProducer("producer", Integer.class, Allocation.ROUNDROBIN);
+        tributary.createProducer("batches", Integer.class, Allocation.RANDOM);
+        tributary.createConsumerGroup("group", "topic", Rebalance.ROUNDROBIN);
+        for (int i = 0; i < CONSUMERS; i++) tributary.createConsumer("group", "consumer" + i);
+
+        int total = WRITERS * EVENTS_PER_WRITER;
+        Map<String, AtomicInteger> consumed = new ConcurrentHashMap<>();
+        AtomicInteger consumedCount = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+
+        for (int i = 0; i < WRITERS; i++) {
+            int writer = i;
+            threads.add(new Thread(() -> {
+                await(start);
+                // half the writers produce one event at a time, half in batches
+                if (writer % 2 == 0) {
+                    for (int j = 0; j < EVENTS_PER_WRITER; j++) {
+                        tributary.produceValue("producer", "topic", j, id(writer, j), null);
+                    }
+                    return;
+                }
+                List<EventInput> batch = new ArrayList<>();
+                for (int j = 0; j < EVENTS_PER_WRITER; j++) {
+                    batch.add(new EventInput("batches", "topic", String.valueOf(j), id(writer, j), null));
+                    if (batch.size() == 100) {
+                        tributary.produceEvents(batch);
+                        batch = new ArrayList<>();
+                    }
+                }
+                if (!batch.isEmpty()) tributary.produceEvents(batch);
+            }));
+        }
+        for (int i = 0; i < CONSUMERS * THREADS_PER_CONSUMER; i++) {
+            String consumerId = "consumer" + i % CONSUMERS;
+            threads.add(new Thread(() -> {
+                await(start);
+                long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+                while (consumedCount.get() < total && System.nanoTime() < deadline) {
+                    List<Message<Integer>> records = tributary.poll(consumerId, 50, Long.MAX_VALUE);
+                    for (Message<Integer> record : records) {
+                        consumed.computeIfAbsent(record.getId(), x -> new AtomicInteger()).incrementAndGet();
+                    }
+                    consumedCount.addAndGet(records.size());
+                }
+            }));
+        }
+
+        threads.forEach(Thread::start);
+        start.countDown();
+        for (Thread thread : threads) thread.join();
+
+        @SuppressWarnings("unchecked")
+        Topic<Integer> topic = (Topic<Integer>) tributary.getTopics().get("topic");
+        Set<String> appended = new HashSet<>();
+        long appendedCount = 0;
+        for (Partition<Integer> partition : topic.getPartitions().values()) {
+            for (long offset = 0; offset < partition.getEndOffset(); offset++) {
+                appended.add(partition.read(offset).getId());
+                appendedCount++;
+            }
+        }
+        assertEquals(total, appendedCount);
+        assertEquals(total, appended.size());
+
+        assertEquals(total, consumedCount.get());
+        assertEquals(total, consumed.size());
+        consumed.forEach((id, count) -> assertEquals(1, count.get(), id + " was consumed " + count + " times"));
+        for (int writer = 0; writer < WRITERS; writer++) {
+            for (int j = 0; j < EVENTS_PER_WRITER; j++) assertTrue(consumed.containsKey(id(writer, j)));
+        }
+    }
+
+    @Test
+    public void consumerThatStopsHeartbeatingIsExpiredAndItsPartitionsReassigned() throws Exception {
+        tributary.createTopic("topic", Integer.class);
+        tributary.createPartition("topic", "partition0");
+        tributary.createPartition("topic", "partition1");
+        tributary.createConsumerGroup("group", "topic", Rebalance.ROUNDROBIN);
+        tributary.joinGroup("group", "steady", 300);
+        tributary.joinGroup("group", "crashed", 300);
+
+        @SuppressWarnings("unchecked")
+        Topic<Integer> topic = (Topic<Integer>) tributary.getTopics().get("topic");
+        ConsumerGroup<Integer> group = topic.getConsumerGroups().get("group");
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (group.getConsumers().containsKey("crashed") && System.nanoTime() < deadline) {
+            tributary.heartbeat("steady");
+            Thread.sleep(50);
+        }
+
+        assertFalse(group.getConsumers().containsKey("crashed"));
+        assertThrows(IllegalArgumentException.class, () -> tributary.poll("crashed", 1, Long.MAX_VALUE));
+        assertEquals(Set.of("partition0", "partition1"), group.getConsumers().get("steady").getPartitions().keySet());
+    }
+
+    @Test
+    public void batchedSendThatFailsToAppendIsNotAppendedWhenSentAgain() {
+        tributary.createTopic("topic", Integer.class);
+        tributary.createPartition("topic", "partition0");
+        tributary.createProducer("producer", Integer.class, Allocation.MANUAL);
+        @SuppressWarnings("unchecked")
+        Topic<Integer> topic = (Topic<Integer>) tributary.getTopics().get("topic");
+        Partition<Integer> partition = topic.getPartitions().get("partition0");
+
+        try (BatchProducer<Integer> producer = tributary.createBatchProducer("producer", "topic", 2, 60_000)) {
+            partition.follow();
+            producer.sendValue(0, "event0", "partition0");
+            assertThrows(IllegalArgumentException.class, () -> producer.sendValue(1, "event1", "partition0"));
+            assertThrows(IllegalArgumentException.class, () -> producer.sendValue(1, "event1", "partition0"));
+
+            partition.unfollow();
+            producer.sendValue(1, "event1", "partition0");
+        }
+        assertEquals(2, partition.getEndOffset());
+        assertEquals("event0", partition.read(0).getId());
+        assertEquals("event1", partition.read(1).getId());
+    }
+
+    @Test
+    public void batchProducersPollsAndSubscriptionsReportToTheSink() throws Exception {
+        Set<String> produced = ConcurrentHashMap.newKeySet();
+        List<String> consumed = Collections.synchronizedList(new ArrayList<>());
+        tributary.setEventSink(new EventSink() {
+            @Override
+            public void produced(String topicId, Message<?> message) {
+                produced.add(message.getId());
+            }
+
+            @Override
+            public void consumed(String consumerId, Message<?> message) {
+                consumed.add(consumerId + ":" + message.getId());
+            }
+        });
+        tributary.createTopic("topic", Integer.class);
+        tributary.createPartition("topic", "partition0");
+        tributary.createProducer("producer", Integer.class, Allocation.MANUAL);
+        tributary.createConsumerGroup("polled", "topic", Rebalance.ROUNDROBIN);
+        tributary.createConsumer("polled", "poller");
+        tributary.createConsumerGroup("subscribed", "topic", Rebalance.ROUNDROBIN);
+        tributary.createConsumer("subscribed", "subscriber");
+
+        try (BatchProducer<Integer> producer = tributary.createBatchProducer("producer", "topic", 2, 60_000)) {
+            for (int i = 0; i < 3; i++) producer.sendValue(i, "event" + i, "partition0");
+            // the full batch was appended and reported, the lingering one not yet
+            assertEquals(Set.of("event0", "event1"), produced);
+        }
+        assertEquals(Set.of("event0", "event1", "event2"), produced);
+
+        assertEquals(3, tributary.<Integer>poll("poller", 10, Long.MAX_VALUE, 1000).size());
+        CountDownLatch delivered = new CountDownLatch(3);
+        tributary.<Integer>subscribe("subscriber", 10, Long.MAX_VALUE, x -> x.forEach(y -> delivered.countDown()));
+        assertTrue(delivered.await(10, TimeUnit.SECONDS));
+        tributary.unsubscribe("subscriber");
+
+        Set<String> expected = new HashSet<>();
+        for (int i = 0; i < 3; i++) {
+            expected.add("poller:event" + i);
+            expected.add("subscriber:event" + i);
+        }
+        assertEquals(expected, new HashSet<>(consumed));
+        assertEquals(6, consumed.size());
+    }
+
+    private static String id(int writer, int event) {
+        return writer + "-" + event;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,83 @@
+package tributary.consumer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class GroupCoordinatorTest {
+    private final List<List<String>> expired = new ArrayList<>();
+    private final List<Set<String>> rebalanced = new ArrayList<>();
+    private final GroupCoordinator coordinator = new GroupCoordinator((consumerIds, groupIds) -> {
+        expired.add(consumerIds);
+        rebalanced.add(new HashSet<>(groupIds));
+    });
+
+    @Test
+    public void rebalancesEachGroupOncePerTickHoweverManyConsumersJoin() {
+        for (int i = 0; i < 1000; i++) coordinator.join("consumer" + i, "group" + i % 2, 10_000);
+        coordinator.tick();
+        coordinator.tick();
+
+        assertEquals(1, rebalanced.size());
+        assertEquals(Set.of("group0", "group1"), rebalanced.get(0));
+        assertEquals(List.of(), expired.get(0));
+        assertEquals(1000, coordinator.getSessionCount());
+    }
+
+    @Test
+    public void expiresConsumersThatStopHeartbeating() throws InterruptedException {
+        coordinator.join("steady", "group", 300);
+        coordinator.join("crashed", "group", 300);
+        coordinator.tick();
+
+        long deadline = System.nanoTime() + 3_000_000_000L;
+        while (coordinator.getSessionCount() > 1 && System.nanoTime() < deadline) {
+            assertTrue(coordinator.heartbeat("steady"));
+            Thread.sleep(GroupCoordinator.TICK_MS);
+            coordinator.tick();
+        }
+
+        assertEquals(1, coordinator.getSessionCount());
+        assertFalse(coordinator.heartbeat("crashed"));
+        assertTrue(coordinator.heartbeat("steady"));
+        assertEquals(List.of("crashed"), expired.get(expired.size() - 1));
+        assertEquals(Set.of("group"), rebalanced.get(rebalanced.size() - 1));
+    }
+
+    @Test
+    public void leavingRebalancesWithoutExpiring() {
+        coordinator.join("consumer", "group", 10_000);
+        coordinator.tick();
+        coordinator.leave("consumer", "group");
+        coordinator.tick();
+
+        assertEquals(2, rebalanced.size());
+        assertEquals(List.of(), expired.get(1));
+        assertFalse(coordinator.heartbeat("consumer"));
+    }
+
+    @Test
+    public void removingNeitherRebalancesNorExpires() throws InterruptedException {
+        coordinator.join("consumer", "group", 100);
+        coordinator.tick();
+        coordinator.remove("consumer");
+        Thread.sleep(3 * GroupCoordinator.TICK_MS);
+        coordinator.tick();
+
+        assertEquals(1, rebalanced.size());
+        assertEquals(0, coordinator.getSessionCount());
+    }
+
+    @Test
+    public void rejectsANonPositiveSessionTimeout() {
+        assertThrows(IllegalArgumentException.class, () -> coordinator.join("consumer", "group", 0));
+    }
+}
\ No newline at end of file
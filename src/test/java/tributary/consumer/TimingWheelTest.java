@@ -0,0 +1,84 @@
+package tributary.consumer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TimingWheelTest {
+    private static final long TICK = 100;
+
+    @Test
+    public void reportsAnElementOnceItsDeadlinePassedAndNotBefore() {
+        TimingWheel<String> wheel = new TimingWheel<>(TICK, 8, 0);
+        wheel.add("a", 250);
+
+        assertEquals(List.of(), advance(wheel, 249));
+        // late by at most a tick
+        assertEquals(List.of("a"), advance(wheel, 300));
+        assertEquals(List.of(), advance(wheel, 10_000));
+    }
+
+    @Test
+    public void keepsDeadlinesMoreThanARotationAway() {
+        TimingWheel<String> wheel = new TimingWheel<>(TICK, 8, 0);
+        // the slot of tick 20 is also passed at ticks 4 and 12
+        wheel.add("far", 2000);
+        wheel.add("near", 400);
+
+        assertEquals(List.of("near"), advance(wheel, 500));
+        assertEquals(List.of(), advance(wheel, 1300));
+        assertEquals(List.of(), advance(wheel, 1999));
+        assertEquals(List.of("far"), advance(wheel, 2000));
+    }
+
+    @Test
+    public void reportsEverythingDueAfterALongPause() {
+        TimingWheel<Integer> wheel = new TimingWheel<>(TICK, 8, 0);
+        for (int i = 0; i < 100; i++) wheel.add(i, i * 50L);
+
+        List<Integer> expired = advance(wheel, 50 * 60);
+        assertEquals(61, expired.size());
+        for (int i = 0; i <= 60; i++) assertTrue(expired.contains(i));
+
+        List<Integer> rest = advance(wheel, 50 * 100);
+        assertEquals(39, rest.size());
+    }
+
+    @Test
+    public void deadlinesAlreadyPassedAreReportedWithinATick() {
+        TimingWheel<String> wheel = new TimingWheel<>(TICK, 8, 0);
+        advance(wheel, 1000);
+        wheel.add("late", 200);
+        assertEquals(List.of("late"), advance(wheel, 1000 + TICK));
+    }
+
+    @Test
+    public void elementsAddedWhileExpiringAreKept() {
+        TimingWheel<String> wheel = new TimingWheel<>(TICK, 8, 0);
+        wheel.add("first", 100);
+        List<String> expired = new ArrayList<>();
+        wheel.advance(100, x -> {
+            expired.add(x);
+            wheel.add("again", 600);
+        });
+        assertEquals(List.of("first"), expired);
+        assertEquals(List.of(), advance(wheel, 500));
+        assertEquals(List.of("again"), advance(wheel, 600));
+    }
+
+    @Test
+    public void rejectsASlotCountThatIsNotAPowerOfTwo() {
+        assertThrows(IllegalArgumentException.class, () -> new TimingWheel<String>(TICK, 6, 0));
+    }
+
+    private static <E> List<E> advance(TimingWheel<E> wheel, long now) {
+        List<E> expired = new ArrayList<>();
+        wheel.advance(now, expired::add);
+        return expired;
+    }
+}
\ No newline at end of file
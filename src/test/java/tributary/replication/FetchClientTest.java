@@ -0,0 +1,114 @@
+package tributary.replication;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import tributary.Allocation;
+import tributary.Tributary;
+import tributary.producer.message.Message;
+import tributary.sink.NoOpSink;
+import tributary.storage.DiskStorage;
+import tributary.storage.RecordFrame;
+import tributary.topic.Partition;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FetchClientTest {
+    private static final int SEGMENT_BYTES = 4096;
+    private static final int EVENTS = 200;
+    private static final int MAX_BYTES = 1000;
+
+    @TempDir
+    Path directory;
+
+    private Tributary tributary;
+    private Partition<String> partition;
+    private FetchClient client;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        tributary = new Tributary(new DiskStorage(directory, SEGMENT_BYTES, 512));
+        tributary.setEventSink(new NoOpSink());
+        tributary.createTopic("topic", String.class);
+        tributary.createPartition("topic", "partition");
+        tributary.createProducer("producer", String.class, Allocation.MANUAL);
+        // values of different lengths, so that records do not line up with segment or fetch boundaries
+        for (int i = 0; i < EVENTS; i++) {
+            tributary.produceValue("producer", "topic", "value" + i + "x".repeat(i % 50), "event" + i, "partition");
+        }
+        partition = partition(tributary);
+        client = new FetchClient(new InetSocketAddress("localhost", tributary.startReplication(0)));
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        client.close();
+        tributary.close();
+    }
+
+    @Test
+    public void fetchesFromTheSegmentFilesWhatThePartitionReads() throws IOException {
+        assertTrue(countSegments() > 1);
+        // the records are sent from the segment files rather than read and encoded again
+        assertNotNull(partition.fileRegion(0, EVENTS, MAX_BYTES));
+
+        long offset = 0;
+        int fetches = 0;
+        while (offset < EVENTS) {
+            FetchClient.Batch<String> batch = client.fetch("topic", "partition", offset, MAX_BYTES, 0);
+            assertEquals(offset, batch.getBaseOffset());
+            assertEquals(EVENTS, batch.getHighWatermark());
+            assertFalse(batch.getMessages().isEmpty());
+
+            // cut at maxBytes between records, never within one
+            long bytes = 0;
+            for (Message<String> message : batch.getMessages()) bytes += RecordFrame.frameBytes(message.toBytes());
+            assertTrue(bytes <= MAX_BYTES, bytes + " bytes were fetched");
+            for (Message<String> message : batch.getMessages()) assertFetched(partition.read(offset++), message);
+            fetches++;
+        }
+        assertTrue(fetches > countSegments());
+    }
+
+    @Test
+    public void fetchStopsAtTheEndOfASegmentAndTheNextReadsOnFromTheNext() throws IOException {
+        FetchClient.Batch<String> first = client.fetch("topic", "partition", 0, Integer.MAX_VALUE, 0);
+        long rolled = first.getNextOffset();
+        assertTrue(rolled > 0 && rolled < EVENTS);
+        for (int i = 0; i < rolled; i++) assertFetched(partition.read(i), first.getMessages().get(i));
+
+        FetchClient.Batch<String> second = client.fetch("topic", "partition", rolled, Integer.MAX_VALUE, 0);
+        assertEquals(rolled, second.getBaseOffset());
+        for (int i = 0; i < second.getMessages().size(); i++) {
+            assertFetched(partition.read(rolled + i), second.getMessages().get(i));
+        }
+    }
+
+    private static void assertFetched(Message<String> expected, Message<String> fetched) {
+        assertEquals(expected.getId(), fetched.getId());
+        assertEquals(expected.getKey(), fetched.getKey());
+        assertEquals(expected.getTimeCreated(), fetched.getTimeCreated());
+        assertEquals(expected.getPayload(), fetched.getPayload());
+    }
+
+    private long countSegments() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            return files.filter(x -> x.getFileName().toString().endsWith(".log")).count();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Partition<String> partition(Tributary tributary) {
+        return (Partition<String>) tributary.getTopics().get("topic").getPartitions().get("partition");
+    }
+}
\ No newline at end of file
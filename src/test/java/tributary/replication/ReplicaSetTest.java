@@ -0,0 +1,71 @@
+package tributary.replication;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class ReplicaSetTest {
+    @Test
+    public void highWatermarkIsTheLeaderEndOffsetWithoutFollowers() {
+        ReplicaSet replicas = new ReplicaSet(1000, 0);
+        assertEquals(5, replicas.getHighWatermark(5));
+        assertEquals(List.of(), replicas.getInSyncReplicas());
+    }
+
+    @Test
+    public void followerJoinsOnceCaughtUpAndHoldsTheHighWatermark() {
+        ReplicaSet replicas = new ReplicaSet(10_000, 0);
+
+        // the first fetch only tells the leader where the follower is
+        replicas.update("follower", 0, 10);
+        assertEquals(List.of(), replicas.getInSyncReplicas());
+        assertEquals(10, replicas.getHighWatermark(10));
+
+        replicas.update("follower", 10, 20);
+        assertEquals(List.of("follower"), replicas.getInSyncReplicas());
+        assertEquals(10, replicas.getHighWatermark(20));
+
+        // behind the leader, but it reached the end offset of its previous fetch in time
+        replicas.update("follower", 15, 25);
+        assertEquals(15, replicas.getHighWatermark(25));
+        replicas.update("follower", 25, 25);
+        assertEquals(25, replicas.getHighWatermark(25));
+    }
+
+    @Test
+    public void highWatermarkIsTheLowestOfTheReplicasInSync() {
+        ReplicaSet replicas = new ReplicaSet(10_000, 0);
+        replicas.update("a", 0, 0);
+        replicas.update("b", 0, 0);
+        replicas.update("a", 8, 10);
+        replicas.update("b", 4, 10);
+
+        assertEquals(2, replicas.getInSyncReplicas().size());
+        assertEquals(4, replicas.getHighWatermark(10));
+        replicas.update("b", 10, 10);
+        assertEquals(8, replicas.getHighWatermark(10));
+    }
+
+    @Test
+    public void laggingFollowerDropsOutWithoutMovingTheHighWatermarkBack() throws InterruptedException {
+        ReplicaSet replicas = new ReplicaSet(100, 0);
+        replicas.update("follower", 0, 0);
+        replicas.update("follower", 5, 10);
+        assertEquals(5, replicas.getHighWatermark(10));
+
+        // never reaching the end offset the leader had at its previous fetch
+        for (int i = 0; i < 4; i++) {
+            Thread.sleep(50);
+            replicas.update("follower", 6, 20 + i);
+        }
+        assertEquals(List.of(), replicas.getInSyncReplicas());
+        assertEquals(23, replicas.getHighWatermark(23));
+
+        // back in sync once caught up, but events already readable stay readable
+        replicas.update("follower", 23, 30);
+        assertEquals(List.of("follower"), replicas.getInSyncReplicas());
+        assertEquals(23, replicas.getHighWatermark(30));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,176 @@
+package tributary.replication;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import tributary.Acks;
+import tributary.Allocation;
+import tributary.Rebalance;
+import tributary.Tributary;
+import tributary.producer.BatchProducer;
+import tributary.producer.message.Message;
+import tributary.sink.NoOpSink;
+import tributary.topic.Partition;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ReplicationTest {
+    private Tributary leader;
+    private Tributary follower;
+    private int port;
+    private Partition<Integer> leaderPartition;
+    private Partition<Integer> followerPartition;
+
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        leader = new Tributary();
+        leader.setEventSink(new NoOpSink());
+        leader.createTopic("topic", Integer.class);
+        leader.createPartition("topic", "partition");
+        leader.createProducer("producer", Integer.class, Allocation.MANUAL);
+        leader.setAcks("producer", Acks.ALL);
+        port = leader.startReplication(0);
+
+        follower = new Tributary();
+        follower.setEventSink(new NoOpSink());
+        follower.createTopic("topic", Integer.class);
+        follower.followPartition("topic", "partition", "localhost", port);
+
+        leaderPartition = partition(leader);
+        followerPartition = partition(follower);
+        awaitInSync();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        follower.close();
+        leader.close();
+    }
+
+    @Test
+    public void acksAllReturnsOnceTheFollowerHasTheEvent() {
+        for (int i = 0; i < 200; i++) {
+            leader.produceValue("producer", "topic", i, "event" + i, "partition");
+            assertTrue(followerPartition.getEndOffset() >= i + 1);
+            assertEquals(i + 1, leaderPartition.getHighWatermark());
+        }
+    }
+
+    @Test
+    public void batchProducerWithAcksAllReturnsOnceTheFollowerHasTheBatch() {
+        try (BatchProducer<Integer> producer = leader.createBatchProducer("producer", "topic", 50, 60_000)) {
+            for (int i = 0; i < 120; i++) producer.sendValue(i, "event" + i, "partition");
+            // two full batches were appended and replicated as they filled
+            assertTrue(followerPartition.getEndOffset() >= 100);
+
+            producer.flush();
+            assertEquals(120, followerPartition.getEndOffset());
+        }
+    }
+
+    @Test
+    public void followerServesReplicatedEventsAndLeadsOnceTheLeaderFails() throws InterruptedException {
+        for (int i = 0; i < 100; i++) leader.produceValue("producer", "topic", i, "event" + i, "partition");
+        follower.createProducer("producer", Integer.class, Allocation.MANUAL);
+        assertThrows(IllegalArgumentException.class,
+                () -> follower.produceValue("producer", "topic", 0, "rejected", "partition"));
+
+        follower.createConsumerGroup("group", "topic", Rebalance.ROUNDROBIN);
+        follower.createConsumer("group", "consumer");
+        List<String> ids = new ArrayList<>();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (ids.size() < 100 && System.nanoTime() < deadline) {
+            for (Message<Integer> message : follower.<Integer>poll("consumer", 100, Long.MAX_VALUE, 100)) {
+                ids.add(message.getId());
+            }
+        }
+        for (int i = 0; i < 100; i++) assertEquals("event" + i, ids.get(i));
+
+        leader.close();
+        follower.leadPartition("topic", "partition");
+        follower.produceValue("producer", "topic", 100, "event100", "partition");
+        assertEquals(101, followerPartition.getEndOffset());
+        assertEquals("event100", follower.<Integer>poll("consumer", 100, Long.MAX_VALUE).get(0).getId());
+    }
+
+    @Test
+    public void followerAheadOfANewLeaderDropsTheEventsItLacksAndFollowsOn() throws InterruptedException {
+        for (int i = 0; i < 10; i++) leader.produceValue("producer", "topic", i, "event" + i, "partition");
+        assertEquals(10, followerPartition.getEndOffset());
+
+        // a leader that lost the events it had after the first four, e.g. kept in memory and restarted
+        Tributary restarted = new Tributary();
+        try {
+            restarted.setEventSink(new NoOpSink());
+            restarted.createTopic("topic", Integer.class);
+            restarted.createPartition("topic", "partition");
+            restarted.createProducer("producer", Integer.class, Allocation.MANUAL);
+            for (int i = 0; i < 4; i++) restarted.produceValue("producer", "topic", i, "event" + i, "partition");
+            int restartedPort = restarted.startReplication(0);
+
+            follower.leadPartition("topic", "partition");
+            follower.followPartition("topic", "partition", "localhost", restartedPort);
+            awaitFollowerEndOffset(4);
+            assertEquals(4, followerPartition.getHighWatermark());
+
+            restarted.produceValue("producer", "topic", 4, "rewritten4", "partition");
+            awaitFollowerEndOffset(5);
+            for (int i = 0; i < 4; i++) assertEquals("event" + i, followerPartition.read(i).getId());
+            assertEquals("rewritten4", followerPartition.read(4).getId());
+        } finally {
+            restarted.close();
+        }
+    }
+
+    @Test
+    public void malformedRequestsOnlyDropTheirOwnConnection() throws IOException {
+        ByteBuffer negative = ByteBuffer.allocate(Integer.BYTES).putInt(-5);
+        ByteBuffer huge = ByteBuffer.allocate(Integer.BYTES).putInt(Integer.MAX_VALUE);
+        // a topic id longer than the request
+        ByteBuffer garbled = ByteBuffer.allocate(2 * Integer.BYTES).putInt(Integer.BYTES).putInt(1000);
+        for (ByteBuffer request : List.of(negative, huge, garbled)) {
+            try (Socket socket = new Socket("localhost", port)) {
+                socket.setSoTimeout(5000);
+                socket.getOutputStream().write(request.array());
+                // the server closes the connection rather than answering
+                assertEquals(-1, socket.getInputStream().read());
+            }
+        }
+
+        // the follower is still served, so producing with Acks.ALL still returns once it has the event
+        leader.produceValue("producer", "topic", 0, "event0", "partition");
+        assertEquals(1, followerPartition.getEndOffset());
+        assertEquals(1, leaderPartition.getHighWatermark());
+    }
+
+    private void awaitFollowerEndOffset(long endOffset) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (followerPartition.getEndOffset() != endOffset) {
+            assertTrue(System.nanoTime() < deadline, "The follower did not reach offset " + endOffset);
+            Thread.sleep(10);
+        }
+    }
+
+    private void awaitInSync() throws InterruptedException {
+        ReplicaSet replicas = leaderPartition.getReplicaSet(ReplicaSet.DEFAULT_MAX_LAG_MS);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (replicas.getInSyncReplicas().isEmpty()) {
+            assertTrue(System.nanoTime() < deadline, "The follower did not get in sync");
+            Thread.sleep(10);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Partition<Integer> partition(Tributary tributary) {
+        return (Partition<Integer>) tributary.getTopics().get("topic").getPartitions().get("partition");
+    }
+}
\ No newline at end of file
@@ -0,0 +1,46 @@
+package tributary.sink;
+
+import org.junit.jupiter.api.Test;
+import tributary.producer.message.Message;
+import tributary.serde.Serdes;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AsyncLogSinkTest {
+    @Test
+    public void keepsWritingAfterAnEventFailsToFormat() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        AsyncLogSink sink = new AsyncLogSink(new PrintStream(bytes, true, StandardCharsets.UTF_8));
+
+        // a single byte is not an int, so its serde cannot render it
+        sink.consumed("consumer", new Message<Integer>("producer", null, new byte[]{1}, "broken"), Serdes.INTEGER);
+        Message<Integer> message = new Message<>("producer", "p0", Serdes.INTEGER.serialize(7), "event");
+        sink.produced("topic", message);
+        sink.consumed("consumer", message, Serdes.INTEGER);
+        sink.close();
+
+        String written = bytes.toString(StandardCharsets.UTF_8);
+        assertTrue(written.contains("Event event was added to partition p0"), written);
+        assertTrue(written.contains("7"), written);
+        assertFalse(written.contains("broken"), written);
+        assertEquals(1, sink.getDropped());
+    }
+
+    @Test
+    public void closingAgainDoesNothingAndLaterEventsAreDropped() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        AsyncLogSink sink = new AsyncLogSink(new PrintStream(bytes, true, StandardCharsets.UTF_8));
+        sink.close();
+        sink.close();
+
+        sink.produced("topic", new Message<Integer>("producer", "p0", Serdes.INTEGER.serialize(7), "event"));
+        assertEquals(1, sink.getDropped());
+        assertEquals(0, bytes.size());
+    }
+}
\ No newline at end of file
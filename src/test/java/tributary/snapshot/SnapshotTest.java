@@ -0,0 +1,177 @@
+package tributary.snapshot;
+
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import tributary.Allocation;
+import tributary.Rebalance;
+import tributary.Tributary;
+import tributary.compression.CompressionCodecs;
+import tributary.consumer.ConsumerGroup;
+import tributary.producer.message.Message;
+import tributary.serde.Serdes;
+import tributary.sink.NoOpSink;
+import tributary.topic.EventLog;
+import tributary.topic.Partition;
+import tributary.topic.RetentionPolicy;
+import tributary.topic.Topic;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class SnapshotTest {
+    @TempDir
+    Path directory;
+
+    private final List<Tributary> tributaries = new ArrayList<>();
+
+    @AfterEach
+    public void tearDown() {
+        tributaries.forEach(Tributary::close);
+    }
+
+    @Test
+    public void restoresTopicsEventsAndCommittedOffsets() {
+        Tributary original = tributary();
+        original.createTopic("ints", Integer.class);
+        original.createPartition("ints", "p0");
+        original.createPartition("ints", "p1");
+        original.createProducer("producer", Integer.class, Allocation.ROUNDROBIN);
+        for (int i = 0; i < 100; i++) original.produceValue("producer", "ints", i, "event" + i, null);
+        original.createConsumerGroup("group", "ints", Rebalance.ROUNDROBIN);
+        original.createConsumer("group", "consumer");
+        assertEquals(30, original.poll("consumer", 30, Long.MAX_VALUE).size());
+
+        Path file = directory.resolve("snapshot");
+        original.snapshot(file).join();
+        Tributary restored = tributary();
+        restored.restore(file);
+
+        Topic<Integer> before = topic(original, "ints");
+        Topic<Integer> after = topic(restored, "ints");
+        assertEquals(Serdes.forType(Integer.class).getName(), after.getSerde().getName());
+        for (Partition<Integer> partition : before.getPartitions().values()) {
+            Partition<Integer> copy = after.getPartitions().get(partition.getPartitionId());
+            assertEquals(partition.getStartOffset(), copy.getStartOffset());
+            assertEquals(partition.getEndOffset(), copy.getEndOffset());
+            for (long offset = partition.getStartOffset(); offset < partition.getEndOffset(); offset++) {
+                assertEquals(partition.read(offset).getId(), copy.read(offset).getId());
+                assertEquals(partition.read(offset).getValue(before.getSerde()),
+                        copy.read(offset).getValue(after.getSerde()));
+            }
+
+            ConsumerGroup<Integer> group = before.getConsumerGroups().get("group");
+            assertEquals(group.getOffset(partition.getPartitionId()),
+                    after.getConsumerGroups().get("group").getOffset(partition.getPartitionId()));
+        }
+        assertEquals(70, restored.poll("consumer", 100, Long.MAX_VALUE).size());
+    }
+
+    @Test
+    public void keepsEventsCapturedUntilWritten() {
+        Tributary tributary = tributary();
+        tributary.createTopic("ints", Integer.class);
+        tributary.createPartition("ints", "p0");
+        tributary.createProducer("producer", Integer.class, Allocation.ROUNDROBIN);
+        for (int i = 0; i < 100; i++) tributary.produceValue("producer", "ints", i, "event" + i, null);
+        Topic<Integer> topic = topic(tributary, "ints");
+        Partition<Integer> partition = topic.getPartitions().get("p0");
+
+        Snapshot snapshot = Snapshot.capture(List.of(topic), List.of());
+        RetentionPolicy keepTen = new RetentionPolicy(0, 0, 10, false);
+        partition.clean(keepTen);
+        assertEquals(0, partition.getStartOffset());
+
+        Path file = directory.resolve("snapshot");
+        snapshot.write(file);
+        partition.clean(keepTen);
+        assertEquals(90, partition.getStartOffset());
+
+        Map<String, Map<String, CompletableFuture<EventLog<Integer>>>> logs =
+                Snapshot.read(file).loadEvents(file, ForkJoinPool.commonPool());
+        EventLog<Integer> log = logs.get("ints").get("p0").join();
+        assertEquals(0, log.getStartOffset());
+        assertEquals(100, log.getEndOffset());
+        for (int i = 0; i < 100; i++) assertEquals("event" + i, log.read(i).getId());
+    }
+
+    @Test
+    public void readsSnapshotsOfEarlierVersions() throws IOException {
+        // version 2, before topics had serdes, so its topics hold JSONObject events
+        Path file = directory.resolve("snapshot");
+        byte[] event = new Message<JSONObject>("producer", null, Serdes.JSON.serialize(new JSONObject().put("n", 1)),
+                "event0").toBytes();
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(file))) {
+            out.writeInt(0x54524942);
+            out.writeInt(2);
+            out.writeInt(1);
+            out.writeUTF("json");
+            out.writeLong(0);
+            out.writeLong(0);
+            out.writeLong(0);
+            out.writeBoolean(false);
+            out.writeUTF(CompressionCodecs.NONE);
+            out.writeInt(1);
+            out.writeUTF("p0");
+            out.writeBoolean(false);
+            out.writeLong(5);
+            out.writeLong(6);
+            out.writeInt(0);
+            out.writeInt(0);
+
+            long position = out.size();
+            out.writeInt(event.length);
+            out.write(event);
+            long positions = out.size();
+            out.writeInt(1);
+            out.writeLong(position);
+            out.writeLong(positions);
+        }
+
+        Tributary tributary = tributary();
+        tributary.restore(file);
+        Topic<JSONObject> topic = topic(tributary, "json");
+        assertEquals(Serdes.JSON.getName(), topic.getSerde().getName());
+        Partition<JSONObject> partition = topic.getPartitions().get("p0");
+        assertEquals(5, partition.getStartOffset());
+        assertEquals(6, partition.getEndOffset());
+        assertEquals(1, partition.read(5).getValue(Serdes.JSON).getInt("n"));
+    }
+
+    @Test
+    public void rejectsFilesThatAreNotSnapshots() throws IOException {
+        Path newer = directory.resolve("newer");
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(newer))) {
+            out.writeInt(0x54524942);
+            out.writeInt(99);
+        }
+        assertThrows(IllegalArgumentException.class, () -> Snapshot.read(newer));
+
+        Path other = directory.resolve("other");
+        Files.write(other, new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+        assertThrows(IllegalArgumentException.class, () -> Snapshot.read(other));
+    }
+
+    private Tributary tributary() {
+        Tributary tributary = new Tributary();
+        tributary.setEventSink(new NoOpSink());
+        tributaries.add(tributary);
+        return tributary;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Topic<T> topic(Tributary tributary, String topicId) {
+        return (Topic<T>) tributary.getTopics().get(topicId);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,235 @@
+package tributary.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import tributary.producer.message.Message;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SegmentedLogTest {
+    private static final int SEGMENT_BYTES = 4096;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void recoversEveryRecordAndGapAcrossSegments() {
+        SegmentedLog<byte[]> log = open();
+        for (int i = 0; i < 1000; i++) {
+            if (i % 7 == 3) log.append(null);
+            else log.append(message(i, 0));
+        }
+        assertTrue(countSegments() > 1);
+        log.close();
+
+        SegmentedLog<byte[]> recovered = open();
+        assertEquals(1000, recovered.getEndOffset());
+        assertEquals(log.getBytes(), recovered.getBytes());
+        for (int i = 0; i < 1000; i++) {
+            if (i % 7 == 3) assertNull(recovered.read(i));
+            else assertEquals(id(i), recovered.read(i).getId());
+        }
+        assertEquals(1000, recovered.append(message(1000, 0)));
+        assertEquals(id(1000), recovered.read(1000).getId());
+        recovered.close();
+    }
+
+    @Test
+    public void recoversOffsetForTimeFromEveryRecord() {
+        // a message created late among earlier ones, which a sample of the messages would miss
+        SegmentedLog<byte[]> log = open();
+        for (int i = 0; i < 3000; i++) log.append(message(i, i == 500 ? 100 : 5));
+        assertEquals(500, log.offsetForTime(100));
+        log.close();
+
+        SegmentedLog<byte[]> recovered = open();
+        assertEquals(500, recovered.offsetForTime(100));
+        assertEquals(0, recovered.offsetForTime(5));
+        assertEquals(3000, recovered.offsetForTime(101));
+        recovered.close();
+    }
+
+    @Test
+    public void storesARecordLargerThanASegment() throws IOException {
+        byte[] large = new byte[3 * SEGMENT_BYTES];
+        Arrays.fill(large, (byte) 7);
+
+        // into the empty first segment, then after a segment holding records
+        SegmentedLog<byte[]> log = open();
+        log.append(message(0, 0, large));
+        for (int i = 1; i < 10; i++) log.append(message(i, 0));
+        log.append(message(10, 0, large));
+        log.append(message(11, 0));
+        assertEquals(12, log.getEndOffset());
+        assertEquals(ByteBuffer.wrap(large), log.read(0).getPayload());
+        assertEquals(ByteBuffer.wrap(large), log.read(10).getPayload());
+        long segments = countSegments();
+        log.close();
+
+        SegmentedLog<byte[]> recovered = open();
+        assertEquals(segments, countSegments());
+        assertEquals(12, recovered.getEndOffset());
+        assertEquals(ByteBuffer.wrap(large), recovered.read(0).getPayload());
+        for (int i = 1; i < 10; i++) assertEquals(id(i), recovered.read(i).getId());
+        assertEquals(ByteBuffer.wrap(large), recovered.read(10).getPayload());
+        assertEquals(id(11), recovered.read(11).getId());
+        recovered.close();
+    }
+
+    @Test
+    public void truncatesARecordTornByACrash() throws IOException {
+        SegmentedLog<byte[]> log = open();
+        for (int i = 0; i < 100; i++) log.append(message(i, 0));
+        log.close();
+
+        // a length written before the crc and bytes of the record reached the disk
+        try (FileChannel file = FileChannel.open(lastSegment(), StandardOpenOption.WRITE, StandardOpenOption.READ)) {
+            ByteBuffer torn = ByteBuffer.allocate(RecordFrame.HEADER_BYTES + 50).putInt(50);
+            torn.flip();
+            file.write(torn, endOfRecords(file));
+        }
+
+        SegmentedLog<byte[]> recovered = open();
+        assertEquals(100, recovered.getEndOffset());
+        assertNull(recovered.read(100));
+        assertEquals(100, recovered.append(message(100, 0)));
+        recovered.close();
+
+        SegmentedLog<byte[]> again = open();
+        assertEquals(101, again.getEndOffset());
+        assertEquals(id(100), again.read(100).getId());
+        again.close();
+    }
+
+    @Test
+    public void truncatesAtTheFirstCorruptRecord() throws IOException {
+        SegmentedLog<byte[]> log = open();
+        for (int i = 0; i < 100; i++) log.append(message(i, 0));
+        log.close();
+
+        try (FileChannel file = FileChannel.open(lastSegment(), StandardOpenOption.WRITE, StandardOpenOption.READ)) {
+            // the last byte of the last record, its payload
+            ByteBuffer flipped = ByteBuffer.allocate(1).put((byte) 0x55);
+            flipped.flip();
+            file.write(flipped, endOfRecords(file) - 1);
+        }
+
+        SegmentedLog<byte[]> recovered = open();
+        assertEquals(99, recovered.getEndOffset());
+        assertEquals(id(98), recovered.read(98).getId());
+        assertEquals(99, recovered.append(message(99, 0)));
+        assertEquals(id(99), recovered.read(99).getId());
+        recovered.close();
+    }
+
+    @Test
+    public void truncateDropsWholeSegmentsOnly() {
+        SegmentedLog<byte[]> log = open();
+        for (int i = 0; i < 1000; i++) log.append(message(i, 0));
+        long segments = countSegments();
+
+        log.truncateBefore(500);
+        long start = log.getStartOffset();
+        assertTrue(start > 0 && start <= 500);
+        assertTrue(countSegments() < segments);
+        assertNull(log.read(start - 1));
+        assertEquals(id((int) start), log.read(start).getId());
+        log.close();
+
+        SegmentedLog<byte[]> recovered = open();
+        assertEquals(start, recovered.getStartOffset());
+        recovered.close();
+    }
+
+    @Test
+    public void truncateToDropsLaterSegmentsAndRecordsAndSurvivesRecovery() {
+        SegmentedLog<byte[]> log = open();
+        for (int i = 0; i < 1000; i++) log.append(message(i, i == 900 ? 100 : 5));
+        long segments = countSegments();
+
+        log.truncateTo(300);
+        assertEquals(300, log.getEndOffset());
+        assertTrue(countSegments() < segments);
+        assertNull(log.read(300));
+        assertEquals(id(299), log.read(299).getId());
+        assertEquals(300, log.offsetForTime(100));
+
+        for (int i = 300; i < 400; i++) assertEquals(i, log.append(message(i + 1000, 5)));
+        assertEquals(id(1300), log.read(300).getId());
+        log.close();
+
+        SegmentedLog<byte[]> recovered = open();
+        assertEquals(400, recovered.getEndOffset());
+        for (int i = 0; i < 300; i++) assertEquals(id(i), recovered.read(i).getId());
+        for (int i = 300; i < 400; i++) assertEquals(id(i + 1000), recovered.read(i).getId());
+        assertEquals(400, recovered.offsetForTime(100));
+
+        // below the first segment, which leaves the log empty from there
+        recovered.truncateTo(0);
+        assertEquals(0, recovered.getEndOffset());
+        assertEquals(0, recovered.append(message(0, 5)));
+        assertEquals(id(0), recovered.read(0).getId());
+        recovered.close();
+    }
+
+    private SegmentedLog<byte[]> open() {
+        return SegmentedLog.open(directory, new DiskStorage(directory, SEGMENT_BYTES, 256));
+    }
+
+    private long countSegments() {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(x -> x.toString().endsWith(".log")).count();
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private Path lastSegment() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(x -> x.toString().endsWith(".log")).sorted().reduce((x, y) -> y).orElseThrow();
+        }
+    }
+
+    /**
+     * @return the file position after the last record framed in file
+     */
+    private static long endOfRecords(FileChannel file) throws IOException {
+        ByteBuffer length = ByteBuffer.allocate(Integer.BYTES);
+        long position = 0;
+        while (true) {
+            length.clear();
+            file.read(length, position);
+            int bytes = length.getInt(0);
+            if (bytes == 0) return position;
+            position += RecordFrame.frameBytes(bytes);
+        }
+    }
+
+    private static Message<byte[]> message(int i, long timeCreated) {
+        return message(i, timeCreated, new byte[]{(byte) i});
+    }
+
+    /**
+     * @return a message created at timeCreated, set in its record as its source and key come before it
+     */
+    private static Message<byte[]> message(int i, long timeCreated, byte[] payload) {
+        ByteBuffer bytes = ByteBuffer.wrap(new Message<byte[]>("p", null, payload, id(i)).toBytes());
+        bytes.putLong(Integer.BYTES + 1 + Integer.BYTES, timeCreated);
+        return Message.fromBytes(bytes);
+    }
+
+    private static String id(int i) {
+        return "event" + i;
+    }
+}
\ No newline at end of file
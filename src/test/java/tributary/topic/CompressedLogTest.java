@@ -0,0 +1,149 @@
+package tributary.topic;
+
+import org.junit.jupiter.api.Test;
+import tributary.compression.CompressionCodecs;
+import tributary.producer.message.Message;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CompressedLogTest {
+    private static final int EVENTS = 3 * CompressedLog.BATCH_RECORDS + 100;
+
+    @Test
+    public void readsEventsFromSealedAndOpenBatches() {
+        CompressedLog<byte[]> log = new CompressedLog<>(CompressionCodecs.DEFLATE);
+        for (int i = 0; i < EVENTS; i++) {
+            if (i % 100 == 7) assertEquals(i, log.append(null));
+            else assertEquals(i, log.append(message(i, 16)));
+        }
+
+        assertEquals(EVENTS, log.getEndOffset());
+        // read out of order, so that batches are decompressed again after leaving the cache
+        for (int round = 0; round < 2; round++) {
+            for (int i = EVENTS - 1; i >= 0; i--) {
+                if (i % 100 == 7) assertNull(log.read(i));
+                else assertEquals(id(i), log.read(i).getId());
+            }
+        }
+        assertNull(log.read(EVENTS));
+    }
+
+    @Test
+    public void sealsABatchByCountOrBytes() {
+        CompressedLog<byte[]> log = new CompressedLog<>(CompressionCodecs.DEFLATE);
+        long uncompressed = 0;
+        for (int i = 0; i < CompressedLog.BATCH_RECORDS; i++) {
+            Message<byte[]> message = message(i, 100);
+            uncompressed += message.getSize();
+            log.append(message);
+        }
+        // a full batch of alike events is compressed, so it takes far fewer bytes
+        assertTrue(log.getBytes() < uncompressed / 2);
+
+        // events large enough to fill a batch by bytes before it fills by count
+        CompressedLog<byte[]> large = new CompressedLog<>(CompressionCodecs.DEFLATE);
+        int size = CompressedLog.BATCH_BYTES / 4;
+        for (int i = 0; i < 10; i++) large.append(message(i, size));
+        large.truncateBefore(Long.MAX_VALUE);
+        // the open batch is never dropped, only the sealed batches before it
+        assertTrue(large.getStartOffset() > 0 && large.getStartOffset() < 10);
+        assertEquals(10, large.getEndOffset());
+        assertEquals(id(9), large.read(9).getId());
+    }
+
+    @Test
+    public void truncateDropsWholeBatchesOnly() {
+        CompressedLog<byte[]> log = new CompressedLog<>(CompressionCodecs.DEFLATE_FAST);
+        for (int i = 0; i < EVENTS; i++) log.append(message(i, 16));
+
+        log.truncateBefore(CompressedLog.BATCH_RECORDS + 10);
+        assertEquals(CompressedLog.BATCH_RECORDS, log.getStartOffset());
+        assertNull(log.read(CompressedLog.BATCH_RECORDS - 1));
+        assertEquals(id(CompressedLog.BATCH_RECORDS), log.read(CompressedLog.BATCH_RECORDS).getId());
+
+        log.truncateToBytes(0);
+        assertEquals(3 * CompressedLog.BATCH_RECORDS, log.getStartOffset());
+        assertEquals(id(EVENTS - 1), log.read(EVENTS - 1).getId());
+        assertThrows(UnsupportedOperationException.class, () -> log.remove(EVENTS - 1));
+    }
+
+    @Test
+    public void copyKeepsOffsetsAndGaps() {
+        List<Message<byte[]>> messages = new ArrayList<>();
+        for (int i = 0; i < EVENTS; i++) messages.add(i % 10 == 0 ? null : message(i, 16));
+        EventLog<byte[]> events = EventLog.restore(5000, messages);
+
+        CompressedLog<byte[]> copy = CompressedLog.copyOf(CompressionCodecs.DEFLATE, events);
+        assertEquals(5000, copy.getStartOffset());
+        assertEquals(5000 + EVENTS, copy.getEndOffset());
+        for (int i = 0; i < EVENTS; i++) {
+            if (i % 10 == 0) assertNull(copy.read(5000 + i));
+            else assertEquals(id(i), copy.read(5000 + i).getId());
+        }
+        assertEquals(5000 + EVENTS, copy.appendAll(Arrays.asList(message(0, 16), null)));
+    }
+
+    @Test
+    public void readersSeeEveryEventBelowTheEndOffsetWhileBatchesAreSealed() throws Exception {
+        CompressedLog<byte[]> log = new CompressedLog<>(CompressionCodecs.DEFLATE_FAST);
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<String> failure = new AtomicReference<>();
+        Thread reader = new Thread(() -> {
+            while (!done.get()) {
+                long end = log.getEndOffset();
+                for (long offset = Math.max(0, end - 50); offset < end; offset++) {
+                    Message<byte[]> message = log.read(offset);
+                    if (message == null || !message.getId().equals(id((int) offset))) {
+                        failure.compareAndSet(null, "Wrong event at offset " + offset);
+                    }
+                }
+            }
+        });
+        reader.start();
+        for (int i = 0; i < 20 * CompressedLog.BATCH_RECORDS; i++) log.append(message(i, 16));
+        done.set(true);
+        reader.join();
+
+        assertNull(failure.get(), failure.get());
+    }
+
+    @Test
+    public void truncateToReopensTheBatchHoldingTheEndOffset() {
+        CompressedLog<byte[]> log = new CompressedLog<>(CompressionCodecs.DEFLATE);
+        for (int i = 0; i < EVENTS; i++) log.append(message(i, 16));
+
+        // within the open batch, then within a sealed one
+        log.truncateTo(EVENTS - 50);
+        assertEquals(EVENTS - 50, log.getEndOffset());
+        assertNull(log.read(EVENTS - 50));
+        int end = CompressedLog.BATCH_RECORDS + 10;
+        log.truncateTo(end);
+        assertEquals(end, log.getEndOffset());
+        for (int i = 0; i < end; i++) assertEquals(id(i), log.read(i).getId());
+        assertNull(log.read(end));
+
+        for (int i = end; i < EVENTS; i++) assertEquals(i, log.append(message(i + EVENTS, 16)));
+        for (int i = 0; i < end; i++) assertEquals(id(i), log.read(i).getId());
+        for (int i = end; i < EVENTS; i++) assertEquals(id(i + EVENTS), log.read(i).getId());
+        assertEquals(0, log.getStartOffset());
+    }
+
+    private static Message<byte[]> message(int i, int size) {
+        byte[] payload = new byte[size];
+        Arrays.fill(payload, (byte) 'x');
+        return new Message<>("producer", null, payload, id(i));
+    }
+
+    private static String id(int i) {
+        return "event" + i;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,152 @@
+package tributary.topic;
+
+import org.junit.jupiter.api.Test;
+import tributary.producer.message.Message;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class EventLogTest {
+    // spans several chunks of 1024 events
+    private static final int EVENTS = 5000;
+
+    @Test
+    public void readsEveryEventAppended() {
+        EventLog<byte[]> log = new EventLog<>();
+        for (int i = 0; i < EVENTS; i++) assertEquals(i, log.append(message(i)));
+
+        assertEquals(EVENTS, log.getEndOffset());
+        for (int i = 0; i < EVENTS; i++) assertEquals(id(i), log.read(i).getId());
+        assertNull(log.read(EVENTS));
+        assertNull(log.read(-1));
+    }
+
+    @Test
+    public void appendAllAppendsAtConsecutiveOffsetsWithGaps() {
+        EventLog<byte[]> log = new EventLog<>();
+        log.append(message(0));
+        assertEquals(1, log.appendAll(Arrays.asList(message(1), null, message(3))));
+
+        assertEquals(4, log.getEndOffset());
+        assertEquals(id(1), log.read(1).getId());
+        assertNull(log.read(2));
+        assertEquals(id(3), log.read(3).getId());
+        assertEquals(message(0).getSize() * 3L, log.getBytes());
+    }
+
+    @Test
+    public void truncateBeforeDropsWholeAndPartialChunks() {
+        EventLog<byte[]> log = new EventLog<>();
+        for (int i = 0; i < EVENTS; i++) log.append(message(i));
+        long size = message(0).getSize();
+
+        log.truncateBefore(1500);
+        assertEquals(1500, log.getStartOffset());
+        assertEquals(size * (EVENTS - 1500), log.getBytes());
+        assertNull(log.read(0));
+        assertNull(log.read(1499));
+        assertEquals(id(1500), log.read(1500).getId());
+
+        // truncating again, or before the start offset, changes nothing
+        log.truncateBefore(1000);
+        assertEquals(1500, log.getStartOffset());
+        assertEquals(size * (EVENTS - 1500), log.getBytes());
+
+        log.truncateBefore(EVENTS + 10);
+        assertEquals(EVENTS, log.getStartOffset());
+        assertEquals(0, log.getBytes());
+        assertEquals(EVENTS, log.append(message(EVENTS)));
+        assertEquals(id(EVENTS), log.read(EVENTS).getId());
+    }
+
+    @Test
+    public void truncateToBytesKeepsTheNewestEvents() {
+        EventLog<byte[]> log = new EventLog<>();
+        for (int i = 0; i < EVENTS; i++) log.append(message(i));
+        long size = message(0).getSize();
+
+        log.truncateToBytes(size * 100);
+        assertEquals(EVENTS - 100, log.getStartOffset());
+        assertEquals(size * 100, log.getBytes());
+        assertEquals(id(EVENTS - 100), log.read(EVENTS - 100).getId());
+    }
+
+    @Test
+    public void removeLeavesAGap() {
+        EventLog<byte[]> log = new EventLog<>();
+        for (int i = 0; i < 3; i++) log.append(message(i));
+
+        log.remove(1);
+        log.remove(1);
+        assertNull(log.read(1));
+        assertEquals(3, log.getEndOffset());
+        assertEquals(message(0).getSize() * 2L, log.getBytes());
+    }
+
+    @Test
+    public void restoreKeepsOffsets() {
+        List<Message<byte[]>> messages = Arrays.asList(message(2000), null, message(2002));
+        EventLog<byte[]> log = EventLog.restore(2000, messages);
+
+        assertEquals(2000, log.getStartOffset());
+        assertEquals(2003, log.getEndOffset());
+        assertEquals(id(2000), log.read(2000).getId());
+        assertNull(log.read(2001));
+        assertEquals(2003, log.append(message(2003)));
+    }
+
+    @Test
+    public void readersNeverSeeAHoleBelowTheEndOffsetWhileTruncating() throws Exception {
+        EventLog<byte[]> log = new EventLog<>();
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<String> failure = new AtomicReference<>();
+
+        Thread reader = new Thread(() -> {
+            while (!done.get()) {
+                long start = log.getStartOffset();
+                long end = log.getEndOffset();
+                for (long offset = Math.max(start, end - 100); offset < end; offset++) {
+                    // an event may be truncated as it is read, but never lost while above the start offset
+                    if (log.read(offset) == null && offset >= log.getStartOffset()) {
+                        failure.compareAndSet(null, "No event at offset " + offset);
+                    }
+                }
+            }
+        });
+        Thread truncator = new Thread(() -> {
+            while (!done.get()) log.truncateBefore(log.getEndOffset() - 10);
+        });
+        reader.start();
+        truncator.start();
+
+        for (int i = 0; i < 100 * EVENTS; i += 10) {
+            List<Message<byte[]>> batch = new ArrayList<>();
+            for (int j = i; j < i + 10; j++) batch.add(message(j));
+            log.appendAll(batch);
+        }
+        done.set(true);
+        reader.join();
+        truncator.join();
+
+        assertNull(failure.get(), failure.get());
+        assertEquals(100 * EVENTS, log.getEndOffset());
+        assertNotNull(log.read(log.getEndOffset() - 1));
+    }
+
+    private static Message<byte[]> message(int i) {
+        return new Message<>("producer", null, "payload".getBytes(StandardCharsets.UTF_8), id(i));
+    }
+
+    // of one length, so that every event has the same size
+    private static String id(int i) {
+        return String.format("event%06d", i);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,73 @@
+package tributary.topic;
+
+import org.junit.jupiter.api.Test;
+import tributary.producer.message.Message;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class PartitionTest {
+    private static final RetentionPolicy COMPACT = new RetentionPolicy(0, 0, 0, true);
+
+    @Test
+    public void compactionKeepsTheLatestEventOfEachIdAtItsOffset() {
+        Partition<byte[]> partition = new Partition<>("partition");
+        for (int i = 0; i < 30; i++) partition.addEvent(message("key" + i % 3, i));
+
+        partition.clean(COMPACT);
+        assertEquals(30, partition.getEndOffset());
+        for (int i = 0; i < 27; i++) assertNull(partition.read(i));
+        for (int i = 27; i < 30; i++) assertEquals("key" + i % 3, partition.read(i).getId());
+    }
+
+    @Test
+    public void compactionSupersedesEventsOfEarlierCleans() {
+        Partition<byte[]> partition = new Partition<>("partition");
+        partition.addEvent(message("a", 0));
+        partition.addEvent(message("b", 1));
+        partition.clean(COMPACT);
+
+        partition.addEvent(message("a", 2));
+        partition.addEvent(message("c", 3));
+        partition.clean(COMPACT);
+
+        assertNull(partition.read(0));
+        assertEquals("b", partition.read(1).getId());
+        assertEquals("a", partition.read(2).getId());
+        assertEquals("c", partition.read(3).getId());
+    }
+
+    @Test
+    public void retentionByCountAndBytesKeepsTheNewestEvents() {
+        Partition<byte[]> partition = new Partition<>("partition");
+        for (int i = 0; i < 100; i++) partition.addEvent(message("event" + i % 10, i));
+
+        partition.clean(new RetentionPolicy(0, 0, 40, false));
+        assertEquals(60, partition.getStartOffset());
+        assertEquals(100, partition.getEndOffset());
+
+        long size = message("event0", 0).getSize();
+        partition.clean(new RetentionPolicy(0, size * 10, 0, false));
+        assertEquals(90, partition.getStartOffset());
+        assertNull(partition.read(89));
+        assertEquals("event0", partition.read(90).getId());
+    }
+
+    @Test
+    public void retentionByAgeDropsOldEventsOnly() throws InterruptedException {
+        Partition<byte[]> partition = new Partition<>("partition");
+        for (int i = 0; i < 10; i++) partition.addEvent(message("old" + i, i));
+        Thread.sleep(200);
+        for (int i = 0; i < 10; i++) partition.addEvent(message("new" + i, i));
+
+        partition.clean(new RetentionPolicy(100, 0, 0, false));
+        assertEquals(10, partition.getStartOffset());
+        assertEquals("new0", partition.read(10).getId());
+    }
+
+    private static Message<byte[]> message(String id, int value) {
+        return new Message<>("producer", null, String.format("%03d", value).getBytes(StandardCharsets.UTF_8), id);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,120 @@
+package tributary.topic;
+
+import org.junit.jupiter.api.Test;
+import tributary.Rebalance;
+import tributary.consumer.Consumer;
+import tributary.consumer.ConsumerGroup;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TopicTest {
+    private static final int PARTITIONS = 12;
+
+    @Test
+    public void stickyRebalanceMovesOnlyThePartitionsANewConsumerTakes() {
+        Topic<Object> topic = topic();
+        ConsumerGroup<Object> group = topic.addConsumerGroup("group", Rebalance.STICKY);
+        group.addConsumer("a");
+        group.addConsumer("b");
+        topic.rebalance(group);
+        assertBalanced(group, 6, 6);
+        Map<String, String> before = assignments(group);
+
+        group.addConsumer("c");
+        topic.rebalance(group);
+        assertBalanced(group, 4, 4);
+        Map<String, String> after = assignments(group);
+        int moved = 0;
+        for (Map.Entry<String, String> entry : after.entrySet()) {
+            if (!entry.getValue().equals(before.get(entry.getKey()))) {
+                assertEquals("c", entry.getValue());
+                moved++;
+            }
+        }
+        assertEquals(4, moved);
+    }
+
+    @Test
+    public void stickyRebalanceMovesOnlyThePartitionsOfADeletedConsumer() {
+        Topic<Object> topic = topic();
+        ConsumerGroup<Object> group = topic.addConsumerGroup("group", Rebalance.STICKY);
+        for (String consumerId : new String[]{"a", "b", "c"}) group.addConsumer(consumerId);
+        topic.rebalance(group);
+        Map<String, String> before = assignments(group);
+
+        group.deleteConsumer("b");
+        topic.rebalance(group);
+        assertBalanced(group, 6, 6);
+        assignments(group).forEach((partitionId, consumerId) -> {
+            if (!before.get(partitionId).equals("b")) assertEquals(before.get(partitionId), consumerId);
+        });
+        topic.getPartitions().values().forEach(x -> assertTrue(!x.hasConsumer("b")));
+    }
+
+    @Test
+    public void stickyRebalanceHandsOutNewPartitionsAndSplitsUnevenly() {
+        Topic<Object> topic = topic();
+        ConsumerGroup<Object> group = topic.addConsumerGroup("group", Rebalance.STICKY);
+        for (String consumerId : new String[]{"a", "b", "c", "d", "e"}) group.addConsumer(consumerId);
+        topic.rebalance(group);
+        assertBalanced(group, 2, 3);
+
+        topic.createPartition("extra");
+        topic.rebalance(group);
+        assertBalanced(group, 2, 3);
+        assertEquals(PARTITIONS + 1, assignments(group).size());
+    }
+
+    @Test
+    public void groupsAreRebalancedIndependently() {
+        Topic<Object> topic = topic();
+        ConsumerGroup<Object> sticky = topic.addConsumerGroup("sticky", Rebalance.STICKY);
+        ConsumerGroup<Object> roundRobin = topic.addConsumerGroup("roundRobin", Rebalance.ROUNDROBIN);
+        sticky.addConsumer("a");
+        roundRobin.addConsumer("x");
+        roundRobin.addConsumer("y");
+        topic.rebalance();
+
+        sticky.addConsumer("b");
+        topic.rebalance(sticky);
+        assertBalanced(sticky, 6, 6);
+        assertBalanced(roundRobin, 6, 6);
+    }
+
+    private static Topic<Object> topic() {
+        Topic<Object> topic = new Topic<>("topic");
+        for (int i = 0; i < PARTITIONS; i++) topic.createPartition("p" + i);
+        return topic;
+    }
+
+    /**
+     * asserts every partition is assigned to exactly one consumer of group, each holding between min and max
+     */
+    private static <T> void assertBalanced(ConsumerGroup<T> group, int min, int max) {
+        int assigned = 0;
+        for (Consumer<T> consumer : group.getConsumers().values()) {
+            int size = consumer.getPartitions().size();
+            assertTrue(size >= min && size <= max, consumer.getConsumerId() + " holds " + size + " partitions");
+            assigned += size;
+        }
+        assertEquals(assignments(group).size(), assigned);
+    }
+
+    /**
+     * @return the consumer each partition is assigned to, by partition id
+     */
+    private static <T> Map<String, String> assignments(ConsumerGroup<T> group) {
+        Map<String, String> assignments = new HashMap<>();
+        for (Consumer<T> consumer : group.getConsumers().values()) {
+            for (String partitionId : consumer.getPartitions().keySet()) {
+                String previous = assignments.put(partitionId, consumer.getConsumerId());
+                assertEquals(null, previous, partitionId + " is assigned twice");
+            }
+        }
+        return assignments;
+    }
+}
\ No newline at end of file